@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# Starts the application on a port and applies the load driver to it, then stops it.
+#
+#   mvn package
+#   scripts/load-test.sh [-p port] [-j "jvm options"] [load driver options]
+#
+# Load driver options are --name=value, see LoadDriver or run with --help. For instance
+#   scripts/load-test.sh -j "-Xmx1g" --model=closed --users=64 --duration=60s --histograms=target/load
+# Prints requests, errors, throughput and p50 to max latencies per operation, exits with 1 on errors.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+PORT=8081
+JVM_OPTIONS=""
+while getopts "p:j:" option; do
+    case $option in
+        p) PORT=$OPTARG ;;
+        j) JVM_OPTIONS=$OPTARG ;;
+        *) sed -n '2,9p' "$0"; exit 1 ;;
+    esac
+done
+shift $((OPTIND - 1))
+
+JAR=target/quarkus-app/quarkus-run.jar
+[[ -f $JAR ]] || { echo "$JAR not built"; exit 1; }
+PID=
+trap '[[ -n $PID ]] && kill "$PID" 2> /dev/null; wait 2> /dev/null' EXIT
+
+read -r -a OPTIONS <<< "$JVM_OPTIONS"
+java "${OPTIONS[@]}" -Dquarkus.http.port="$PORT" -jar $JAR > target/load-test.log 2>&1 &
+PID=$!
+until curl -s -o /dev/null "http://localhost:$PORT/v1/pricing/markdowns"; do
+    kill -0 "$PID" 2> /dev/null || { echo "application exited, see target/load-test.log"; exit 1; }
+    sleep 0.1
+done
+
+mvn -q -Pload test-compile exec:exec -Dload.args="--target=http://localhost:$PORT $*"
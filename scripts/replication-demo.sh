@@ -0,0 +1,70 @@
+#!/usr/bin/env bash
+# Runs a leader and followers on localhost and measures how long a markdown write takes to reach every follower.
+#
+#   mvn package
+#   scripts/replication-demo.sh [-f followers] [-n writes] [-p port]
+#
+# The leader listens on the port, followers on the next ones. Each write associates a new product to a 10%
+# markdown on the leader, then every follower is polled with curl until it prices the product at 9.0.
+# Prints min, median and max milliseconds per write, accurate to a few milliseconds, and the replication
+# metrics of the first follower.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+FOLLOWERS=2
+WRITES=20
+PORT=8081
+while getopts "f:n:p:" option; do
+    case $option in
+        f) FOLLOWERS=$OPTARG ;;
+        n) WRITES=$OPTARG ;;
+        p) PORT=$OPTARG ;;
+        *) sed -n '2,10p' "$0"; exit 1 ;;
+    esac
+done
+
+JAR=target/quarkus-app/quarkus-run.jar
+[[ -f $JAR ]] || { echo "$JAR not built"; exit 1; }
+LEADER=http://localhost:$PORT
+PIDS=()
+trap 'kill "${PIDS[@]}" 2> /dev/null; wait 2> /dev/null' EXIT
+
+price() {
+    curl -s -X GET -H 'Content-Type: application/json' \
+        -d "{\"productId\":\"$2\",\"productPrice\":10.0,\"quantity\":1}" "http://localhost:$1/v1/pricing/finalprice"
+}
+
+start() {
+    java "${@:2}" -Dquarkus.http.port="$1" -jar $JAR > /dev/null 2>&1 &
+    PIDS+=($!)
+    until [[ -n $(price "$1" 11111111-1111-1111-1111-111111111111) ]]; do
+        kill -0 "${PIDS[-1]}" 2> /dev/null || { echo "node on port $1 exited"; exit 1; }
+        sleep 0.1
+    done
+}
+
+start "$PORT"
+for ((i = 1; i <= FOLLOWERS; i++)); do
+    start $((PORT + i)) -Dpricing.replication.leader=$LEADER
+done
+
+MARKDOWN=$(curl -s -D - -o /dev/null -X POST -H 'Content-Type: application/json' \
+    -d '{"type":"PERCENTAGE","percentage":10}' "$LEADER/v1/pricing/markdowns" | sed -n 's/^[Ll]ocation: .*\/\([^/[:space:]]*\).*/\1/p')
+
+times=()
+for ((write = 0; write < WRITES; write++)); do
+    product=$(cat /proc/sys/kernel/random/uuid)
+    curl -s -o /dev/null -X POST -H 'Content-Type: application/json' -d "[\"$product\"]" \
+        "$LEADER/v1/pricing/markdowns/$MARKDOWN/associations"
+    start=$(date +%s%N)
+    for ((i = 1; i <= FOLLOWERS; i++)); do
+        until [[ $(price $((PORT + i)) "$product") == 9.0 ]]; do :; done
+    done
+    times+=($((($(date +%s%N) - start) / 1000000)))
+done
+
+sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+printf 'write visible on %d followers in min %d ms, median %d ms, max %d ms over %d writes\n' \
+    "$FOLLOWERS" "${sorted[0]}" "${sorted[$((WRITES / 2))]}" "${sorted[$((WRITES - 1))]}" "$WRITES"
+curl -s "http://localhost:$((PORT + 1))/q/metrics" | grep '^pricing_replication' || true
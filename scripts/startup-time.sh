@@ -0,0 +1,77 @@
+#!/usr/bin/env bash
+# Time from process start to the first successful GET /v1/pricing/finalprice, for the JVM, AppCDS and native builds.
+#
+#   mvn package                                         # jvm
+#   mvn package -Dquarkus.package.create-appcds=true    # appcds (also runs as jvm)
+#   mvn package -Pnative                                # native
+#   scripts/startup-time.sh [-n runs] [-p port] [-c catalog.bin | -e] [jvm|appcds|native ...]
+#
+# -c serves a catalog file, -e the catalog packaged in the application (see README, Startup).
+# Prints min, median and max milliseconds per mode, and the resident memory after the first request.
+# Polling is done with curl, so times are accurate to a few milliseconds.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=10
+PORT=8081
+CONFIG=()
+while getopts "n:p:c:e" option; do
+    case $option in
+        n) RUNS=$OPTARG ;;
+        p) PORT=$OPTARG ;;
+        c) CONFIG+=("-Dpricing.gateway.catalog.file=$(realpath "$OPTARG")") ;;
+        e) CONFIG+=("-Dpricing.gateway.catalog.embedded=true") ;;
+        *) sed -n '2,10p' "$0"; exit 1 ;;
+    esac
+done
+shift $((OPTIND - 1))
+MODES=("${@:-jvm appcds native}")
+read -r -a MODES <<< "${MODES[*]}"
+
+JAR=target/quarkus-app/quarkus-run.jar
+CDS_ARCHIVE=target/quarkus-app/app-cds.jsa
+REQUEST='{"productId":"11111111-1111-1111-1111-111111111111","productPrice":9.99,"quantity":1}'
+
+command_of() {
+    case $1 in
+        jvm) [[ -f $JAR ]] && echo "java ${CONFIG[*]} -Dquarkus.http.port=$PORT -jar $JAR" ;;
+        appcds) [[ -f $CDS_ARCHIVE ]] && echo "java -XX:SharedArchiveFile=$CDS_ARCHIVE ${CONFIG[*]} -Dquarkus.http.port=$PORT -jar $JAR" ;;
+        native)
+            local runner
+            runner=$(ls target/*-runner 2>/dev/null | head -1)
+            [[ -n $runner ]] && echo "$runner ${CONFIG[*]} -Dquarkus.http.port=$PORT" ;;
+    esac
+}
+
+priced() {
+    [[ $(curl -s -o /dev/null -w '%{http_code}' -X GET -H 'Content-Type: application/json' -d "$REQUEST" \
+        "http://localhost:$PORT/v1/pricing/finalprice") == 200 ]]
+}
+
+for mode in "${MODES[@]}"; do
+    if ! command=$(command_of "$mode"); then
+        echo "$mode: not built, skipped"
+        continue
+    fi
+    times=()
+    rss=0
+    for ((run = 0; run < RUNS; run++)); do
+        start=$(date +%s%N)
+        $command > /dev/null 2>&1 &
+        pid=$!
+        until priced; do
+            if ! kill -0 $pid 2> /dev/null; then
+                echo "$mode: exited before serving a price"
+                exit 1
+            fi
+        done
+        times+=($((($(date +%s%N) - start) / 1000000)))
+        rss=$(ps -o rss= -p $pid)
+        kill $pid
+        wait $pid 2> /dev/null || true
+    done
+    sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    printf '%-7s first price in min %d ms, median %d ms, max %d ms over %d runs, rss %d MB\n' \
+        "$mode" "${sorted[0]}" "${sorted[$((RUNS / 2))]}" "${sorted[$((RUNS - 1))]}" "$RUNS" $((rss / 1024))
+done
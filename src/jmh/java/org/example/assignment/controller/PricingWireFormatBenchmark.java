@@ -0,0 +1,103 @@
+package org.example.assignment.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.assignment.controller.codec.PricingCodec;
+import org.example.assignment.controller.dto.FinalPriceRequest;
+import org.example.assignment.model.Price;
+import org.example.assignment.model.ProductBasket;
+import org.example.assignment.model.ProductID;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Server side CPU of a batch pricing request, JSON against the binary format: decoding and validating
+ * the baskets, then encoding the prices. Pricing itself is left out as it is the same for both.
+ * Request and response sizes of both formats are printed at setup.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=PricingWireFormatBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingWireFormatBenchmark {
+
+    private static final TypeReference<List<FinalPriceRequest>> REQUESTS = new TypeReference<>() {};
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private ObjectMapper objectMapper;
+    private byte[] jsonRequest;
+    private byte[] binaryRequest;
+    private double[] prices;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper();
+        var productBaskets = new ArrayList<ProductBasket>();
+        var requests = new ArrayList<FinalPriceRequest>();
+        prices = new double[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            var productBasket = new ProductBasket(new ProductID(UUID.randomUUID()), Price.of(9.99), 1 + i % 120);
+            productBaskets.add(productBasket);
+            var request = new FinalPriceRequest();
+            request.productId = productBasket.productID().id().toString();
+            request.productPrice = productBasket.productPrice().value();
+            request.quantity = productBasket.quantity();
+            requests.add(request);
+            prices[i] = productBasket.productPrice().value() * productBasket.quantity() * 0.9;
+        }
+        jsonRequest = objectMapper.writeValueAsBytes(requests);
+        var binary = new ByteArrayOutputStream();
+        PricingCodec.writeBaskets(binary, productBaskets);
+        binaryRequest = binary.toByteArray();
+        var binaryResponse = new ByteArrayOutputStream();
+        PricingCodec.writePrices(binaryResponse, prices);
+        System.out.printf("%nbatch of %d: json request %d bytes, response %d bytes; binary request %d bytes, response %d bytes%n",
+                batchSize, jsonRequest.length, objectMapper.writeValueAsBytes(prices).length,
+                binaryRequest.length, binaryResponse.size());
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        List<FinalPriceRequest> requests = objectMapper.readValue(jsonRequest, REQUESTS);
+        if(!FinalPriceRequestValidator.validate(requests).isEmpty()){
+            throw new IllegalStateException();
+        }
+        var productBaskets = requests.stream()
+                .map(x -> new ProductBasket(new ProductID(UUID.fromString(x.productId)), Price.of(x.productPrice), x.quantity))
+                .collect(Collectors.toList());
+        return objectMapper.writeValueAsBytes(pricesOf(productBaskets));
+    }
+
+    @Benchmark
+    public byte[] binary() throws IOException {
+        var productBaskets = PricingCodec.readBaskets(new ByteArrayInputStream(binaryRequest));
+        if(!FinalPriceRequestValidator.validateBaskets(productBaskets).isEmpty()){
+            throw new IllegalStateException();
+        }
+        var out = new ByteArrayOutputStream(4 + 8 * prices.length);
+        PricingCodec.writePrices(out, pricesOf(productBaskets));
+        return out.toByteArray();
+    }
+
+    private double[] pricesOf(List<ProductBasket> productBaskets) {
+        if(productBaskets.size() != prices.length){
+            throw new IllegalStateException();
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Pricing lookups running against a writer that keeps moving products between two markdowns.
+ * Run it with an increasing number of reader threads to check that reads scale with the cores:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MarkdownGatewayContentionBenchmark -Djmh.args="-tg 4,1"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class MarkdownGatewayContentionBenchmark {
+
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    @Param({"10000", "1000000"})
+    public int associations;
+
+    private MarkdownGatewayImpl gateway;
+    private ProductID[] products;
+    private MarkdownID[] markdowns;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        gateway = new MarkdownGatewayImpl();
+        var percentage = new MarkdownConfiguration(Optional.of(10f), Optional.empty());
+        markdowns = new MarkdownID[] {
+                gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get(),
+                gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get()
+        };
+        products = IntStream.range(0, associations)
+                .mapToObj(__ -> new ProductID(UUID.randomUUID()))
+                .toArray(ProductID[]::new);
+        gateway.associateToProducts(markdowns[0], Arrays.asList(products));
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        int cursor;
+        int round;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Optional<Markdown> pricingLookup() {
+        var product = products[ThreadLocalRandom.current().nextInt(products.length)];
+        return gateway.getPolicyByProductId(product);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void associationWrite(WriterState state) {
+        if(state.cursor + WRITE_BATCH_SIZE > products.length){
+            state.cursor = 0;
+            state.round++;
+        }
+        var batch = Arrays.asList(products).subList(state.cursor, state.cursor + WRITE_BATCH_SIZE);
+        gateway.associateToProducts(markdowns[state.round & 1], batch);
+        state.cursor += WRITE_BATCH_SIZE;
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    public Optional<Markdown> uncontendedLookup() {
+        var product = products[ThreadLocalRandom.current().nextInt(products.length)];
+        return gateway.getPolicyByProductId(product);
+    }
+}
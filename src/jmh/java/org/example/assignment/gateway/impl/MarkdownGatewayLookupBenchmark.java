@@ -0,0 +1,98 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded {@code getPolicyByProductId} on gateways holding a growing number of associations,
+ * for both associated products and products falling back to the default policy.
+ * The {@code mapped} storage serves the same associations from an exported catalog, memory mapped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MarkdownGatewayLookupBenchmark {
+
+    private static final int PROBES = 1 << 16;
+    private static final int BATCH_SIZE = 100_000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int associations;
+
+    @Param({"heap", "mapped"})
+    public String storage;
+
+    private MarkdownGatewayImpl gateway;
+    private Path catalog;
+    private ProductID[] associated;
+    private ProductID[] notAssociated;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        gateway = new MarkdownGatewayImpl();
+        var random = new SplittableRandom(42);
+        var markdownIds = new MarkdownID[16];
+        for (int i = 0; i < markdownIds.length; i++) {
+            var percentage = new MarkdownConfiguration(Optional.of((float) i), Optional.empty());
+            markdownIds[i] = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get();
+        }
+
+        associated = new ProductID[PROBES];
+        var batch = new ArrayList<ProductID>(BATCH_SIZE);
+        for (int i = 0; i < associations; i++) {
+            var productId = new ProductID(new UUID(random.nextLong(), random.nextLong()));
+            batch.add(productId);
+            if(i < PROBES){
+                associated[i] = productId;
+            }
+            if(batch.size() == BATCH_SIZE || i == associations - 1){
+                gateway.associateToProducts(markdownIds[i % markdownIds.length], batch);
+                batch.clear();
+            }
+        }
+        for (int i = associations; i < PROBES; i++) {
+            associated[i] = associated[i % associations];
+        }
+
+        notAssociated = new ProductID[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            notAssociated[i] = new ProductID(new UUID(random.nextLong(), random.nextLong()));
+        }
+
+        if(storage.equals("mapped")){
+            catalog = Files.createTempFile("markdown-catalog", ".bin");
+            try (var out = Files.newOutputStream(catalog)) {
+                gateway.exportCatalog(out);
+            }
+            gateway = new MarkdownGatewayImpl(null, MappedCatalog.open(catalog));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if(catalog != null){
+            Files.delete(catalog);
+        }
+    }
+
+    @Benchmark
+    public Optional<Markdown> hit() {
+        return gateway.getPolicyByProductId(associated[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public Optional<Markdown> miss() {
+        return gateway.getPolicyByProductId(notAssociated[next++ & (PROBES - 1)]);
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.GatewayPersistence;
+import org.example.assignment.gateway.impl.persistence.PersistenceConfig;
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Startup recovery of one million associations, from the journal only or from a snapshot.
+ * Scores are nanoseconds per association: 1000 / score gives millions of associations per second.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MarkdownGatewayRecoveryBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(MarkdownGatewayRecoveryBenchmark.ASSOCIATIONS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MarkdownGatewayRecoveryBenchmark {
+
+    static final int ASSOCIATIONS = 1_000_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"journal", "snapshot"})
+    public String source;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("markdown-recovery");
+        var snapshotAfterBytes = source.equals("snapshot") ? 1 : Long.MAX_VALUE;
+        var gateway = open(snapshotAfterBytes);
+        var markdown = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE,
+                new MarkdownConfiguration(Optional.of(10f), Optional.empty()))).get();
+        for (int i = 0; i < ASSOCIATIONS; i += BATCH_SIZE) {
+            gateway.associateToProducts(markdown, IntStream.range(0, BATCH_SIZE)
+                    .mapToObj(__ -> new ProductID(UUID.randomUUID()))
+                    .collect(Collectors.toList()));
+        }
+        gateway.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public MarkdownGatewayImpl recover() throws IOException {
+        var gateway = open(Long.MAX_VALUE);
+        gateway.close();
+        return gateway;
+    }
+
+    private MarkdownGatewayImpl open(long snapshotAfterBytes) {
+        return new MarkdownGatewayImpl(new GatewayPersistence(new PersistenceConfig() {
+            @Override
+            public boolean enabled() {
+                return true;
+            }
+
+            @Override
+            public String directory() {
+                return directory.toString();
+            }
+
+            @Override
+            public Duration fsyncInterval() {
+                return Duration.ofMillis(5);
+            }
+
+            @Override
+            public int fsyncBatchSize() {
+                return 512;
+            }
+
+            @Override
+            public boolean waitForFsync() {
+                return false;
+            }
+
+            @Override
+            public long snapshotAfterBytes() {
+                return snapshotAfterBytes;
+            }
+        }));
+    }
+}
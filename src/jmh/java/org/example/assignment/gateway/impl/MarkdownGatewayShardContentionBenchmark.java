@@ -0,0 +1,93 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Threads mixing cart lookups with association writes, on a single shard, which is the design before
+ * partitioning, and on 16 and 64 shards. Every thread writes its own sale: it keeps moving its own products
+ * between two markdowns, {@code WRITE_BATCH_SIZE} at a time, in {@code writePercent} of its operations.
+ * Run it for 1 to 64 threads:
+ * <pre>
+ * for t in 1 2 4 8 16 32 64; do
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MarkdownGatewayShardContentionBenchmark -Djmh.args="-t $t"
+ * done
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarkdownGatewayShardContentionBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int MAX_THREADS = 64;
+    private static final int CART_SIZE = 8;
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    @Param({"1", "16", "64"})
+    public int partitions;
+
+    @Param({"1", "10"})
+    public int writePercent;
+
+    private MarkdownGatewayImpl gateway;
+    private ProductID[] products;
+    private MarkdownID[] markdowns;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        gateway = new MarkdownGatewayImpl(partitions);
+        var percentage = new MarkdownConfiguration(Optional.of(10f), Optional.empty());
+        markdowns = new MarkdownID[] {
+                gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get(),
+                gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get()
+        };
+        products = IntStream.range(0, PRODUCTS)
+                .mapToObj(__ -> new ProductID(UUID.randomUUID()))
+                .toArray(ProductID[]::new);
+        gateway.associateToProducts(markdowns[0], Arrays.asList(products));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        List<ProductID> sale;
+        int cursor;
+        int round;
+
+        @Setup(Level.Trial)
+        public void setup(MarkdownGatewayShardContentionBenchmark benchmark) {
+            var saleSize = PRODUCTS / MAX_THREADS;
+            var from = (benchmark.threads.getAndIncrement() % MAX_THREADS) * saleSize;
+            sale = Arrays.asList(benchmark.products).subList(from, from + saleSize);
+        }
+    }
+
+    @Benchmark
+    public Object mixed(ThreadState state) {
+        var random = ThreadLocalRandom.current();
+        if(random.nextInt(100) < writePercent){
+            if(state.cursor + WRITE_BATCH_SIZE > state.sale.size()){
+                state.cursor = 0;
+                state.round++;
+            }
+            gateway.associateToProducts(markdowns[state.round & 1], state.sale.subList(state.cursor, state.cursor + WRITE_BATCH_SIZE));
+            state.cursor += WRITE_BATCH_SIZE;
+            return null;
+        }
+        var cart = new ArrayList<ProductID>(CART_SIZE);
+        for (int i = 0; i < CART_SIZE; i++) {
+            cart.add(products[random.nextInt(PRODUCTS)]);
+        }
+        return gateway.getPoliciesByProductIds(cart, false);
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.assignment.gateway.impl.redis;
+
+import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.model.*;
+import org.example.assignment.testdouble.InProcessRedis;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups per second from 4 threads on the in memory gateway and on the Redis one, one product at a time
+ * or in batches of 100 products. Redis runs in process unless {@code -Dbenchmark.redis=host:port} points to
+ * a real server, which is what the numbers should come from:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=RedisGatewayThroughputBenchmark \
+ *     -Djmh.args="-jvmArgsAppend -Dbenchmark.redis=localhost:6379"
+ * </pre>
+ * Scores are calls per second, a batch call resolves {@code batch} products.
+ * The Redis keys are written under {@code benchmark:} and left in place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RedisGatewayThroughputBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int PROBES = 1 << 16;
+
+    @Param({"memory", "redis"})
+    public String backend;
+
+    @Param({"1", "100"})
+    public int batch;
+
+    private MarkdownGateway gateway;
+    private InProcessRedis redis;
+    private ProductID[] probes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if(backend.equals("memory")){
+            gateway = new MarkdownGatewayImpl();
+        } else {
+            var server = System.getProperty("benchmark.redis");
+            if(server == null){
+                redis = new InProcessRedis();
+                server = "localhost:" + redis.port();
+            }
+            var address = server.split(":");
+            gateway = new RedisMarkdownGateway(address[0], Integer.parseInt(address[1]), "benchmark:", 8, Duration.ofSeconds(5));
+        }
+        var random = new SplittableRandom(42);
+        var products = new ArrayList<ProductID>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new ProductID(new UUID(random.nextLong(), random.nextLong())));
+        }
+        for (int i = 0; i < 16; i++) {
+            var percentage = new MarkdownConfiguration(Optional.of((float) i), Optional.empty());
+            var markdown = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get();
+            gateway.associateToProducts(markdown, products.subList(i * PRODUCTS / 32, (i + 1) * PRODUCTS / 32));
+        }
+        probes = new ProductID[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = products.get(random.nextInt(PRODUCTS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if(gateway instanceof RedisMarkdownGateway redisGateway){
+            redisGateway.close();
+        }
+        if(redis != null){
+            redis.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Object lookup(Cursor cursor) {
+        if(batch == 1){
+            return gateway.getPolicyByProductId(probes[cursor.next++ & (PROBES - 1)]);
+        }
+        var from = cursor.next & (PROBES - 1) & -128;
+        cursor.next += 128;
+        return gateway.getPoliciesByProductIds(Arrays.asList(probes).subList(from, from + batch), false);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.assignment.gateway.impl.replication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.model.*;
+import org.example.assignment.service.FinalPriceCache;
+import org.example.assignment.testdouble.LocalChangeFeed;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replication of association writes of {@code products} products each, through the change log encoding
+ * but without HTTP, which {@code scripts/replication-demo.sh} adds between processes on localhost.
+ * <ul>
+ *     <li>{@code replicate}: a write on the leader then its apply on the follower, from one thread:
+ *     how many changes per second a follower keeps up with.</li>
+ *     <li>{@code visibleOnFollower}: time from a write returning on the leader to the follower having applied it,
+ *     with the follower long polling in background as it does in production.</li>
+ * </ul>
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=ReplicationBenchmark
+ * </pre>
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplicationBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    public abstract static class Nodes {
+
+        @Param({"1", "100"})
+        public int products;
+
+        MarkdownGatewayImpl leader;
+        ChangeLog log;
+        MarkdownGatewayImpl followerGateway;
+        ReplicationFollower follower;
+        MarkdownID[] markdowns;
+        ProductID[] catalog;
+        int cursor;
+
+        void setup(Duration pollWait) throws IOException {
+            log = new ChangeLog(1_000_000);
+            leader = new MarkdownGatewayImpl(log);
+            var percentage = new MarkdownConfiguration(Optional.of(10f), Optional.empty());
+            markdowns = new MarkdownID[] {
+                    leader.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get(),
+                    leader.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get()
+            };
+            var random = new SplittableRandom(42);
+            catalog = new ProductID[PRODUCTS];
+            for (int i = 0; i < PRODUCTS; i++) {
+                catalog[i] = new ProductID(new UUID(random.nextLong(), random.nextLong()));
+            }
+            followerGateway = new MarkdownGatewayImpl(new ChangeLog(1_000_000));
+            follower = new ReplicationFollower(new LocalChangeFeed(leader, log), followerGateway, FinalPriceCache.disabled(),
+                    new SimpleMeterRegistry(), 1000, pollWait, Duration.ofMillis(10));
+        }
+
+        /**
+         * Moves the next products between the two markdowns, so every write changes the state.
+         */
+        void write() {
+            if(cursor + products > PRODUCTS){
+                cursor = 0;
+            }
+            var markdown = markdowns[(cursor / products) & 1];
+            leader.associateToProducts(markdown, Arrays.asList(catalog).subList(cursor, cursor + products));
+            cursor += products;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Direct extends Nodes {
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            setup(Duration.ZERO);
+            follower.sync();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Background extends Nodes {
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            setup(Duration.ofSeconds(1));
+            follower.start(Duration.ofSeconds(10));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            follower.stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int replicate(Direct nodes) throws IOException {
+        nodes.write();
+        return nodes.follower.poll();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long visibleOnFollower(Background nodes) {
+        nodes.write();
+        var sequence = nodes.log.lastSequence();
+        while (nodes.follower.sequence() < sequence) {
+            Thread.onSpinWait();
+        }
+        return sequence;
+    }
+}
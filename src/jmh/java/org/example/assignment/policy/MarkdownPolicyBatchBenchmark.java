@@ -0,0 +1,68 @@
+package org.example.assignment.policy;
+
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue repricing of one million pairs with a single policy: the columnar
+ * {@link MarkdownPolicy#apply(long[], int[], long[])} against {@link MarkdownPolicy#apply(ProductBasket)} in a loop.
+ * Scores are nanoseconds per pair.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MarkdownPolicyBatchBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(MarkdownPolicyBatchBenchmark.PAIRS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarkdownPolicyBatchBenchmark {
+
+    static final int PAIRS = 1_000_000;
+
+    @Param({"PERCENTAGE", "COUNT"})
+    public MarkdownType type;
+
+    private MarkdownPolicy policy;
+    private long[] unitPrices;
+    private int[] quantities;
+    private long[] prices;
+    private ProductBasket[] productBaskets;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        policy = PolicyFactory.create(new MarkdownPolicySpecification(type, type == MarkdownType.PERCENTAGE
+                ? new MarkdownConfiguration(Optional.of(15f), Optional.empty())
+                : new MarkdownConfiguration(Optional.empty(), Optional.of(Map.of(10, 5f, 50, 15f, 100, 25f)))));
+        unitPrices = new long[PAIRS];
+        quantities = new int[PAIRS];
+        prices = new long[PAIRS];
+        productBaskets = new ProductBasket[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            unitPrices[i] = 99 + i % 10_000;
+            quantities[i] = 1 + (i * 7919) % 200;
+            productBaskets[i] = new ProductBasket(new ProductID(new UUID(0, i)), new Price(unitPrices[i]), quantities[i]);
+        }
+    }
+
+    @Benchmark
+    public long[] columnar() {
+        policy.apply(unitPrices, quantities, prices);
+        return prices;
+    }
+
+    @Benchmark
+    public long[] basketLoop() {
+        for (int i = 0; i < PAIRS; i++) {
+            prices[i] = policy.apply(productBaskets[i]).minorUnits();
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.assignment.policy;
+
+import org.example.assignment.model.MarkdownConfiguration;
+import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.MarkdownType;
+import org.example.assignment.model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single {@link MarkdownPolicy#apply(long, int)} for every policy type,
+ * with count policies built from an increasing number of tiers. {@code percentageDoubleBaseline} is the floating point
+ * evaluation that {@link Money} replaced, which the exact policies should match.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownPolicyBenchmark {
+
+    private static final int QUANTITIES = 1024;
+    private static final double DOUBLE_UNIT_PRICE = 9.99;
+    private static final long UNIT_PRICE = Money.fromDouble(DOUBLE_UNIT_PRICE);
+
+    @State(Scope.Thread)
+    public static class Quantities {
+        final int[] quantities = new int[QUANTITIES];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            for (int i = 0; i < QUANTITIES; i++) {
+                quantities[i] = 1 + (i * 7919) % 2000;
+            }
+        }
+
+        int nextQuantity() {
+            return quantities[next++ & (QUANTITIES - 1)];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SimplePolicies {
+        MarkdownPolicy defaultPolicy;
+        MarkdownPolicy percentagePolicy;
+        float discountPercentage = 15f;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            defaultPolicy = PolicyFactory.create(new MarkdownPolicySpecification(
+                    MarkdownType.DEFAULT,
+                    new MarkdownConfiguration(Optional.empty(), Optional.empty())));
+            percentagePolicy = PolicyFactory.create(new MarkdownPolicySpecification(
+                    MarkdownType.PERCENTAGE,
+                    new MarkdownConfiguration(Optional.of(discountPercentage), Optional.empty())));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CountPolicy {
+        @Param({"1", "10", "50", "100"})
+        public int tiers;
+
+        @Param({"10", "100"})
+        public int tierStep;
+
+        MarkdownPolicy policy;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var thresholds = new HashMap<Integer, Float>();
+            for (int i = 1; i <= tiers; i++) {
+                thresholds.put(i * tierStep, (float) i * 90 / tiers);
+            }
+            policy = PolicyFactory.create(new MarkdownPolicySpecification(
+                    MarkdownType.COUNT,
+                    new MarkdownConfiguration(Optional.empty(), Optional.of(thresholds))));
+        }
+    }
+
+    @Benchmark
+    public long defaultPolicy(SimplePolicies policies, Quantities quantities) {
+        return policies.defaultPolicy.apply(UNIT_PRICE, quantities.nextQuantity());
+    }
+
+    @Benchmark
+    public long percentagePolicy(SimplePolicies policies, Quantities quantities) {
+        return policies.percentagePolicy.apply(UNIT_PRICE, quantities.nextQuantity());
+    }
+
+    @Benchmark
+    public double percentageDoubleBaseline(SimplePolicies policies, Quantities quantities) {
+        var fullPrice = DOUBLE_UNIT_PRICE * quantities.nextQuantity();
+        var discount = (fullPrice * policies.discountPercentage) / 100;
+        return fullPrice - discount;
+    }
+
+    @Benchmark
+    public long countPolicy(CountPolicy policy, Quantities quantities) {
+        return policy.policy.apply(UNIT_PRICE, quantities.nextQuantity());
+    }
+}
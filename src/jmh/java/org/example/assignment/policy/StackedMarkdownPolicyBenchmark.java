@@ -0,0 +1,106 @@
+package org.example.assignment.policy;
+
+import org.example.assignment.model.MarkdownConfiguration;
+import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.MarkdownType;
+import org.example.assignment.model.Money;
+import org.example.assignment.model.Price;
+import org.example.assignment.model.ProductBasket;
+import org.example.assignment.model.ProductID;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a stack of markdowns compiled into one evaluator, against chaining the {@code apply(ProductBasket)} of its
+ * layers, each on the price left by the previous one. The chain is only exact for percentages, which don't depend on
+ * the quantity, so the compared stacks are percentages; {@code fusedWithCountTier} puts a 10 tier count layer first.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackedMarkdownPolicyBenchmark {
+
+    private static final int QUANTITIES = 1024;
+    private static final long UNIT_PRICE = Money.fromDouble(9.99);
+    private static final ProductID PRODUCT = new ProductID(UUID.randomUUID());
+
+    @State(Scope.Thread)
+    public static class Quantities {
+        final int[] quantities = new int[QUANTITIES];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            for (int i = 0; i < QUANTITIES; i++) {
+                quantities[i] = 1 + (i * 7919) % 200;
+            }
+        }
+
+        int nextQuantity() {
+            return quantities[next++ & (QUANTITIES - 1)];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Stack {
+        @Param({"1", "2", "4", "8"})
+        public int layers;
+
+        MarkdownPolicy[] chain;
+        MarkdownPolicy fused;
+        MarkdownPolicy fusedWithCountTier;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var specifications = new ArrayList<MarkdownPolicySpecification>();
+            chain = new MarkdownPolicy[layers];
+            for (int i = 0; i < layers; i++) {
+                specifications.add(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE,
+                        new MarkdownConfiguration(Optional.of(5f + i), Optional.empty())));
+                chain[i] = PolicyFactory.create(specifications.get(i));
+            }
+            fused = PolicyFactory.create(stacked(specifications));
+            var thresholds = new HashMap<Integer, Float>();
+            for (int i = 1; i <= 10; i++) {
+                thresholds.put(i * 20, (float) i * 3);
+            }
+            var withCount = new ArrayList<MarkdownPolicySpecification>();
+            withCount.add(new MarkdownPolicySpecification(MarkdownType.COUNT,
+                    new MarkdownConfiguration(Optional.empty(), Optional.of(thresholds))));
+            withCount.addAll(specifications);
+            fusedWithCountTier = PolicyFactory.create(stacked(withCount));
+        }
+
+        private static MarkdownPolicySpecification stacked(List<MarkdownPolicySpecification> layers) {
+            return new MarkdownPolicySpecification(MarkdownType.STACKED,
+                    new MarkdownConfiguration(Optional.empty(), Optional.empty(), Optional.of(layers)));
+        }
+    }
+
+    @Benchmark
+    public long chained(Stack stack, Quantities quantities) {
+        var price = new Price(Money.times(UNIT_PRICE, quantities.nextQuantity()));
+        for (var layer : stack.chain) {
+            price = layer.apply(new ProductBasket(PRODUCT, price, 1));
+        }
+        return price.minorUnits();
+    }
+
+    @Benchmark
+    public long fused(Stack stack, Quantities quantities) {
+        return stack.fused.apply(UNIT_PRICE, quantities.nextQuantity());
+    }
+
+    @Benchmark
+    public long fusedWithCountTier(Stack stack, Quantities quantities) {
+        return stack.fusedWithCountTier.apply(UNIT_PRICE, quantities.nextQuantity());
+    }
+}
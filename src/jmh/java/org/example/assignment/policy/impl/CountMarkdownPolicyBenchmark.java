@@ -0,0 +1,100 @@
+package org.example.assignment.policy.impl;
+
+import org.example.assignment.model.*;
+import org.example.assignment.policy.MarkdownPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled threshold table with the former stream based lookup.
+ * The tier step is large enough to cover both the direct index (small ranges) and the binary search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CountMarkdownPolicyBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int tiers;
+
+    @Param({"10", "1000"})
+    public int tierStep;
+
+    private MarkdownPolicy compiled;
+    private MarkdownPolicy stream;
+    private ProductBasket[] productBaskets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var thresholds = new HashMap<Integer, Float>();
+        for (int i = 1; i <= tiers; i++) {
+            thresholds.put(i * tierStep, (float) i * 90 / tiers);
+        }
+        compiled = new CountMarkdownPolicy(thresholds);
+        stream = new StreamCountMarkdownPolicy(thresholds);
+        productBaskets = new ProductBasket[1024];
+        for (int i = 0; i < productBaskets.length; i++) {
+            var quantity = 1 + (i * 7919) % ((tiers + 1) * tierStep);
+            productBaskets[i] = new ProductBasket(new ProductID(UUID.randomUUID()), Price.of(9.99), quantity);
+        }
+    }
+
+    @Benchmark
+    public Price compiledTable() {
+        return compiled.apply(nextBasket());
+    }
+
+    @Benchmark
+    public Price streamLookup() {
+        return stream.apply(nextBasket());
+    }
+
+    private ProductBasket nextBasket() {
+        return productBaskets[next++ & (productBaskets.length - 1)];
+    }
+
+    /**
+     * The lookup used before thresholds were compiled, kept here as the baseline.
+     */
+    static class StreamCountMarkdownPolicy implements MarkdownPolicy {
+
+        private final TreeMap<Integer, Float> thresholds;
+
+        StreamCountMarkdownPolicy(Map<Integer, Float> thresholds) {
+            this.thresholds = new TreeMap<>(thresholds);
+        }
+
+        @Override
+        public long apply(long unitPrice, int quantity) {
+            var fullPrice = Money.times(unitPrice, quantity);
+            return fullPrice - Money.proportion(fullPrice, Money.rate(findDiscountPercentage(quantity)));
+        }
+
+        @Override
+        public MarkdownPolicySpecification describe() {
+            return new MarkdownPolicySpecification(
+                    MarkdownType.COUNT,
+                    new MarkdownConfiguration(Optional.empty(), Optional.of(thresholds)));
+        }
+
+        private float findDiscountPercentage(int quantity) {
+            return thresholds
+                    .entrySet()
+                    .stream()
+                    .filter(x -> x.getKey() <= quantity)
+                    .map(x -> x.getValue())
+                    .reduce((__, x) -> x)
+                    .orElse(0f);
+        }
+    }
+}
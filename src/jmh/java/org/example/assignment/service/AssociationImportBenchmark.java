@@ -0,0 +1,91 @@
+package org.example.assignment.service;
+
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming import of one million product ids, alone and while other threads keep pricing.
+ * {@code importAssociations} scores are nanoseconds per id: 60000 / score gives millions of ids per minute.
+ * The {@code pricingDuringImport} group reports the pricing latency percentiles while an import runs:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=AssociationImportBenchmark
+ * </pre>
+ */
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AssociationImportBenchmark {
+
+    static final int IDS = 1_000_000;
+    private static final int PRICED_PRODUCTS = 1024;
+    private static final long UNIT_PRICE = Money.fromDouble(9.99);
+
+    @Param({"NDJSON", "CSV"})
+    public ProductIdReader.Format format;
+
+    private MarkdownService markdownService;
+    private MarkdownID markdown;
+    private ProductID[] pricedProducts;
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var gateway = new MarkdownGatewayImpl();
+        markdown = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE,
+                new MarkdownConfiguration(Optional.of(10f), Optional.empty()))).get();
+        markdownService = new MarkdownService(gateway);
+
+        var lines = new StringBuilder(IDS * 40);
+        for (int i = 0; i < IDS; i++) {
+            var id = UUID.randomUUID();
+            lines.append(format == ProductIdReader.Format.NDJSON ? "\"" + id + "\"" : id + ",sku").append('\n');
+        }
+        input = lines.toString().getBytes(StandardCharsets.UTF_8);
+        pricedProducts = new ProductID[PRICED_PRODUCTS];
+        for (int i = 0; i < PRICED_PRODUCTS; i++) {
+            pricedProducts[i] = new ProductID(UUID.randomUUID());
+        }
+        gateway.associateToProducts(markdown, Arrays.asList(pricedProducts));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(IDS)
+    public AssociationImport importAssociations() throws IOException {
+        return markdownService.importAssociations(markdown, new ByteArrayInputStream(input), format).get();
+    }
+
+    @Benchmark
+    @Group("pricingDuringImport")
+    @GroupThreads(3)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long pricing(Cursor cursor) {
+        return markdownService.calculatePrice(pricedProducts[cursor.next++ & (PRICED_PRODUCTS - 1)], UNIT_PRICE, 1);
+    }
+
+    @Benchmark
+    @Group("pricingDuringImport")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public AssociationImport backgroundImport() throws IOException {
+        return markdownService.importAssociations(markdown, new ByteArrayInputStream(input), format).get();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.assignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.metrics.PricingMetrics;
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart pricing over one million associations, sequential against parallel, for carts of 10 to 100K lines.
+ * The cart size at which {@code parallel} starts winning on the target hardware is the value to configure
+ * as {@code pricing.cart.parallel-threshold}. Run with {@code -t} set to the expected concurrent carts
+ * too: when every core is busy with a cart already, splitting them only adds overhead.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=CartPricingBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CartPricingBenchmark {
+
+    private static final int ASSOCIATIONS = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int lines;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private MarkdownService markdownService;
+    private List<ProductBasket> cart;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var gateway = new MarkdownGatewayImpl();
+        var markdown = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE,
+                new MarkdownConfiguration(Optional.of(10f), Optional.empty()))).get();
+        var products = new ArrayList<ProductID>(ASSOCIATIONS);
+        for (int i = 0; i < ASSOCIATIONS; i += BATCH_SIZE) {
+            var batch = new ArrayList<ProductID>(BATCH_SIZE);
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                batch.add(new ProductID(UUID.randomUUID()));
+            }
+            gateway.associateToProducts(markdown, batch);
+            products.addAll(batch);
+        }
+        var random = ThreadLocalRandom.current();
+        cart = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            var productId = i % 2 == 0 ? products.get(random.nextInt(ASSOCIATIONS)) : new ProductID(UUID.randomUUID());
+            cart.add(new ProductBasket(productId, Price.of(9.99), 1 + i % 120));
+        }
+        markdownService = new MarkdownService(gateway,
+                new PricingMetrics(new SimpleMeterRegistry(), gateway, false),
+                FinalPriceCache.disabled(),
+                parallel ? 1 : Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public CartPrice price() {
+        return markdownService.calculateCart(cart);
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.assignment.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.metrics.PricingMetrics;
+import org.example.assignment.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end pricing through the service, for both discounted and not discounted products,
+ * with and without metrics and the final price cache. Run it with the GC profiler to check the primitive path does not allocate,
+ * and with more threads to check the counters don't contend:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=MarkdownServicePricingBenchmark -Djmh.args="-prof gc -t 4"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarkdownServicePricingBenchmark {
+
+    private static final int PRODUCTS = 1024;
+    private static final long UNIT_PRICE = Money.fromDouble(9.99);
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private MarkdownService markdownService;
+    private ProductID[] products;
+    private ProductBasket[] productBaskets;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var gateway = new MarkdownGatewayImpl();
+        var percentage = new MarkdownConfiguration(Optional.of(10f), Optional.empty());
+        var count = new MarkdownConfiguration(Optional.empty(), Optional.of(Map.of(10, 5f, 50, 15f, 100, 25f)));
+        var percentageId = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, percentage)).get();
+        var countId = gateway.createNew(new MarkdownPolicySpecification(MarkdownType.COUNT, count)).get();
+
+        products = new ProductID[PRODUCTS];
+        productBaskets = new ProductBasket[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = new ProductID(UUID.randomUUID());
+            productBaskets[i] = new ProductBasket(products[i], Price.of(9.99), quantity(i));
+            switch (i % 3) {
+                case 0 -> gateway.associateToProducts(percentageId, List.of(products[i]));
+                case 1 -> gateway.associateToProducts(countId, List.of(products[i]));
+                default -> {}
+            }
+        }
+        markdownService = new MarkdownService(gateway,
+                new PricingMetrics(new SimpleMeterRegistry(), gateway, metrics),
+                cache ? new FinalPriceCache(true, 100_000, 16) : FinalPriceCache.disabled(),
+                MarkdownService.DEFAULT_CART_PARALLEL_THRESHOLD);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public long primitivePricing(Cursor cursor) {
+        var i = cursor.next++ & (PRODUCTS - 1);
+        return markdownService.calculatePrice(products[i], UNIT_PRICE, quantity(i));
+    }
+
+    @Benchmark
+    public Price recordPricing(Cursor cursor) {
+        return markdownService.calculatePrice(productBaskets[cursor.next++ & (PRODUCTS - 1)]);
+    }
+
+    private static int quantity(int i) {
+        return 1 + i % 120;
+    }
+}
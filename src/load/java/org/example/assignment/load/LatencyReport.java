@@ -0,0 +1,121 @@
+package org.example.assignment.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of every operation in microseconds, in HdrHistograms with 3 significant digits.
+ * <p>
+ * With a non zero expected interval every latency longer than it is recorded along with the ones the requests
+ * that could not be sent meanwhile would have seen, which is how HdrHistogram corrects the coordinated omission
+ * of a closed model. The open model measures from the time a request was due rather than sent, which needs no
+ * correction. Throughput only counts the requests actually answered.
+ */
+public final class LatencyReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<PricingWorkload.Operation, Histogram> histograms;
+    private final Map<PricingWorkload.Operation, LongAdder> succeeded;
+    private final Map<PricingWorkload.Operation, LongAdder> errors;
+    private final long expectedIntervalMicros;
+    private long startNanos;
+    private long endNanos;
+
+    public LatencyReport(Iterable<PricingWorkload.Operation> operations, long expectedIntervalMicros) {
+        this.histograms = new EnumMap<>(PricingWorkload.Operation.class);
+        this.succeeded = new EnumMap<>(PricingWorkload.Operation.class);
+        this.errors = new EnumMap<>(PricingWorkload.Operation.class);
+        for (var operation : operations) {
+            histograms.put(operation, new ConcurrentHistogram(3));
+            succeeded.put(operation, new LongAdder());
+            errors.put(operation, new LongAdder());
+        }
+        this.expectedIntervalMicros = expectedIntervalMicros;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the request from the time it was due, or sent, to its response. Requests not answered as expected are only counted.
+     */
+    public void record(PricingWorkload.Operation operation, long fromNanos, long toNanos, boolean answered) {
+        if(!answered){
+            errors.get(operation).increment();
+            return;
+        }
+        succeeded.get(operation).increment();
+        var micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(toNanos - fromNanos));
+        histograms.get(operation).recordValueWithExpectedInterval(micros, expectedIntervalMicros);
+    }
+
+    /**
+     * All operations together.
+     */
+    public Histogram total() {
+        var total = new Histogram(3);
+        histograms.values().forEach(total::add);
+        return total;
+    }
+
+    public long requestCount() {
+        return succeeded.values().stream().mapToLong(LongAdder::sum).sum() + errorCount();
+    }
+
+    public long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * One line per operation and the total: requests, errors, throughput and latency percentiles in milliseconds.
+     */
+    public void print(PrintStream out) {
+        var seconds = (endNanos - startNanos) / 1e9;
+        out.printf("%-12s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        histograms.forEach((operation, histogram) -> printLine(out, operation.label(), histogram,
+                succeeded.get(operation).sum() + errors.get(operation).sum(), errors.get(operation).sum(), seconds));
+        printLine(out, "total", total(), requestCount(), errorCount(), seconds);
+        if(expectedIntervalMicros > 0){
+            out.printf("Corrected for coordinated omission with an expected interval of %d us%n", expectedIntervalMicros);
+        }
+    }
+
+    /**
+     * Writes the full percentile distribution of every operation, in milliseconds, as HdrHistogram prints it.
+     */
+    public void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (var entry : histograms.entrySet()) {
+            try (var out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey().label() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        try (var out = new PrintStream(Files.newOutputStream(directory.resolve("total.hgrm")))) {
+            total().outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static void printLine(PrintStream out, String label, Histogram histogram, long requests, long errors, double seconds) {
+        out.printf("%-12s %10d %8d %10.1f", label, requests, errors, requests / seconds);
+        for (var percentile : PERCENTILES) {
+            out.printf(" %9.3f", histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf(" %9.3f%n", histogram.getMaxValue() / 1000.0);
+    }
+}
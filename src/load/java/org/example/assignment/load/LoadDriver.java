@@ -0,0 +1,184 @@
+package org.example.assignment.load;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a mix of pricing requests against a running instance and reports throughput and latency percentiles.
+ * <p>
+ * The open model sends requests at a fixed rate whatever the responses, as independent clients do, and measures
+ * every request from the time it was due: when the instance stalls, the requests that should have been sent
+ * meanwhile show the wait in their latency instead of not being sent at all. The closed model has a fixed number
+ * of users, each sending its next request once the previous one was answered, as a connection pool does; its
+ * latencies are corrected for that coordinated omission by HdrHistogram, see {@link LatencyReport}.
+ * <p>
+ * Requests go through the asynchronous JDK HttpClient, so a few threads drive any number of requests in flight.
+ * <pre>
+ * mvn package && java -jar target/quarkus-app/quarkus-run.jar &
+ * mvn -Pload test-compile exec:exec -Dload.args="--rate=2000 --duration=60s"
+ * </pre>
+ * {@code scripts/load-test.sh} does both, against an instance it starts and stops.
+ */
+public final class LoadDriver {
+
+    private static final long SPIN_NANOS = 100_000;
+    private static final long DRAIN_SECONDS = 60;
+
+    private final LoadOptions options;
+    private final ExecutorService executor;
+    private final PricingWorkload workload;
+
+    public LoadDriver(LoadOptions options) {
+        this.options = options;
+        this.executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            var thread = new Thread(r, "load-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+        this.workload = new PricingWorkload(client, options);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.out.println(options.model() == LoadOptions.Model.OPEN
+                ? String.format("Open model at %.0f requests/s against %s, %d s warmup, %d s measured",
+                        options.rate(), options.target(), options.warmup().toSeconds(), options.duration().toSeconds())
+                : String.format("Closed model with %d users against %s, %d s warmup, %d s measured",
+                        options.users(), options.target(), options.warmup().toSeconds(), options.duration().toSeconds()));
+        var report = new LoadDriver(options).run();
+        report.print(System.out);
+        if(options.histograms().isPresent()){
+            report.writeHistograms(options.histograms().get());
+        }
+        System.exit(report.errorCount() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Sets up the catalog, applies the warmup then the measured load, and removes the markdowns of the run.
+     * A driver runs once.
+     */
+    public LatencyReport run() throws IOException, InterruptedException {
+        try {
+            workload.setUp();
+            try {
+                var warmup = apply(options.warmup(), 0);
+                var expectedInterval = options.model() == LoadOptions.Model.CLOSED
+                        ? options.think().toNanos() / 1000 + Math.round(warmup.total().getMean())
+                        : 0;
+                return apply(options.duration(), expectedInterval);
+            } finally {
+                workload.tearDown();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LatencyReport apply(Duration duration, long expectedIntervalMicros) throws InterruptedException {
+        var report = new LatencyReport(options.mix().keySet(), expectedIntervalMicros);
+        report.start();
+        if(options.model() == LoadOptions.Model.OPEN){
+            applyOpen(duration, report);
+        } else {
+            applyClosed(duration, report);
+        }
+        report.stop();
+        return report;
+    }
+
+    /**
+     * Sends every request when due. Past the limit of requests in flight the next one waits for a response,
+     * which counts in its latency since it is measured from when it was due.
+     */
+    private void applyOpen(Duration duration, LatencyReport report) throws InterruptedException {
+        var random = new SplittableRandom(options.seed());
+        var inFlight = new Semaphore(options.maxInFlight());
+        var interval = 1e9 / options.rate();
+        var start = System.nanoTime();
+        var end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            var due = start + (long) (i * interval);
+            if(due - end >= 0){
+                break;
+            }
+            waitUntil(due);
+            inFlight.acquire();
+            send(workload.next(random), random, due, report).whenComplete((__, ___) -> inFlight.release());
+        }
+        if(!inFlight.tryAcquire(options.maxInFlight(), DRAIN_SECONDS, TimeUnit.SECONDS)){
+            System.err.printf("Requests still in flight after %d s, left out of the report%n", DRAIN_SECONDS);
+        }
+    }
+
+    private void applyClosed(Duration duration, LatencyReport report) throws InterruptedException {
+        var end = System.nanoTime() + duration.toNanos();
+        var done = new CountDownLatch(options.users());
+        Executor thinking = options.think().isZero()
+                ? executor
+                : CompletableFuture.delayedExecutor(options.think().toNanos(), TimeUnit.NANOSECONDS, executor);
+        var seeds = new SplittableRandom(options.seed());
+        for (int i = 0; i < options.users(); i++) {
+            var random = seeds.split();
+            executor.execute(() -> sendNext(random, end, report, done, thinking));
+        }
+        done.await();
+    }
+
+    /**
+     * Sends the next request of a closed model user, then schedules the following one once it is answered.
+     */
+    private void sendNext(SplittableRandom random, long end, LatencyReport report, CountDownLatch done, Executor thinking) {
+        var now = System.nanoTime();
+        if(now - end >= 0){
+            done.countDown();
+            return;
+        }
+        send(workload.next(random), random, now, report)
+                .whenCompleteAsync((__, ___) -> sendNext(random, end, report, done, thinking), thinking);
+    }
+
+    private CompletableFuture<Boolean> send(PricingWorkload.Operation operation, SplittableRandom random, long fromNanos,
+                                            LatencyReport report) {
+        CompletableFuture<Boolean> response;
+        try {
+            response = workload.send(operation, random);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((answered, error) ->
+                report.record(operation, fromNanos, System.nanoTime(), error == null && answered));
+    }
+
+    private static void waitUntil(long due) {
+        for (var remaining = due - System.nanoTime(); remaining > 0; remaining = due - System.nanoTime()) {
+            if(remaining > SPIN_NANOS){
+                LockSupport.parkNanos(remaining - SPIN_NANOS / 2);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
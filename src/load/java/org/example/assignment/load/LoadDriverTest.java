@@ -0,0 +1,37 @@
+package org.example.assignment.load;
+
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A short run of every operation against the instance the test starts, as a smoke test of the driver.
+ */
+@QuarkusTest
+class LoadDriverTest {
+
+    @TestHTTPResource("/")
+    URI target;
+
+    @Test
+    void answerEveryRequestOfTheMix() throws Exception {
+        for (var model : LoadOptions.Model.values()) {
+            var options = LoadOptions.defaults()
+                    .withTarget(target)
+                    .withLoad(model, 200, Duration.ofSeconds(1), Duration.ofSeconds(2))
+                    .withCatalog(2_000, 100);
+
+            var report = new LoadDriver(options).run();
+
+            report.print(System.out);
+            assertTrue(report.requestCount() > 0);
+            assertEquals(0, report.errorCount());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.assignment.load;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Options of a load run, from {@code --name=value} arguments, every one of them with a default.
+ */
+public record LoadOptions(URI target,
+                          Model model,
+                          double rate,
+                          int users,
+                          Duration think,
+                          Duration warmup,
+                          Duration duration,
+                          Map<PricingWorkload.Operation, Integer> mix,
+                          int products,
+                          int markdowns,
+                          int batchSize,
+                          int associationSize,
+                          int maxInFlight,
+                          Optional<Path> histograms,
+                          long seed) {
+
+    public static final String USAGE = """
+            --target=http://localhost:8080   instance under load
+            --model=open|closed              open: requests arrive at --rate whatever the responses,
+                                             closed: --users each send a request once the previous one completed
+            --rate=1000                      requests per second of the open model
+            --users=32                       concurrent users of the closed model
+            --think=0ms                      pause of a closed model user between requests
+            --warmup=10s                     load applied before measuring
+            --duration=30s                   load measured
+            --mix=finalprice=80,batch=5,read=6,update=2,create=1,delete=1,associate=5
+                                             relative weights of the operations
+            --products=100000                products of the catalog, half of them associated to markdowns
+            --markdowns=10                   markdowns the products are associated to
+            --batch-size=100                 baskets of a batch pricing request
+            --association-size=1000          products of an association request
+            --max-in-flight=10000            requests of the open model in flight before arrivals wait
+            --histograms=<directory>         also writes the full percentile distribution of every operation
+            --seed=42                        seed of the products and of the request sequence
+            """;
+
+    public enum Model {
+        OPEN, CLOSED
+    }
+
+    public static LoadOptions defaults() {
+        return parse(new String[0]);
+    }
+
+    public static LoadOptions parse(String[] args) {
+        var values = new HashMap<String, String>();
+        for (var arg : args) {
+            if(!arg.startsWith("--") || !arg.contains("=")){
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        var options = new LoadOptions(
+                URI.create(take(values, "target", "http://localhost:8080")),
+                Model.valueOf(take(values, "model", "open").toUpperCase()),
+                Double.parseDouble(take(values, "rate", "1000")),
+                Integer.parseInt(take(values, "users", "32")),
+                parseDuration(take(values, "think", "0ms")),
+                parseDuration(take(values, "warmup", "10s")),
+                parseDuration(take(values, "duration", "30s")),
+                parseMix(take(values, "mix", "finalprice=80,batch=5,read=6,update=2,create=1,delete=1,associate=5")),
+                Integer.parseInt(take(values, "products", "100000")),
+                Integer.parseInt(take(values, "markdowns", "10")),
+                Integer.parseInt(take(values, "batch-size", "100")),
+                Integer.parseInt(take(values, "association-size", "1000")),
+                Integer.parseInt(take(values, "max-in-flight", "10000")),
+                Optional.ofNullable(values.remove("histograms")).map(Path::of),
+                Long.parseLong(take(values, "seed", "42")));
+        if(!values.isEmpty()){
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        return options;
+    }
+
+    public LoadOptions withTarget(URI target) {
+        return new LoadOptions(target, model, rate, users, think, warmup, duration, mix, products, markdowns, batchSize,
+                associationSize, maxInFlight, histograms, seed);
+    }
+
+    public LoadOptions withLoad(Model model, double rate, Duration warmup, Duration duration) {
+        return new LoadOptions(target, model, rate, users, think, warmup, duration, mix, products, markdowns, batchSize,
+                associationSize, maxInFlight, histograms, seed);
+    }
+
+    public LoadOptions withCatalog(int products, int associationSize) {
+        return new LoadOptions(target, model, rate, users, think, warmup, duration, mix, products, markdowns, batchSize,
+                associationSize, maxInFlight, histograms, seed);
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        var value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Durations as {@code 500ms}, {@code 30s} or {@code 2m}.
+     */
+    static Duration parseDuration(String value) {
+        if(value.endsWith("ms")){
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        } else if(value.endsWith("s")){
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        } else if(value.endsWith("m")){
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        throw new IllegalArgumentException("Invalid duration " + value + ", expected 500ms, 30s or 2m");
+    }
+
+    static Map<PricingWorkload.Operation, Integer> parseMix(String value) {
+        var mix = new EnumMap<PricingWorkload.Operation, Integer>(PricingWorkload.Operation.class);
+        for (var entry : value.split(",")) {
+            var parts = entry.split("=");
+            if(parts.length != 2){
+                throw new IllegalArgumentException("Invalid mix entry " + entry + ", expected operation=weight");
+            }
+            var weight = Integer.parseInt(parts[1].trim());
+            if(weight > 0){
+                mix.put(PricingWorkload.Operation.named(parts[0].trim()), weight);
+            }
+        }
+        if(mix.isEmpty()){
+            throw new IllegalArgumentException("No operation in the mix " + value);
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,234 @@
+package org.example.assignment.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Requests of the pricing API, picked by weight from a mix, over a catalog of products set up on the instance.
+ * <p>
+ * Half of the products are associated to the markdowns of the run, so prices are looked up for discounted and
+ * full price products alike. Updates and associations write to these markdowns, which the run deletes at the end,
+ * along with the ones created by the {@code create} operation and not deleted yet.
+ */
+public final class PricingWorkload {
+
+    private static final String MARKDOWNS = "/v1/pricing/markdowns";
+    private static final String FINAL_PRICE = "/v1/pricing/finalprice";
+    private static final String BATCH = "/v1/pricing/finalprice/batch";
+    private static final String JSON = "application/json";
+    private static final int SETUP_CHUNK = 10_000;
+
+    public enum Operation {
+        FINAL_PRICE("finalprice"),
+        BATCH("batch"),
+        READ("read"),
+        UPDATE("update"),
+        CREATE("create"),
+        DELETE("delete"),
+        ASSOCIATE("associate");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        static Operation named(String label) {
+            return Arrays.stream(values())
+                    .filter(x -> x.label.equals(label))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown operation " + label));
+        }
+    }
+
+    private final HttpClient client;
+    private final URI target;
+    private final LoadOptions options;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final UUID[] products;
+    private final List<UUID> markdowns;
+    private final ConcurrentLinkedDeque<UUID> created;
+
+    public PricingWorkload(HttpClient client, LoadOptions options) {
+        this.client = client;
+        this.target = options.target();
+        this.options = options;
+        this.operations = options.mix().keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        var total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += options.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        var random = new SplittableRandom(options.seed());
+        this.products = new UUID[options.products()];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = randomUUID(random);
+        }
+        this.markdowns = new ArrayList<>();
+        this.created = new ConcurrentLinkedDeque<>();
+    }
+
+    /**
+     * Creates the markdowns of the run and associates the first half of the products to them, in turn.
+     */
+    public void setUp() throws IOException, InterruptedException {
+        for (int i = 0; i < options.markdowns(); i++) {
+            var response = send(request(MARKDOWNS).POST(body(markdown(10 + i))).build());
+            markdowns.add(markdownIdOf(response));
+        }
+        var associated = products.length / 2;
+        for (int from = 0; from < associated; from += SETUP_CHUNK) {
+            var chunk = Arrays.asList(products).subList(from, Math.min(associated, from + SETUP_CHUNK));
+            var markdown = markdowns.get(from / SETUP_CHUNK % markdowns.size());
+            send(request(MARKDOWNS + "/" + markdown + "/associations").POST(body(productIds(chunk))).build());
+        }
+    }
+
+    public void tearDown() throws IOException, InterruptedException {
+        var markdownIds = new ArrayList<>(markdowns);
+        markdownIds.addAll(created);
+        for (var markdown : markdownIds) {
+            client.send(request(MARKDOWNS + "/" + markdown).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+        }
+        markdowns.clear();
+        created.clear();
+    }
+
+    /**
+     * The next operation of the mix, drawn with {@code random}.
+     */
+    public Operation next(SplittableRandom random) {
+        var draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if(draw < cumulativeWeights[i]){
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    /**
+     * Sends the request of the operation, completing with whether the instance answered it as expected.
+     */
+    public CompletableFuture<Boolean> send(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case FINAL_PRICE -> sendAsync(request(FINAL_PRICE)
+                    .method("GET", body(basket(product(random), random)))
+                    .build(), false);
+            case BATCH -> sendAsync(request(BATCH).POST(body(baskets(random))).build(), false);
+            case READ -> sendAsync(request(MARKDOWNS + "/" + markdown(random)).GET().build(), false);
+            case UPDATE -> sendAsync(request(MARKDOWNS + "/" + markdown(random))
+                    .method("PATCH", body(markdown(1 + random.nextInt(90))))
+                    .build(), false);
+            case CREATE -> client.sendAsync(request(MARKDOWNS).POST(body(markdown(1 + random.nextInt(90)))).build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> {
+                        if(response.statusCode() != 200){
+                            return false;
+                        }
+                        created.add(markdownIdOf(response));
+                        return true;
+                    });
+            case DELETE -> {
+                var markdown = created.poll();
+                yield sendAsync(request(MARKDOWNS + "/" + (markdown != null ? markdown : UUID.randomUUID())).DELETE().build(),
+                        markdown == null);
+            }
+            case ASSOCIATE -> {
+                var from = random.nextInt(Math.max(1, products.length - options.associationSize()));
+                var chunk = Arrays.asList(products).subList(from, Math.min(products.length, from + options.associationSize()));
+                yield sendAsync(request(MARKDOWNS + "/" + markdown(random) + "/associations").POST(body(productIds(chunk))).build(), false);
+            }
+        };
+    }
+
+    /**
+     * A delete finding nothing to delete, when creates did not keep up, expects a 404.
+     */
+    private CompletableFuture<Boolean> sendAsync(HttpRequest request, boolean notFound) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> notFound ? response.statusCode() == 404 : response.statusCode() / 100 == 2);
+    }
+
+    private HttpResponse<Void> send(HttpRequest request) throws IOException, InterruptedException {
+        var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if(response.statusCode() != 200){
+            throw new IOException(request.method() + " " + request.uri() + " answered " + response.statusCode());
+        }
+        return response;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(target.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", JSON)
+                .header("Accept", JSON);
+    }
+
+    /**
+     * A version 4 UUID as {@link UUID#randomUUID()} makes, but from the seed of the run.
+     */
+    private static UUID randomUUID(SplittableRandom random) {
+        return new UUID(random.nextLong() & ~0xf000L | 0x4000L, random.nextLong() & ~(0xcL << 60) | (0x8L << 60));
+    }
+
+    private UUID product(SplittableRandom random) {
+        return products[random.nextInt(products.length)];
+    }
+
+    private UUID markdown(SplittableRandom random) {
+        return markdowns.get(random.nextInt(markdowns.size()));
+    }
+
+    private String baskets(SplittableRandom random) {
+        var json = new StringBuilder(options.batchSize() * 96).append('[');
+        for (int i = 0; i < options.batchSize(); i++) {
+            json.append(i > 0 ? "," : "").append(basket(product(random), random));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String basket(UUID product, SplittableRandom random) {
+        return "{\"productId\":\"" + product + "\",\"productPrice\":" + (1 + random.nextInt(10_000)) / 100.0
+                + ",\"quantity\":" + (1 + random.nextInt(100)) + "}";
+    }
+
+    private static String markdown(int percentage) {
+        return "{\"type\":\"PERCENTAGE\",\"percentage\":" + percentage + "}";
+    }
+
+    private static String productIds(List<UUID> products) {
+        var json = new StringBuilder(products.size() * 40).append('[');
+        for (int i = 0; i < products.size(); i++) {
+            json.append(i > 0 ? ",\"" : "\"").append(products.get(i)).append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    private static HttpRequest.BodyPublisher body(String json) {
+        return HttpRequest.BodyPublishers.ofString(json);
+    }
+
+    private static UUID markdownIdOf(HttpResponse<?> response) {
+        var location = response.headers().firstValue("Location")
+                .orElseThrow(() -> new IllegalStateException("No location for the created markdown"));
+        return UUID.fromString(location.substring(location.lastIndexOf('/') + 1));
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.assignment.controller;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+import org.example.assignment.controller.codec.PricingCodec;
+import org.example.assignment.model.ProductBasket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads baskets and writes prices in the {@link PricingCodec} binary format.
+ */
+@Provider
+@Consumes(PricingCodec.MEDIA_TYPE)
+@Produces(PricingCodec.MEDIA_TYPE)
+public class BinaryPricingProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == ProductBasket.class || type == List.class && isListOf(genericType, ProductBasket.class);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        try {
+            return ProductBasket.class.equals(type)
+                    ? PricingCodec.readBasket(entityStream)
+                    : PricingCodec.readBaskets(entityStream);
+        } catch (IOException e) {
+            throw new WebApplicationException(e.getMessage(), e, Response.Status.BAD_REQUEST);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == double[].class || type == Double.class;
+    }
+
+    @Override
+    public void writeTo(Object prices, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        if(prices instanceof double[] batch){
+            PricingCodec.writePrices(entityStream, batch);
+        } else {
+            PricingCodec.writePrice(entityStream, (Double) prices);
+        }
+    }
+
+    private static boolean isListOf(Type genericType, Class<?> elementType) {
+        return genericType instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] == elementType;
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.assignment.controller;
+
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import org.example.assignment.model.Revision;
+
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Validators of responses derived from a revision of the markdowns: a strong {@code ETag} made of its version and
+ * of what else tells the representation apart, and its time as {@code Last-Modified}. Preconditions are evaluated
+ * before anything is looked up or serialized, so a client or cache revalidating an unchanged response only costs
+ * reading the revision.
+ */
+class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    static EntityTag tagOf(Revision revision, String variant) {
+        return new EntityTag(variant.isEmpty() ? Long.toString(revision.version()) : revision.version() + "-" + variant);
+    }
+
+    /**
+     * The 304 response when {@code If-None-Match}, or else {@code If-Modified-Since}, still matches.
+     */
+    static Optional<Response> notModified(Request request, Revision revision, EntityTag tag) {
+        var lastModified = lastModified(revision);
+        var response = request.evaluatePreconditions(lastModified, tag);
+        return response != null ? Optional.of(response.tag(tag).lastModified(lastModified).build()) : Optional.empty();
+    }
+
+    static Response.ResponseBuilder validated(Response.ResponseBuilder response, Revision revision, EntityTag tag) {
+        return response.tag(tag).lastModified(lastModified(revision));
+    }
+
+    /**
+     * In whole seconds, as sent in the header, so that {@code If-Modified-Since} compares equal to it.
+     */
+    private static Date lastModified(Revision revision) {
+        return Date.from(revision.modified().truncatedTo(ChronoUnit.SECONDS));
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.assignment.controller;
+
+import org.example.assignment.controller.dto.FinalPriceRequest;
+import org.example.assignment.controller.dto.FinalPriceViolationDTO;
+import org.example.assignment.model.Money;
+import org.example.assignment.model.ProductBasket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Validates a whole batch of {@link FinalPriceRequest} in a single pass, applying the same rules
+ * declared on the DTO without going through Hibernate Validator for every element.
+ */
+class FinalPriceRequestValidator {
+
+    private static final String NIL_UUID = "00000000-0000-0000-0000-000000000000";
+    private static final UUID NIL = new UUID(0, 0);
+    private static final int VERSION = 14;
+    private static final int VARIANT = 19;
+    private static final int RESERVED_VARIANT = 7;
+    private static final String OUT_OF_RANGE = "is out of range for its quantity";
+    private static final String CART_OUT_OF_RANGE = "puts the cart total out of range";
+
+    private FinalPriceRequestValidator() {
+    }
+
+    static List<FinalPriceViolationDTO> validate(List<FinalPriceRequest> requests) {
+        var violations = new ArrayList<FinalPriceViolationDTO>();
+        for (int i = 0; i < requests.size(); i++) {
+            var request = requests.get(i);
+            if(request == null){
+                violations.add(new FinalPriceViolationDTO(i, "request", "must not be null"));
+                continue;
+            }
+            if(request.productId == null || request.productId.isBlank()){
+                violations.add(new FinalPriceViolationDTO(i, "productId", "must not be blank"));
+            } else if(!isUUID(request.productId)){
+                violations.add(new FinalPriceViolationDTO(i, "productId", "must be a valid UUID"));
+            }
+            if(request.productPrice == null){
+                violations.add(new FinalPriceViolationDTO(i, "productPrice", "must not be null"));
+            } else {
+                validatePrice(violations, i, request.productPrice, request.quantity != null ? request.quantity : 1);
+            }
+            if(request.quantity == null){
+                violations.add(new FinalPriceViolationDTO(i, "quantity", "must not be null"));
+            } else if(request.quantity <= 0){
+                violations.add(new FinalPriceViolationDTO(i, "quantity", "must be greater than 0"));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Same rules for the lines of a cart, whose total must fit a {@code long} as well. The total is checked on the
+     * prices before markdowns, which usually lower it, reporting the line past which it is out of range.
+     */
+    static List<FinalPriceViolationDTO> validateCart(List<FinalPriceRequest> lines) {
+        var violations = validate(lines);
+        if(!violations.isEmpty()){
+            return violations;
+        }
+        var total = 0L;
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            var linePrice = Money.times(Money.fromDouble(line.productPrice), line.quantity);
+            if(total > Long.MAX_VALUE - linePrice){
+                violations.add(cartOutOfRange(i));
+                break;
+            }
+            total += linePrice;
+        }
+        return violations;
+    }
+
+    /**
+     * Violation of the line past which the total of a cart is out of range, before or after markdowns.
+     */
+    static FinalPriceViolationDTO cartOutOfRange(int index) {
+        return new FinalPriceViolationDTO(index, "productPrice", CART_OUT_OF_RANGE);
+    }
+
+    /**
+     * Same rules for baskets decoded from the binary format, where the product id is already a UUID.
+     */
+    static List<FinalPriceViolationDTO> validateBaskets(List<ProductBasket> productBaskets) {
+        var violations = new ArrayList<FinalPriceViolationDTO>();
+        for (int i = 0; i < productBaskets.size(); i++) {
+            var productBasket = productBaskets.get(i);
+            if(!isUUID(productBasket.productID().id())){
+                violations.add(new FinalPriceViolationDTO(i, "productId", "must be a valid UUID"));
+            }
+            if(productBasket.productPrice().minorUnits() <= 0){
+                violations.add(new FinalPriceViolationDTO(i, "productPrice", "must be greater than 0"));
+            } else if(!Money.fits(productBasket.productPrice().minorUnits(), productBasket.quantity())){
+                violations.add(new FinalPriceViolationDTO(i, "productPrice", OUT_OF_RANGE));
+            }
+            if(productBasket.quantity() <= 0){
+                violations.add(new FinalPriceViolationDTO(i, "quantity", "must be greater than 0"));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Whether a unit price can be priced exactly: it converts to a positive amount of minor units
+     * and its line total fits a {@code long}.
+     */
+    static boolean isPriceable(double unitPrice, int quantity) {
+        return Money.fits(unitPrice, quantity) && Money.fromDouble(unitPrice) > 0;
+    }
+
+    private static void validatePrice(List<FinalPriceViolationDTO> violations, int index, double unitPrice, int quantity) {
+        if(!Money.fits(unitPrice, quantity)){
+            violations.add(new FinalPriceViolationDTO(index, "productPrice", OUT_OF_RANGE));
+        } else if(Money.fromDouble(unitPrice) <= 0){
+            violations.add(new FinalPriceViolationDTO(index, "productPrice", "must be greater than 0"));
+        }
+    }
+
+    private static boolean isUUID(UUID value) {
+        return !NIL.equals(value) && value.version() != 0 && value.variant() != RESERVED_VARIANT;
+    }
+
+    /**
+     * As the {@code @UUID} of {@link FinalPriceRequest#productId}: 32 hex digits of either case grouped by dashes,
+     * a version from 1 to 15 and the NCS, RFC 4122 or Microsoft variant, that is anything but the reserved
+     * {@code 111x} one.
+     */
+    private static boolean isUUID(String value) {
+        if(value.length() != 36 || NIL_UUID.equals(value)){
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(i == 8 || i == 13 || i == 18 || i == 23){
+                if(c != '-'){
+                    return false;
+                }
+                continue;
+            }
+            int digit = (c >= '0' && c <= '9') ? c - '0'
+                    : (c >= 'a' && c <= 'f') ? c - 'a' + 10
+                    : (c >= 'A' && c <= 'F') ? c - 'A' + 10
+                    : -1;
+            if(digit < 0){
+                return false;
+            }
+            if((i == VERSION && digit == 0) || (i == VARIANT && digit >= 0xe)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.assignment.controller;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.example.assignment.gateway.impl.replication.ReplicationConfig;
+
+import java.net.URI;
+
+/**
+ * On a follower, sends markdown writes to the leader with a 307, which clients repeat there with the same method
+ * and body: a write applied on the follower alone would never reach the other nodes.
+ * Replication requests go to the leader too, followers are not chained. Pricing, cart POSTs included, stays local.
+ */
+@Provider
+public class FollowerRedirectFilter implements ContainerRequestFilter {
+
+    private static final String MARKDOWNS = "/v1/pricing/markdowns";
+    private static final String REPLICATION = "/v1/replication";
+
+    @Inject
+    private ReplicationConfig replicationConfig;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if(replicationConfig.leader().isEmpty()){
+            return;
+        }
+        var uri = request.getUriInfo().getRequestUri();
+        var path = uri.getRawPath();
+        var write = !HttpMethod.GET.equals(request.getMethod()) && !HttpMethod.HEAD.equals(request.getMethod());
+        if(write && path.startsWith(MARKDOWNS) || path.startsWith(REPLICATION)){
+            var target = URI.create(replicationConfig.leader().get())
+                    .resolve(uri.getRawQuery() != null ? path + "?" + uri.getRawQuery() : path);
+            request.abortWith(Response.temporaryRedirect(target).build());
+        }
+    }
+}
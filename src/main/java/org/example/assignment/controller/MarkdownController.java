@@ -1,50 +1,119 @@
 package org.example.assignment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.example.assignment.controller.dto.AssociationImportDTO;
 import org.example.assignment.controller.dto.MarkdownDTO;
+import org.example.assignment.controller.dto.MarkdownEventDTO;
 import org.example.assignment.model.*;
+import org.example.assignment.service.MarkdownEvents;
 import org.example.assignment.service.MarkdownService;
+import org.example.assignment.service.ProductIdReader;
 import org.jboss.resteasy.annotations.jaxrs.PathParam;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Path("/v1/pricing/markdowns")
 public class MarkdownController {
 
+    static final String NDJSON = "application/x-ndjson";
+    static final String CSV = "text/csv";
+    static final int PAGE_SIZE = 256;
+    static final int MAX_LIMIT = 1000;
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
     @Inject
     @Named("MarkdownService")
     private MarkdownService markdownService;
 
+    @Inject
+    @Named("MarkdownEvents")
+    private MarkdownEvents markdownEvents;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    /**
+     * Without a limit every markdown is streamed, a page at a time, so memory does not grow with the catalog.
+     * With a limit a single page is returned and the {@code Link} header points to the next one.
+     * Accepting {@code application/x-ndjson} writes one markdown per line instead of a JSON array.
+     * The validators are the revision of the whole gateway, read before the first page.
+     */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response getAll() {
-        var markdowns = markdownService
-                .retrieveAllPolicies()
-                .stream()
-                .map(x -> toMarkdownDTO(x))
-                .collect(Collectors.toList());
-        return Response.ok(markdowns).build();
+    @Produces({MediaType.APPLICATION_JSON, NDJSON})
+    public Response getAll(@QueryParam("cursor") String cursor,
+                           @QueryParam("limit") Integer limit,
+                           @HeaderParam(HttpHeaders.ACCEPT) String accept,
+                           @Context Request request) {
+        if(limit != null && (limit < 1 || limit > MAX_LIMIT)){
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        var ndjson = accept != null && accept.contains(NDJSON);
+        var revision = markdownService.retrieveRevision();
+        var tag = ConditionalRequests.tagOf(revision, ndjson ? "ndjson" : "");
+        var notModified = ConditionalRequests.notModified(request, revision, tag);
+        if(notModified.isPresent()){
+            return notModified.get();
+        }
+        MarkdownPage first;
+        try {
+            first = markdownService.retrievePolicies(Optional.ofNullable(cursor), limit != null ? limit : PAGE_SIZE);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        StreamingOutput markdowns = out -> writeMarkdowns(out, first, limit == null, ndjson);
+        var response = ConditionalRequests.validated(Response.ok(markdowns, ndjson ? NDJSON : MediaType.APPLICATION_JSON), revision, tag);
+        if(limit != null && first.nextCursor().isPresent()){
+            response.header("Link", "</v1/pricing/markdowns?limit=" + limit + "&cursor=" + first.nextCursor().get() + ">; rel=\"next\"");
+        }
+        return response.build();
     }
 
+    /**
+     * The validators are the revision of the markdown, read before it, so a conditional request for an unchanged
+     * markdown gets a 304 without the markdown being looked up.
+     */
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getById(@PathParam("id") UUID id) {
+    public Response getById(@PathParam("id") UUID id, @Context Request request) {
+        var markdownId = new MarkdownID(id);
+        var revision = markdownService.retrievePolicyRevision(markdownId);
+        if(revision.isEmpty()){
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        var tag = ConditionalRequests.tagOf(revision.get(), "");
+        var notModified = ConditionalRequests.notModified(request, revision.get(), tag);
+        if(notModified.isPresent()){
+            return notModified.get();
+        }
         var result = new Object() {Response value = Response.status(Response.Status.NOT_FOUND).build(); };
         markdownService
-                .retrievePolicy(new MarkdownID(id))
+                .retrievePolicy(markdownId)
                 .ifPresentOrElse(
-                        x -> result.value = Response.ok(toMarkdownDTO(x)).build(),
+                        x -> result.value = ConditionalRequests.validated(Response.ok(toMarkdownDTO(x)), revision.get(), tag).build(),
                         () -> {}
                 );
         return result.value;
@@ -54,6 +123,9 @@ public class MarkdownController {
     @Consumes(MediaType.APPLICATION_JSON)
     public Response createNew(@Valid MarkdownDTO markdown) {
         var result = new Object() {Response value = Response.status(Response.Status.BAD_REQUEST).build(); };
+        if(!validLayers(markdown)){
+            return result.value;
+        }
         markdownService
                 .createPolicy(toMarkdownSpecification(markdown))
                 .ifPresentOrElse(
@@ -84,6 +156,9 @@ public class MarkdownController {
     @Consumes(MediaType.APPLICATION_JSON)
     public Response update(@PathParam("id") UUID id, @Valid MarkdownDTO markdown) {
         var result = new Object() {Response value = Response.status(Response.Status.BAD_REQUEST).build(); };
+        if(!validLayers(markdown)){
+            return result.value;
+        }
         markdownService
                 .updatePolicy(new MarkdownID(id), toMarkdownSpecification(markdown))
                 .ifPresentOrElse(
@@ -95,6 +170,41 @@ public class MarkdownController {
         return result.value;
     }
 
+    /**
+     * Streams the ids of the products associated to the markdown, as a JSON array or one per line with NDJSON.
+     */
+    @GET
+    @Path("/{id}/associations")
+    @Produces({MediaType.APPLICATION_JSON, NDJSON})
+    public Response getAssociations(@PathParam("id") UUID id, @HeaderParam(HttpHeaders.ACCEPT) String accept) {
+        var result = new Object() {Response value = Response.status(Response.Status.NOT_FOUND).build(); };
+        var ndjson = accept != null && accept.contains(NDJSON);
+        markdownService
+                .retrieveAssociations(new MarkdownID(id))
+                .ifPresentOrElse(
+                        x -> {
+                            StreamingOutput products = out -> writeProducts(out, x, ndjson);
+                            result.value = Response.ok(products, ndjson ? NDJSON : MediaType.APPLICATION_JSON).build();
+                        },
+                        () -> {}
+                );
+        return result.value;
+    }
+
+    @GET
+    @Path("/{id}/associations/count")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response countAssociations(@PathParam("id") UUID id) {
+        var result = new Object() {Response value = Response.status(Response.Status.NOT_FOUND).build(); };
+        markdownService
+                .countAssociations(new MarkdownID(id))
+                .ifPresentOrElse(
+                        x -> result.value = Response.ok(Map.of("count", x)).build(),
+                        () -> {}
+                );
+        return result.value;
+    }
+
     @POST
     @Path("/{id}/associations")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -117,20 +227,195 @@ public class MarkdownController {
                 : Response.status(Response.Status.NOT_FOUND).build();
     }
 
+    /**
+     * Streams a large list of product ids, NDJSON or CSV, into associations without holding it in memory.
+     */
+    @POST
+    @Path("/{id}/associations/import")
+    @Consumes({NDJSON, CSV})
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importAssociations(@PathParam("id") UUID id,
+                                       @HeaderParam(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                       InputStream productIds) throws IOException {
+        var format = contentType.isCompatible(MediaType.valueOf(CSV)) ? ProductIdReader.Format.CSV : ProductIdReader.Format.NDJSON;
+        var result = new Object() {Response value = Response.status(Response.Status.NOT_FOUND).build(); };
+        markdownService
+                .importAssociations(new MarkdownID(id), productIds, format)
+                .ifPresentOrElse(
+                        x -> result.value = Response
+                                .status(x.failure().isPresent() ? Response.Status.BAD_REQUEST : Response.Status.OK)
+                                .entity(new AssociationImportDTO(x.imported(), x.failure().orElse(null)))
+                                .build(),
+                        () -> {}
+                );
+        return result.value;
+    }
+
+    @GET
+    @Path("/catalog")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response exportCatalog() {
+        StreamingOutput catalog = out -> markdownService.exportCatalog(out);
+        return Response.ok(catalog).build();
+    }
+
+    /**
+     * Server-sent events for every markdown write applied by this node, leader or follower, for caches to invalidate
+     * exactly what changed. Every event has its sequence number as id: a client reconnecting with {@code Last-Event-ID},
+     * as browsers do, or with {@code after}, resumes right after it. A {@code reset} event means that events were lost,
+     * the client being too slow or away for too long, and that everything derived from markdowns must be dropped.
+     */
+    @GET
+    @Path("/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void events(@HeaderParam(LAST_EVENT_ID) String lastEventId,
+                       @QueryParam("after") Long after,
+                       @Context SseEventSink sink,
+                       @Context Sse sse) {
+        if(!markdownEvents.enabled()){
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build());
+        }
+        OptionalLong from;
+        try {
+            from = after != null ? OptionalLong.of(after)
+                    : lastEventId != null ? OptionalLong.of(Long.parseLong(lastEventId.trim()))
+                    : OptionalLong.empty();
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).build());
+        }
+        markdownEvents.subscribe(from, event -> sendEvent(sink, sse, event));
+    }
+
+    private void sendEvent(SseEventSink sink, Sse sse, MarkdownEvents.Event event) throws IOException {
+        if(sink.isClosed()){
+            throw new IOException("Markdown event stream closed");
+        }
+        var outbound = sse.newEventBuilder()
+                .id(Long.toString(event.sequence()))
+                .name(eventName(event))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(MarkdownEventDTO.class, toMarkdownEventDTO(event))
+                .build();
+        try {
+            sink.send(outbound).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            sink.close();
+            throw new IOException("Unable to send a markdown event", e.getCause());
+        }
+    }
+
+    private static String eventName(MarkdownEvents.Event event) {
+        if(event.reset()){
+            return "reset";
+        }
+        var mutation = event.mutation().get();
+        if(mutation instanceof MarkdownMutation.Created){
+            return "markdown-created";
+        } else if(mutation instanceof MarkdownMutation.Updated){
+            return "markdown-updated";
+        } else if(mutation instanceof MarkdownMutation.Deleted){
+            return "markdown-deleted";
+        } else if(mutation instanceof MarkdownMutation.Associated){
+            return "products-associated";
+        }
+        return "products-dissociated";
+    }
+
+    private MarkdownEventDTO toMarkdownEventDTO(MarkdownEvents.Event event) {
+        var dto = new MarkdownEventDTO();
+        event.mutation().ifPresent(mutation -> {
+            dto.markdownId = mutation.markdownId().id();
+            if(mutation instanceof MarkdownMutation.Created created){
+                dto.markdown = toMarkdownDTO(created.markdownId(), created.specification());
+            } else if(mutation instanceof MarkdownMutation.Updated updated){
+                dto.markdown = toMarkdownDTO(updated.markdownId(), updated.specification());
+            } else if(mutation instanceof MarkdownMutation.Associated associated){
+                dto.productIds = associated.products().stream().map(ProductID::id).toList();
+            } else if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+                dto.productIds = removed.products().stream().map(ProductID::id).toList();
+            }
+        });
+        return dto;
+    }
+
+    private void writeMarkdowns(OutputStream out, MarkdownPage first, boolean allPages, boolean ndjson) throws IOException {
+        var generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        if(!ndjson){
+            generator.writeStartArray();
+        }
+        var page = first;
+        while (true) {
+            for (var markdown : page.markdowns()) {
+                generator.writeObject(toMarkdownDTO(markdown));
+                if(ndjson){
+                    generator.writeRaw('\n');
+                }
+            }
+            if(!allPages || page.nextCursor().isEmpty()){
+                break;
+            }
+            page = markdownService.retrievePolicies(page.nextCursor(), PAGE_SIZE);
+        }
+        if(!ndjson){
+            generator.writeEndArray();
+        }
+        generator.flush();
+    }
+
+    private void writeProducts(OutputStream out, Stream<ProductID> products, boolean ndjson) throws IOException {
+        var generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        if(!ndjson){
+            generator.writeStartArray();
+        }
+        for (var iterator = products.iterator(); iterator.hasNext(); ) {
+            generator.writeString(iterator.next().id().toString());
+            if(ndjson){
+                generator.writeRaw('\n');
+            }
+        }
+        if(!ndjson){
+            generator.writeEndArray();
+        }
+        generator.flush();
+    }
+
     private MarkdownPolicySpecification toMarkdownSpecification(MarkdownDTO markdown) {
         Optional<Float> percentage = markdown.percentage == null ? Optional.empty() : Optional.of(markdown.percentage);
         Optional<Map<Integer, Float>> thresholds = markdown.thresholds == null ? Optional.empty() : Optional.of(markdown.thresholds);
-        var configuration = new MarkdownConfiguration(percentage, thresholds);
+        Optional<List<MarkdownPolicySpecification>> layers = markdown.layers == null
+                ? Optional.empty()
+                : Optional.of(markdown.layers.stream().map(this::toMarkdownSpecification).toList());
+        var configuration = new MarkdownConfiguration(percentage, thresholds, layers);
         return new MarkdownPolicySpecification(markdown.type, configuration);
     }
 
+    /**
+     * A stack needs layers, none of them null, and only a stack has layers.
+     */
+    private static boolean validLayers(MarkdownDTO markdown) {
+        if(markdown.type != MarkdownType.STACKED){
+            return markdown.layers == null;
+        }
+        return markdown.layers != null
+                && !markdown.layers.isEmpty()
+                && markdown.layers.stream().allMatch(x -> x != null && x.type != null && validLayers(x));
+    }
+
     private MarkdownDTO toMarkdownDTO(Markdown markdown) {
-        var specs = markdown.policy().describe();
+        return toMarkdownDTO(markdown.id(), markdown.policy().describe());
+    }
+
+    private MarkdownDTO toMarkdownDTO(MarkdownID id, MarkdownPolicySpecification specs) {
         var dto = new MarkdownDTO();
-        dto.id = markdown.id().id();
+        dto.id = id != null ? id.id() : null;
         dto.type = specs.type();
         dto.percentage = specs.configuration().percentage().orElse(null);
         dto.thresholds = specs.configuration().thresholds().orElse(null);
+        dto.layers = specs.configuration().layers()
+                .map(layers -> layers.stream().map(x -> toMarkdownDTO(null, x)).toList())
+                .orElse(null);
         return dto;
     }
 
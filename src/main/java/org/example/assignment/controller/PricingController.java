@@ -3,39 +3,156 @@ package org.example.assignment.controller;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.validation.Valid;
-import jakarta.ws.rs.GET;
-import jakarta.ws.rs.Path;
-import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.Variant;
+import org.example.assignment.controller.codec.PricingCodec;
+import org.example.assignment.controller.dto.CartPriceDTO;
 import org.example.assignment.controller.dto.FinalPriceRequest;
+import org.example.assignment.model.CartPrice;
+import org.example.assignment.model.Money;
 import org.example.assignment.model.Price;
 import org.example.assignment.model.ProductBasket;
 import org.example.assignment.model.ProductID;
+import org.example.assignment.model.Revision;
 import org.example.assignment.service.MarkdownService;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Path("/v1/pricing")
 public class PricingController {
 
+    private static final MediaType BINARY = MediaType.valueOf(PricingCodec.MEDIA_TYPE);
+    private static final List<Variant> JSON_FIRST = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, BINARY).build();
+    private static final List<Variant> BINARY_FIRST = Variant.mediaTypes(BINARY, MediaType.APPLICATION_JSON_TYPE).build();
+
     @Inject
     @Named("MarkdownService")
     private MarkdownService markdownService;
 
+    /**
+     * Final prices are validated by the revision of the markdowns, so a client or cache can revalidate the price
+     * of the same basket with a conditional request, answered before pricing it.
+     */
     @GET
     @Path("/finalprice")
+    @Produces({MediaType.APPLICATION_JSON, PricingCodec.MEDIA_TYPE})
+    public Response calculateFinalPrice(@Valid FinalPriceRequest request, @Context Request conditions) {
+        if(!FinalPriceRequestValidator.isPriceable(request.productPrice, request.quantity)){
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(FinalPriceRequestValidator.validate(List.of(request)))
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        var productId = new ProductID(UUID.fromString(request.productId));
+        var unitPrice = Money.fromDouble(request.productPrice);
+        var variant = conditions.selectVariant(JSON_FIRST);
+        var revision = markdownService.retrieveRevision();
+        var tag = finalPriceTag(revision, productId, unitPrice, request.quantity, variant);
+        var notModified = ConditionalRequests.notModified(conditions, revision, tag);
+        if(notModified.isPresent()){
+            return notModified.get();
+        }
+        var price = markdownService.calculatePrice(productId, unitPrice, request.quantity);
+        return ConditionalRequests.validated(Response.ok(Money.toDouble(price), variant), revision, tag).build();
+    }
+
+    @GET
+    @Path("/finalprice")
+    @Consumes(PricingCodec.MEDIA_TYPE)
+    @Produces({PricingCodec.MEDIA_TYPE, MediaType.APPLICATION_JSON})
+    public Response calculateBinaryFinalPrice(ProductBasket productBasket, @Context Request conditions) {
+        var violations = FinalPriceRequestValidator.validateBaskets(List.of(productBasket));
+        if(!violations.isEmpty()){
+            return Response.status(Response.Status.BAD_REQUEST).entity(violations).type(MediaType.APPLICATION_JSON).build();
+        }
+        var variant = conditions.selectVariant(BINARY_FIRST);
+        var revision = markdownService.retrieveRevision();
+        var tag = finalPriceTag(revision, productBasket.productID(), productBasket.productPrice().minorUnits(),
+                productBasket.quantity(), variant);
+        var notModified = ConditionalRequests.notModified(conditions, revision, tag);
+        if(notModified.isPresent()){
+            return notModified.get();
+        }
+        return ConditionalRequests.validated(Response.ok(markdownService.calculatePrice(productBasket).value(), variant), revision, tag).build();
+    }
+
+    @POST
+    @Path("/finalprice/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, PricingCodec.MEDIA_TYPE})
+    public Response calculateFinalPrices(List<FinalPriceRequest> requests) {
+        if(requests == null){
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        var violations = FinalPriceRequestValidator.validate(requests);
+        if(!violations.isEmpty()){
+            return Response.status(Response.Status.BAD_REQUEST).entity(violations).type(MediaType.APPLICATION_JSON).build();
+        }
+        var productBaskets = requests.stream().map(x -> toProductBasket(x)).collect(Collectors.toList());
+        var prices = markdownService.calculatePrices(productBaskets);
+        return Response.ok(Money.toDoubles(prices)).build();
+    }
+
+    /**
+     * Batch pricing in the binary format: baskets arrive already decoded, with no JSON or UUID parsing.
+     */
+    @POST
+    @Path("/finalprice/batch")
+    @Consumes(PricingCodec.MEDIA_TYPE)
+    @Produces({PricingCodec.MEDIA_TYPE, MediaType.APPLICATION_JSON})
+    public Response calculateBinaryFinalPrices(List<ProductBasket> productBaskets) {
+        var violations = FinalPriceRequestValidator.validateBaskets(productBaskets);
+        if(!violations.isEmpty()){
+            return Response.status(Response.Status.BAD_REQUEST).entity(violations).type(MediaType.APPLICATION_JSON).build();
+        }
+        return Response.ok(Money.toDoubles(markdownService.calculatePrices(productBaskets))).build();
+    }
+
+    /**
+     * Prices the lines of a cart, from a single state of the markdowns, returning every line and the total.
+     */
+    @POST
+    @Path("/cart")
+    @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response calculateFinalPrice(@Valid FinalPriceRequest request) {
-        ProductBasket productBasket = toProductBasket(request);
-        var price = markdownService.calculatePrice(productBasket);
-        return Response.ok(price.value()).build();
+    public Response calculateCart(List<FinalPriceRequest> lines) {
+        if(lines == null){
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        var violations = FinalPriceRequestValidator.validateCart(lines);
+        if(!violations.isEmpty()){
+            return Response.status(Response.Status.BAD_REQUEST).entity(violations).build();
+        }
+        CartPrice cartPrice;
+        try {
+            cartPrice = markdownService.calculateCart(lines.stream().map(x -> toProductBasket(x)).collect(Collectors.toList()));
+        } catch (MarkdownService.CartTotalOutOfRangeException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(List.of(FinalPriceRequestValidator.cartOutOfRange(e.line())))
+                    .build();
+        }
+        return Response.ok(new CartPriceDTO(Money.toDoubles(cartPrice.linePrices()), Money.toDouble(cartPrice.total()))).build();
+    }
+
+    /**
+     * The basket comes in the body rather than the URL, so it is part of the tag, along with the media type.
+     */
+    private static EntityTag finalPriceTag(Revision revision, ProductID productId, long unitPrice, int quantity, Variant variant) {
+        var binary = variant != null && BINARY.isCompatible(variant.getMediaType());
+        return ConditionalRequests.tagOf(revision, productId.id() + "-" + unitPrice + "x" + quantity + (binary ? "-binary" : ""));
     }
 
     private ProductBasket toProductBasket(FinalPriceRequest request) {
         return new ProductBasket(
                 new ProductID(UUID.fromString(request.productId)),
-                new Price(request.productPrice),
+                Price.of(request.productPrice),
                 request.quantity
         );
     }
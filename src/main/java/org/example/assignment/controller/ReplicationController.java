@@ -0,0 +1,81 @@
+package org.example.assignment.controller;
+
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.example.assignment.gateway.impl.replication.ChangeLog;
+import org.example.assignment.gateway.impl.replication.HttpChangeFeed;
+import org.example.assignment.service.MarkdownService;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.time.Duration;
+
+/**
+ * What followers of this node fetch, see {@link org.example.assignment.gateway.impl.replication.ReplicationFollower}.
+ * Only the in memory backend has a change log, the endpoints answer 404 on the other ones.
+ */
+@Path("/v1/replication")
+public class ReplicationController {
+
+    static final int MAX_LIMIT = 10_000;
+    static final long MAX_WAIT_MILLIS = 30_000;
+
+    @Inject
+    @Named("MarkdownService")
+    private MarkdownService markdownService;
+
+    @Inject
+    private Instance<ChangeLog> changeLog;
+
+    /**
+     * The catalog of this node, taken at its last sequence number, with the epoch of the change log it continues in.
+     */
+    @GET
+    @Path("/snapshot")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response snapshot() {
+        if(!changeLog.isResolvable()){
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        var epoch = changeLog.get().epoch();
+        StreamingOutput snapshot = out -> markdownService.exportCatalog(out);
+        return Response.ok(snapshot).header(HttpChangeFeed.EPOCH_HEADER, epoch).build();
+    }
+
+    /**
+     * Changes after a sequence number, waiting up to {@code wait} milliseconds for one.
+     * Answers 410 Gone when they are no longer kept, the follower then starts over from a snapshot.
+     */
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response changes(@QueryParam("after") Long after,
+                            @QueryParam("limit") @DefaultValue("1000") int limit,
+                            @QueryParam("wait") @DefaultValue("0") long wait) throws InterruptedException {
+        if(!changeLog.isResolvable()){
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if(after == null || after < 0 || limit < 1 || limit > MAX_LIMIT || wait < 0){
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        var batch = changeLog.get().read(after, limit, Duration.ofMillis(Math.min(wait, MAX_WAIT_MILLIS)));
+        if(batch.isEmpty()){
+            return Response.status(Response.Status.GONE).build();
+        }
+        StreamingOutput changes = out -> {
+            var data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            batch.get().writeTo(data);
+            data.flush();
+        };
+        return Response.ok(changes).header(HttpChangeFeed.EPOCH_HEADER, batch.get().epoch()).build();
+    }
+}
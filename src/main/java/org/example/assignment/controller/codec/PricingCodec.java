@@ -0,0 +1,119 @@
+package org.example.assignment.controller.codec;
+
+import org.example.assignment.model.Money;
+import org.example.assignment.model.Price;
+import org.example.assignment.model.ProductBasket;
+import org.example.assignment.model.ProductID;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary wire format of the pricing endpoints, big endian and fixed width, so nothing is parsed or validated as text.
+ * <ul>
+ *     <li>basket: product UUID as two {@code long}, unit price as {@code double}, quantity as {@code int}, 28 bytes</li>
+ *     <li>batch of baskets: {@code int} count followed by the baskets</li>
+ *     <li>price: {@code double}; batch of prices: {@code int} count followed by the prices</li>
+ * </ul>
+ */
+public final class PricingCodec {
+
+    public static final String MEDIA_TYPE = "application/vnd.pricing+binary";
+    public static final int MAX_BATCH_SIZE = 100_000;
+
+    private static final int BASKET_SIZE = 28;
+    private static final int COUNT_SIZE = 4;
+    private static final int PRICE_SIZE = 8;
+
+    private PricingCodec() {
+    }
+
+    public static ProductBasket readBasket(InputStream in) throws IOException {
+        return readBasket(ByteBuffer.wrap(readFully(in, BASKET_SIZE)));
+    }
+
+    public static List<ProductBasket> readBaskets(InputStream in) throws IOException {
+        var count = ByteBuffer.wrap(readFully(in, COUNT_SIZE)).getInt();
+        if(count < 0 || count > MAX_BATCH_SIZE){
+            throw new IOException("Invalid batch size " + count);
+        }
+        var buffer = ByteBuffer.wrap(readFully(in, count * BASKET_SIZE));
+        var productBaskets = new ArrayList<ProductBasket>(count);
+        for (int i = 0; i < count; i++) {
+            productBaskets.add(readBasket(buffer));
+        }
+        return productBaskets;
+    }
+
+    public static void writeBaskets(OutputStream out, List<ProductBasket> productBaskets) throws IOException {
+        var buffer = ByteBuffer.allocate(COUNT_SIZE + productBaskets.size() * BASKET_SIZE);
+        buffer.putInt(productBaskets.size());
+        for (var productBasket : productBaskets) {
+            writeBasket(buffer, productBasket);
+        }
+        out.write(buffer.array());
+    }
+
+    public static void writeBasket(OutputStream out, ProductBasket productBasket) throws IOException {
+        var buffer = ByteBuffer.allocate(BASKET_SIZE);
+        writeBasket(buffer, productBasket);
+        out.write(buffer.array());
+    }
+
+    public static void writePrice(OutputStream out, double price) throws IOException {
+        out.write(ByteBuffer.allocate(PRICE_SIZE).putDouble(price).array());
+    }
+
+    public static double readPrice(InputStream in) throws IOException {
+        return ByteBuffer.wrap(readFully(in, PRICE_SIZE)).getDouble();
+    }
+
+    public static void writePrices(OutputStream out, double[] prices) throws IOException {
+        var buffer = ByteBuffer.allocate(COUNT_SIZE + prices.length * PRICE_SIZE);
+        buffer.putInt(prices.length);
+        buffer.asDoubleBuffer().put(prices);
+        out.write(buffer.array());
+    }
+
+    public static double[] readPrices(InputStream in) throws IOException {
+        var count = ByteBuffer.wrap(readFully(in, COUNT_SIZE)).getInt();
+        if(count < 0 || count > MAX_BATCH_SIZE){
+            throw new IOException("Invalid batch size " + count);
+        }
+        var prices = new double[count];
+        ByteBuffer.wrap(readFully(in, count * PRICE_SIZE)).asDoubleBuffer().get(prices);
+        return prices;
+    }
+
+    private static ProductBasket readBasket(ByteBuffer buffer) throws IOException {
+        var productId = new UUID(buffer.getLong(), buffer.getLong());
+        var unitPrice = buffer.getDouble();
+        var quantity = buffer.getInt();
+        if(!Money.representable(unitPrice)){
+            throw new IOException("Invalid unit price " + unitPrice);
+        }
+        return new ProductBasket(new ProductID(productId), Price.of(unitPrice), quantity);
+    }
+
+    private static void writeBasket(ByteBuffer buffer, ProductBasket productBasket) {
+        var productId = productBasket.productID().id();
+        buffer.putLong(productId.getMostSignificantBits())
+                .putLong(productId.getLeastSignificantBits())
+                .putDouble(productBasket.productPrice().value())
+                .putInt(productBasket.quantity());
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        var bytes = in.readNBytes(length);
+        if(bytes.length < length){
+            throw new EOFException("Expected " + length + " bytes, got " + bytes.length);
+        }
+        return bytes;
+    }
+}
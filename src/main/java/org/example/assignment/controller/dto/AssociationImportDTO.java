@@ -0,0 +1,21 @@
+package org.example.assignment.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+@JsonSerialize
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AssociationImportDTO {
+
+    public long imported;
+
+    public String error;
+
+    public AssociationImportDTO() {
+    }
+
+    public AssociationImportDTO(long imported, String error) {
+        this.imported = imported;
+        this.error = error;
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.assignment.controller.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+@JsonSerialize
+public class CartPriceDTO {
+
+    public double[] lines;
+
+    public double total;
+
+    public CartPriceDTO() {
+    }
+
+    public CartPriceDTO(double[] lines, double total) {
+        this.lines = lines;
+        this.total = total;
+    }
+}
@@ -2,18 +2,22 @@ package org.example.assignment.controller.dto;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import org.hibernate.validator.constraints.UUID.LetterCase;
 
 @JsonSerialize
 public class FinalPriceRequest {
 
-    @org.hibernate.validator.constraints.UUID(allowNil = false)
+    @org.hibernate.validator.constraints.UUID(allowNil = false, letterCase = LetterCase.INSENSITIVE)
     @NotBlank
     public String productId;
 
+    @NotNull
     @Positive
     public Double productPrice;
 
+    @NotNull
     @Positive
     public Integer quantity;
 
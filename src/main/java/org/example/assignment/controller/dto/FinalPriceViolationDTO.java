@@ -0,0 +1,22 @@
+package org.example.assignment.controller.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+@JsonSerialize
+public class FinalPriceViolationDTO {
+
+    public int index;
+
+    public String field;
+
+    public String message;
+
+    public FinalPriceViolationDTO() {
+    }
+
+    public FinalPriceViolationDTO(int index, String field, String message) {
+        this.index = index;
+        this.field = field;
+        this.message = message;
+    }
+}
@@ -1,9 +1,12 @@
 package org.example.assignment.controller.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.example.assignment.model.MarkdownType;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -18,4 +21,11 @@ public class MarkdownDTO {
     public Float percentage;
 
     public Map<Integer, Float> thresholds;
+
+    /**
+     * Markdowns of a {@link MarkdownType#STACKED}, applied in order.
+     */
+    @Valid
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<MarkdownDTO> layers;
 }
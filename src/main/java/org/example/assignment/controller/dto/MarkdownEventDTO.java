@@ -0,0 +1,24 @@
+package org.example.assignment.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+import java.util.UUID;
+
+@JsonSerialize
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MarkdownEventDTO {
+
+    public UUID markdownId;
+
+    /**
+     * The created or updated markdown.
+     */
+    public MarkdownDTO markdown;
+
+    /**
+     * The products associated or dissociated.
+     */
+    public List<UUID> productIds;
+}
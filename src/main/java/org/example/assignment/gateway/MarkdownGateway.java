@@ -2,15 +2,26 @@ package org.example.assignment.gateway;
 
 import org.example.assignment.model.Markdown;
 import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.MarkdownPage;
 import org.example.assignment.model.MarkdownPolicySpecification;
 import org.example.assignment.model.ProductID;
+import org.example.assignment.model.Revision;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MarkdownGateway {
     Optional<Markdown> getPolicyByProductId(ProductID id);
 
+    /**
+     * Markdowns of the products, in the same order, all resolved from the same state of the gateway even while
+     * it is written. With {@code parallel} the lookups are split over the common fork/join pool.
+     */
+    List<Optional<Markdown>> getPoliciesByProductIds(List<ProductID> ids, boolean parallel);
+
     Optional<MarkdownID> createNew(MarkdownPolicySpecification specification);
 
     Optional<Markdown> get(MarkdownID markdownId);
@@ -21,7 +32,48 @@ public interface MarkdownGateway {
 
     List<Markdown> getAll();
 
+    /**
+     * Up to {@code limit} markdowns in a stable order, starting from {@code cursor} or from the first one.
+     * Markdowns created or deleted while paging are seen at most once.
+     *
+     * @throws IllegalArgumentException if the cursor was not returned by this gateway
+     */
+    MarkdownPage getPage(Optional<String> cursor, int limit);
+
     void associateToProducts(MarkdownID markdownId, List<ProductID> products);
 
     void removeAssociationToProducts(MarkdownID markdownID, List<ProductID> products);
+
+    /**
+     * Products associated to the markdown, empty if it doesn't exist.
+     * Associations written while the stream is consumed may or may not be seen.
+     */
+    Optional<Stream<ProductID>> getAssociations(MarkdownID markdownId);
+
+    /**
+     * Number of products associated to the markdown, empty if it doesn't exist.
+     */
+    Optional<Long> countAssociations(MarkdownID markdownId);
+
+    int markdownCount();
+
+    /**
+     * Number of product associations, approximate while being written.
+     */
+    long associationCount();
+
+    /**
+     * Revision of the markdowns and associations as a whole, bumped by every write.
+     */
+    Revision revision();
+
+    /**
+     * Revision of the markdown, bumped when it is created or updated, empty if it doesn't exist.
+     */
+    Optional<Revision> revisionOf(MarkdownID markdownId);
+
+    /**
+     * Writes a compact binary snapshot of markdowns and associations, which other nodes can serve memory mapped.
+     */
+    void exportCatalog(OutputStream out) throws IOException;
 }
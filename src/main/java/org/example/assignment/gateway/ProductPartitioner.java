@@ -0,0 +1,55 @@
+package org.example.assignment.gateway;
+
+import org.example.assignment.model.ProductID;
+
+import java.util.UUID;
+
+/**
+ * Splits products into a fixed number of partitions by a hash of their id.
+ * The in memory gateway uses it for its shards, and a router in front of several nodes can use it to send
+ * every product to the node owning its partition. The function is part of the contract between nodes:
+ * it must not change, or products would be looked up on the wrong node.
+ * <p>
+ * The partition comes from the low half of {@link #hash(long, long)}, while hash tables indexed by product
+ * use its high half, so the products of one partition still spread over a whole table.
+ */
+public final class ProductPartitioner {
+
+    private final int partitions;
+
+    public ProductPartitioner(int partitions) {
+        if(partitions < 1){
+            throw new IllegalArgumentException("Invalid number of partitions " + partitions);
+        }
+        this.partitions = partitions;
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public int partitionOf(ProductID product) {
+        return partitionOf(product.id());
+    }
+
+    public int partitionOf(UUID product) {
+        return partitionOf(product.getMostSignificantBits(), product.getLeastSignificantBits());
+    }
+
+    public int partitionOf(long msb, long lsb) {
+        return (int) (((hash(msb, lsb) & 0xFFFFFFFFL) * partitions) >>> 32);
+    }
+
+    /**
+     * 64 bit hash of a product id, well mixed even for sequential ids.
+     */
+    public static long hash(long msb, long lsb) {
+        var h = msb * 0x9e3779b97f4a7c15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
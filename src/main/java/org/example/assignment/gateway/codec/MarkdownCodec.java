@@ -0,0 +1,140 @@
+package org.example.assignment.gateway.codec;
+
+import org.example.assignment.model.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of markdown specifications and mutations.
+ * UUIDs are written as their two {@code long} halves, numbers in their primitive width.
+ * Only stacked markdowns are followed by their layers, so specifications written before stacks read the same.
+ */
+public final class MarkdownCodec {
+
+    private static final byte CREATED = 1;
+    private static final byte UPDATED = 2;
+    private static final byte DELETED = 3;
+    private static final byte ASSOCIATED = 4;
+    private static final byte ASSOCIATION_REMOVED = 5;
+
+    private MarkdownCodec() {
+    }
+
+    public static void writeUUID(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    public static void writeSpecification(DataOutput out, MarkdownPolicySpecification specification) throws IOException {
+        var configuration = specification.configuration();
+        out.writeByte(specification.type().ordinal());
+        var percentage = configuration.percentage();
+        out.writeBoolean(percentage.isPresent());
+        if(percentage.isPresent()){
+            out.writeFloat(percentage.get());
+        }
+        var thresholds = configuration.thresholds();
+        out.writeInt(thresholds.map(x -> x.size()).orElse(-1));
+        if(thresholds.isPresent()){
+            for (var threshold : thresholds.get().entrySet()) {
+                out.writeInt(threshold.getKey());
+                out.writeFloat(threshold.getValue());
+            }
+        }
+        if(specification.type() == MarkdownType.STACKED){
+            var layers = configuration.layers().orElse(List.of());
+            out.writeInt(layers.size());
+            for (var layer : layers) {
+                writeSpecification(out, layer);
+            }
+        }
+    }
+
+    public static MarkdownPolicySpecification readSpecification(DataInput in) throws IOException {
+        var type = MarkdownType.values()[in.readUnsignedByte()];
+        Optional<Float> percentage = in.readBoolean() ? Optional.of(in.readFloat()) : Optional.empty();
+        var thresholdCount = in.readInt();
+        Optional<Map<Integer, Float>> thresholds = Optional.empty();
+        if(thresholdCount >= 0){
+            var values = new HashMap<Integer, Float>();
+            for (int i = 0; i < thresholdCount; i++) {
+                values.put(in.readInt(), in.readFloat());
+            }
+            thresholds = Optional.of(values);
+        }
+        Optional<List<MarkdownPolicySpecification>> layers = Optional.empty();
+        if(type == MarkdownType.STACKED){
+            var layerCount = in.readInt();
+            var values = new ArrayList<MarkdownPolicySpecification>(layerCount);
+            for (int i = 0; i < layerCount; i++) {
+                values.add(readSpecification(in));
+            }
+            layers = Optional.of(values);
+        }
+        return new MarkdownPolicySpecification(type, new MarkdownConfiguration(percentage, thresholds, layers));
+    }
+
+    public static void writeMutation(DataOutput out, MarkdownMutation mutation) throws IOException {
+        if(mutation instanceof MarkdownMutation.Created created){
+            out.writeByte(CREATED);
+            writeUUID(out, created.markdownId().id());
+            writeSpecification(out, created.specification());
+        } else if(mutation instanceof MarkdownMutation.Updated updated){
+            out.writeByte(UPDATED);
+            writeUUID(out, updated.markdownId().id());
+            writeSpecification(out, updated.specification());
+        } else if(mutation instanceof MarkdownMutation.Deleted deleted){
+            out.writeByte(DELETED);
+            writeUUID(out, deleted.markdownId().id());
+        } else if(mutation instanceof MarkdownMutation.Associated associated){
+            out.writeByte(ASSOCIATED);
+            writeUUID(out, associated.markdownId().id());
+            writeProducts(out, associated.products());
+        } else if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+            out.writeByte(ASSOCIATION_REMOVED);
+            writeUUID(out, removed.markdownId().id());
+            writeProducts(out, removed.products());
+        }
+    }
+
+    public static MarkdownMutation readMutation(DataInput in) throws IOException {
+        var type = in.readByte();
+        var markdownId = new MarkdownID(readUUID(in));
+        return switch (type) {
+            case CREATED -> new MarkdownMutation.Created(markdownId, readSpecification(in));
+            case UPDATED -> new MarkdownMutation.Updated(markdownId, readSpecification(in));
+            case DELETED -> new MarkdownMutation.Deleted(markdownId);
+            case ASSOCIATED -> new MarkdownMutation.Associated(markdownId, readProducts(in));
+            case ASSOCIATION_REMOVED -> new MarkdownMutation.AssociationRemoved(markdownId, readProducts(in));
+            default -> throw new IOException("Unknown mutation type " + type);
+        };
+    }
+
+    private static void writeProducts(DataOutput out, List<ProductID> products) throws IOException {
+        out.writeInt(products.size());
+        for (var product : products) {
+            writeUUID(out, product.id());
+        }
+    }
+
+    private static List<ProductID> readProducts(DataInput in) throws IOException {
+        var count = in.readInt();
+        var products = new ArrayList<ProductID>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new ProductID(readUUID(in)));
+        }
+        return products;
+    }
+}
@@ -1,94 +1,1004 @@
 package org.example.assignment.gateway.impl;
 
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.gateway.ProductPartitioner;
+import org.example.assignment.gateway.impl.persistence.CatalogConfig;
+import org.example.assignment.gateway.impl.persistence.EmbeddedCatalog;
+import org.example.assignment.gateway.impl.persistence.GatewayPersistence;
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.gateway.impl.persistence.MarkdownSnapshot;
+import org.example.assignment.gateway.impl.persistence.PersistenceConfig;
+import org.example.assignment.gateway.impl.replication.ChangeLog;
 import org.example.assignment.model.Markdown;
 import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.MarkdownMutation;
+import org.example.assignment.model.MarkdownPage;
 import org.example.assignment.model.MarkdownPolicySpecification;
 import org.example.assignment.model.ProductID;
-import org.example.assignment.policy.MarkdownPolicy;
+import org.example.assignment.model.Revision;
 import org.example.assignment.policy.PolicyFactory;
+import org.example.assignment.service.MarkdownEvents;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
- * In memory implementation of a simple KV storage.
- * Redis, Dynamo, MongoDB backends could be valid alternatives in a production scenario
- * where we need a fast access to a non relational data model
+ * In memory implementation of a simple KV storage, the default backend.
+ * Nodes that must share their markdowns can use {@link org.example.assignment.gateway.impl.redis.RedisMarkdownGateway}
+ * instead, Dynamo or MongoDB backends could be other alternatives.
+ * <p>
+ * Reads never lock: markdowns are kept in immutable structures that writers replace as a whole
+ * and associations live in a {@link ProductMarkdownIndex}, which supports concurrent readers.
+ * Writes are serialized by a single lock, so concurrent admin calls can't lose each other's updates.
+ * The writer also bumps a version before and after applying a write, which is odd while a write is in progress:
+ * a reader that needs many lookups from the same state checks that it did not change around them,
+ * as in a seqlock, and only takes the lock when writes keep getting in the way.
+ * <p>
+ * Associations are split in shards by {@link ProductPartitioner}, each with its own index, lock and version.
+ * An association write takes the main lock only to check the markdown and log the write, then applies it
+ * under the locks of the shards of its products, so writes to different shards run in parallel and
+ * readers of many products only start over when a shard they read from was written.
+ * Locks are always taken in the same order, the main lock first and then shards by index.
+ * <p>
+ * Every markdown is interned to a small int slot, which is what the association index stores.
+ * Slots of deleted markdowns are not reused, so a product still pointing to one resolves to no markdown.
+ * <p>
+ * Markdowns are stored already wrapped in the {@link Optional} handed out by lookups,
+ * so resolving the policy of a product does not allocate.
+ * <p>
+ * When persistence is enabled every write is expressed as a {@link MarkdownMutation}, appended to the journal
+ * under the write lock and acknowledged once durable. The same mutations are replayed on startup.
+ * <p>
+ * A node can also start from a catalog exported by another one, from a file or packaged in the application:
+ * its associations stay in a memory mapped {@link MappedCatalog} and the in memory index becomes an overlay
+ * holding only the later writes.
+ * Products of the catalog removed afterwards are pointed to a slot that never holds a markdown.
+ * Journal snapshots hold only the overlay, with these tombstones, and the checksum of the catalog it sits on.
+ * Restoring one deletes the catalog markdowns it lacks, so the writes made on top of the catalog survive the journal
+ * segments they were logged in while the catalog associations stay mapped. Exported catalogs are complete.
+ * <p>
+ * Every accepted write gets the next sequence number, the journal's when persistence is enabled, and is appended
+ * to the {@link ChangeLog} other nodes follow. A follower applies the changes of its leader with
+ * {@link #replicate(long, MarkdownMutation)}, keeping the leader's sequence numbers, and catches up from one of its
+ * snapshots with {@link #install(MarkdownSnapshot, Consumer)}. Both go through the same writes as local calls,
+ * so lookups on a follower are never held by replication longer than by any other write.
+ * Once applied, every write, replicated ones included, is published to the {@link MarkdownEvents} under the locks
+ * it was applied under, so the events of writes to the same products come in the order they were applied.
+ * <p>
+ * Every markdown slot also has the set of the positions of its products in the index, kept by the index itself,
+ * so deleting a markdown drops its associations in time proportional to their number, and they can be
+ * listed and counted without scanning every association. Catalog associations stay in the catalog:
+ * listing or counting them scans it.
+ * <p>
+ * Revisions, for HTTP validators, are bumped once a write is applied, and every created or updated markdown gets
+ * the revision of its write. They start from the startup time in microseconds rather than from the sequence numbers,
+ * which a restarted follower or a recovered journal could hand out again for a different state.
  */
+@Startup
 @ApplicationScoped
 @Named("MarkdownGateway")
+@UnlessBuildProperty(name = "pricing.gateway.backend", stringValue = "redis", enableIfMissing = true)
 public class MarkdownGatewayImpl implements MarkdownGateway {
 
-    private final Map<UUID, MarkdownPolicy> markdownStorage;
-    private final Map<UUID, UUID> productMarkdownAssociation;
+    static final int DEFAULT_PARTITIONS = 16;
+
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 4;
+    private static final int INSTALL_BATCH_SIZE = 10_000;
+    private static final long LOCAL = -1;
+
+    private final ReentrantLock writeLock;
+    private volatile long version;
+    private volatile Map<UUID, Optional<Markdown>> markdownStorage;
+    private volatile Optional<Markdown>[] markdownSlots;
+    private final Map<UUID, Integer> markdownSlotIds;
+    private final ProductPartitioner partitioner;
+    private final Shard[] shards;
+    private final GatewayPersistence persistence;
+    private final MappedCatalog catalog;
+    private final int removedSlot;
+    private final ChangeLog changeLog;
+    private final MarkdownEvents markdownEvents;
+    private final AtomicReference<Revision> revision;
+    private volatile Map<UUID, Revision> markdownRevisions;
+    private long lastSequence;
 
     public MarkdownGatewayImpl() {
-        this.markdownStorage = new HashMap<>();
-        this.productMarkdownAssociation = new HashMap<>();
+        this((GatewayPersistence) null, null);
+    }
+
+    public MarkdownGatewayImpl(ChangeLog changeLog) {
+        this((GatewayPersistence) null, null, DEFAULT_PARTITIONS, changeLog);
+    }
+
+    @Inject
+    public MarkdownGatewayImpl(PersistenceConfig config, CatalogConfig catalogConfig,
+                               @ConfigProperty(name = "pricing.gateway.partitions", defaultValue = "16") int partitions,
+                               @Named("ChangeLog") ChangeLog changeLog,
+                               @Named("MarkdownEvents") MarkdownEvents markdownEvents) {
+        this(config.enabled() ? new GatewayPersistence(config) : null, openCatalog(catalogConfig), partitions, changeLog,
+                markdownEvents);
+    }
+
+    MarkdownGatewayImpl(int partitions) {
+        this((GatewayPersistence) null, null, partitions);
+    }
+
+    MarkdownGatewayImpl(GatewayPersistence persistence) {
+        this(persistence, null);
+    }
+
+    MarkdownGatewayImpl(GatewayPersistence persistence, MappedCatalog catalog) {
+        this(persistence, catalog, DEFAULT_PARTITIONS);
+    }
+
+    MarkdownGatewayImpl(GatewayPersistence persistence, MappedCatalog catalog, int partitions) {
+        this(persistence, catalog, partitions, null);
+    }
+
+    MarkdownGatewayImpl(GatewayPersistence persistence, MappedCatalog catalog, int partitions, ChangeLog changeLog) {
+        this(persistence, catalog, partitions, changeLog, MarkdownEvents.disabled());
+    }
+
+    @SuppressWarnings("unchecked")
+    MarkdownGatewayImpl(GatewayPersistence persistence, MappedCatalog catalog, int partitions, ChangeLog changeLog,
+                        MarkdownEvents markdownEvents) {
+        this.writeLock = new ReentrantLock();
+        this.markdownStorage = Map.of();
+        this.markdownSlots = new Optional[0];
+        this.markdownSlotIds = new HashMap<>();
+        this.partitioner = new ProductPartitioner(partitions);
+        this.shards = new Shard[partitions];
+        for (int i = 0; i < partitions; i++) {
+            shards[i] = new Shard();
+        }
+        this.persistence = persistence;
+        this.catalog = catalog;
+        this.changeLog = changeLog;
+        this.markdownEvents = markdownEvents;
+        this.revision = new AtomicReference<>(new Revision(System.currentTimeMillis() * 1000, Instant.now()));
+        this.markdownRevisions = Map.of();
+        if(catalog != null){
+            restoreMarkdowns(catalog.markdowns());
+            this.removedSlot = markdownSlots.length;
+            markdownSlots = withSlot(removedSlot, Optional.empty());
+        } else {
+            this.removedSlot = ProductMarkdownIndex.NO_SLOT;
+        }
+        if(persistence != null){
+            persistence.recover(this::restore, this::apply);
+            lastSequence = persistence.lastSequence();
+        }
+        if(changeLog != null){
+            changeLog.reset(lastSequence);
+        }
     }
 
     @Override
     public Optional<Markdown> getPolicyByProductId(ProductID id) {
-        if(productMarkdownAssociation.containsKey(id.id())){
-            var markdownId = productMarkdownAssociation.get(id.id());
-            return get(new MarkdownID(markdownId));
+        var msb = id.id().getMostSignificantBits();
+        var lsb = id.id().getLeastSignificantBits();
+        return lookup(shardOf(msb, lsb), msb, lsb);
+    }
+
+    /**
+     * Markdowns of the products, from the same state as long as neither the markdowns nor the shards of these
+     * products were written while resolving them. Writes to other shards don't get in the way.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Optional<Markdown>> getPoliciesByProductIds(List<ProductID> ids, boolean parallel) {
+        Optional<Markdown>[] markdowns = new Optional[ids.size()];
+        var partitions = new int[ids.size()];
+        var touched = new boolean[shards.length];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = partitioner.partitionOf(ids.get(i));
+            touched[partitions[i]] = true;
         }
-        return Optional.empty();
+        var shardVersions = new long[shards.length];
+        for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            var before = version;
+            if((before & 1) == 0){
+                for (int i = 0; i < shards.length; i++) {
+                    shardVersions[i] = shards[i].version;
+                }
+                resolve(ids, partitions, markdowns, parallel);
+                VarHandle.acquireFence();
+                if(version == before && unchanged(touched, shardVersions)){
+                    return Arrays.asList(markdowns);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        lockAll();
+        try {
+            resolve(ids, partitions, markdowns, parallel);
+        } finally {
+            unlockAll();
+        }
+        return Arrays.asList(markdowns);
     }
 
     @Override
     public Optional<MarkdownID> createNew(MarkdownPolicySpecification specification) {
-        var id = UUID.randomUUID();
-        markdownStorage.put(id, PolicyFactory.create(specification));
-        return Optional.of(new MarkdownID(id));
+        var id = new MarkdownID(UUID.randomUUID());
+        write(new MarkdownMutation.Created(id, specification));
+        return Optional.of(id);
     }
 
     @Override
     public Optional<Markdown> get(MarkdownID markdownId) {
-        if(markdownStorage.containsKey(markdownId.id())){
-            var markdownPolicy = markdownStorage.get(markdownId.id());
-            return Optional.of(new Markdown(markdownId, markdownPolicy));
-        }
-        return Optional.empty();
+        return markdownStorage.getOrDefault(markdownId.id(), Optional.empty());
     }
 
     @Override
     public Optional<Boolean> update(MarkdownID markdownId, MarkdownPolicySpecification specification) {
-        if(markdownStorage.containsKey(markdownId.id())){
-            markdownStorage.replace(markdownId.id(), PolicyFactory.create(specification));
-            return Optional.of(Boolean.TRUE);
-        }
-        return Optional.empty();
+        return write(new MarkdownMutation.Updated(markdownId, specification)) ? Optional.of(Boolean.TRUE) : Optional.empty();
     }
 
     @Override
     public Optional<Boolean> delete(MarkdownID markdownId) {
-        if(markdownStorage.containsKey(markdownId.id())){
-            markdownStorage.remove(markdownId.id());
-            return Optional.of(Boolean.TRUE);
-        }
-        return Optional.empty();
+        return write(new MarkdownMutation.Deleted(markdownId)) ? Optional.of(Boolean.TRUE) : Optional.empty();
     }
 
     @Override
     public List<Markdown> getAll() {
         return markdownStorage
-                .entrySet()
+                .values()
                 .stream()
-                .map(x -> new Markdown(new MarkdownID(x.getKey()), x.getValue()))
+                .map(x -> x.get())
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Pages follow the markdown slots, which are never reused, so the cursor is just the next slot to look at.
+     */
+    @Override
+    public MarkdownPage getPage(Optional<String> cursor, int limit) {
+        var slots = markdownSlots;
+        var slot = cursor.map(MarkdownGatewayImpl::parseCursor).orElse(0);
+        var markdowns = new ArrayList<Markdown>(Math.min(limit, slots.length));
+        for (; slot < slots.length && markdowns.size() < limit; slot++) {
+            slots[slot].ifPresent(markdowns::add);
+        }
+        while (slot < slots.length && slots[slot].isEmpty()) {
+            slot++;
+        }
+        return new MarkdownPage(markdowns, slot < slots.length ? Optional.of(Integer.toString(slot)) : Optional.empty());
+    }
+
     @Override
     public void associateToProducts(MarkdownID markdownId, List<ProductID> products) {
-        products.forEach(p -> productMarkdownAssociation.put(p.id(), markdownId.id()));
+        write(new MarkdownMutation.Associated(markdownId, products));
     }
 
     @Override
     public void removeAssociationToProducts(MarkdownID markdownID, List<ProductID> products) {
-        products.forEach(p -> productMarkdownAssociation.remove(p.id()));
+        write(new MarkdownMutation.AssociationRemoved(markdownID, products));
+    }
+
+    @Override
+    public Optional<Stream<ProductID>> getAssociations(MarkdownID markdownId) {
+        var found = slotOf(markdownId);
+        if(found.isEmpty()){
+            return Optional.empty();
+        }
+        int slot = found.get();
+        var products = new ArrayList<Stream<UUID>>(shards.length);
+        for (var shard : shards) {
+            shard.lock.lock();
+            try {
+                products.add(shard.index.keys(slot));
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        var associations = products.stream().flatMap(x -> x);
+        if(catalog != null){
+            associations = Stream.concat(associations, catalogProducts(slot));
+        }
+        return Optional.of(associations.map(ProductID::new));
+    }
+
+    /**
+     * Shards are counted one after the other, so the count is approximate while associations are written.
+     */
+    @Override
+    public Optional<Long> countAssociations(MarkdownID markdownId) {
+        var found = slotOf(markdownId);
+        if(found.isEmpty()){
+            return Optional.empty();
+        }
+        int slot = found.get();
+        var count = 0L;
+        for (var shard : shards) {
+            shard.lock.lock();
+            try {
+                count += shard.index.size(slot);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return Optional.of(catalog != null ? count + catalogProducts(slot).count() : count);
+    }
+
+    @Override
+    public int markdownCount() {
+        return markdownStorage.size();
+    }
+
+    /**
+     * Catalog associations shadowed by the overlay are counted twice.
+     */
+    @Override
+    public long associationCount() {
+        var count = catalog != null ? (long) catalog.size() : 0L;
+        for (var shard : shards) {
+            count += shard.index.size();
+        }
+        return count;
+    }
+
+    @Override
+    public Revision revision() {
+        return revision.get();
+    }
+
+    @Override
+    public Optional<Revision> revisionOf(MarkdownID markdownId) {
+        return Optional.ofNullable(markdownRevisions.get(markdownId.id()));
+    }
+
+    @Override
+    public void exportCatalog(OutputStream out) throws IOException {
+        LongFunction<MarkdownSnapshot> snapshot;
+        long sequence;
+        lockAll();
+        try {
+            snapshot = capture(false);
+            sequence = lastSequence;
+        } finally {
+            unlockAll();
+        }
+        MarkdownSnapshot.writeTo(out, snapshot.apply(sequence));
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if(persistence != null){
+            persistence.close();
+        }
+    }
+
+    /**
+     * Applies a change of the leader this node follows, the one it logged with {@code sequence}.
+     * Followers keep their state in memory only, and start over from the leader after a restart.
+     */
+    public void replicate(long sequence, MarkdownMutation mutation) {
+        requireFollower();
+        write(mutation, sequence);
+    }
+
+    /**
+     * Brings the state to the one of a snapshot of the leader, taken at its sequence number, through the writes
+     * that turn one into the other, which are also handed to {@code applied}. Lookups meanwhile see some of the
+     * writes applied and some not, as during any other write, and are never held by the whole install.
+     */
+    public void install(MarkdownSnapshot snapshot, Consumer<MarkdownMutation> applied) {
+        requireFollower();
+        if(snapshot.catalog() != MarkdownSnapshot.NO_CATALOG){
+            throw new IllegalArgumentException("Only the writes made on top of a catalog, not a snapshot to install");
+        }
+        var sequence = snapshot.sequence();
+        var ids = new MarkdownID[snapshot.markdowns().stream().mapToInt(MarkdownSnapshot.Entry::slot).max().orElse(-1) + 1];
+        for (var entry : snapshot.markdowns()) {
+            ids[entry.slot()] = entry.id();
+            var current = get(entry.id());
+            if(current.isEmpty()){
+                installWrite(new MarkdownMutation.Created(entry.id(), entry.specification()), sequence, applied);
+            } else if(!current.get().policy().describe().equals(entry.specification())){
+                installWrite(new MarkdownMutation.Updated(entry.id(), entry.specification()), sequence, applied);
+            }
+        }
+
+        var expected = new ProductMarkdownIndex();
+        expected.ensureCapacity(snapshot.associationCount());
+        var associations = new HashMap<MarkdownID, List<ProductID>>();
+        for (int i = 0; i < snapshot.associationCount(); i++) {
+            var msb = snapshot.productMsb()[i];
+            var lsb = snapshot.productLsb()[i];
+            var id = ids[snapshot.productSlots()[i]];
+            expected.put(msb, lsb, snapshot.productSlots()[i]);
+            var current = getPolicyByProductId(new ProductID(new UUID(msb, lsb)));
+            if(current.isEmpty() || !current.get().id().equals(id)){
+                var products = associations.computeIfAbsent(id, __ -> new ArrayList<>());
+                products.add(new ProductID(new UUID(msb, lsb)));
+                if(products.size() == INSTALL_BATCH_SIZE){
+                    installWrite(new MarkdownMutation.Associated(id, associations.remove(id)), sequence, applied);
+                }
+            }
+        }
+        associations.forEach((id, products) -> installWrite(new MarkdownMutation.Associated(id, products), sequence, applied));
+
+        var removed = new HashMap<MarkdownID, List<ProductID>>();
+        for (var shard : shards) {
+            ProductMarkdownIndex products;
+            shard.lock.lock();
+            try {
+                products = shard.index.copy();
+            } finally {
+                shard.lock.unlock();
+            }
+            products.forEach((msb, lsb, __) -> removeUnlessExpected(msb, lsb, expected, removed, sequence, applied));
+        }
+        for (int i = 0; catalog != null && i < catalog.size(); i++) {
+            removeUnlessExpected(catalog.msbAt(i), catalog.lsbAt(i), expected, removed, sequence, applied);
+        }
+        removed.forEach((id, products) -> installWrite(new MarkdownMutation.AssociationRemoved(id, products), sequence, applied));
+
+        var kept = snapshot.markdowns().stream().map(entry -> entry.id().id()).collect(Collectors.toSet());
+        for (var id : markdownStorage.keySet()) {
+            if(!kept.contains(id)){
+                installWrite(new MarkdownMutation.Deleted(new MarkdownID(id)), sequence, applied);
+            }
+        }
+        writeLock.lock();
+        try {
+            lastSequence = sequence;
+        } finally {
+            writeLock.unlock();
+        }
+        if(changeLog != null){
+            changeLog.reset(sequence);
+        }
+    }
+
+    /**
+     * Collects the product for removal, by its current markdown, when it has one and the snapshot has none.
+     */
+    private void removeUnlessExpected(long msb, long lsb, ProductMarkdownIndex expected, Map<MarkdownID, List<ProductID>> removed,
+                                      long sequence, Consumer<MarkdownMutation> applied) {
+        if(expected.get(msb, lsb) != ProductMarkdownIndex.NO_SLOT){
+            return;
+        }
+        var product = new ProductID(new UUID(msb, lsb));
+        var current = getPolicyByProductId(product);
+        if(current.isPresent()){
+            var id = current.get().id();
+            var products = removed.computeIfAbsent(id, __ -> new ArrayList<>());
+            products.add(product);
+            if(products.size() == INSTALL_BATCH_SIZE){
+                installWrite(new MarkdownMutation.AssociationRemoved(id, removed.remove(id)), sequence, applied);
+            }
+        }
+    }
+
+    private void installWrite(MarkdownMutation mutation, long sequence, Consumer<MarkdownMutation> applied) {
+        if(write(mutation, sequence)){
+            applied.accept(mutation);
+        }
+    }
+
+    private void requireFollower() {
+        if(persistence != null){
+            throw new IllegalStateException("A follower can't persist its markdowns, it recovers them from its leader");
+        }
+    }
+
+    private boolean write(MarkdownMutation mutation) {
+        return write(mutation, LOCAL);
+    }
+
+    /**
+     * Applies and logs a mutation, returning false when it doesn't change anything.
+     * Local writes get the next sequence number and go to the change log, replicated ones keep the leader's.
+     * Association writes are applied after releasing the main lock, under the locks of their shards,
+     * which they take before releasing it so that overlapping writes are applied in the order they were logged.
+     * Every write is published to the markdown events once applied, before releasing the locks it was applied under,
+     * so overlapping writes are numbered in the order they were applied.
+     * Waiting for the journal happens outside the locks, so concurrent writers share the same fsync.
+     */
+    private boolean write(MarkdownMutation mutation, long replicated) {
+        var sequence = 0L;
+        var slot = ProductMarkdownIndex.NO_SLOT;
+        Shard[] locked = null;
+        writeLock.lock();
+        try {
+            if(replicated != LOCAL){
+                lastSequence = replicated;
+            }
+            if(!accepts(mutation)){
+                return false;
+            }
+            if(persistence != null){
+                sequence = persistence.append(mutation);
+                lastSequence = sequence;
+            } else if(replicated == LOCAL){
+                lastSequence++;
+            }
+            if(changeLog != null && replicated == LOCAL){
+                changeLog.append(lastSequence, mutation);
+            }
+            if(mutation instanceof MarkdownMutation.Associated associated){
+                slot = markdownSlotIds.get(mutation.markdownId().id());
+                locked = lockShardsOf(associated.products());
+            } else if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+                locked = lockShardsOf(removed.products());
+            } else if(mutation instanceof MarkdownMutation.Deleted){
+                lockShards();
+                try {
+                    versionedApply(mutation);
+                } finally {
+                    unlockShards();
+                }
+                markdownEvents.publish(mutation);
+            } else {
+                versionedApply(mutation);
+                markdownEvents.publish(mutation);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if(locked != null){
+            try {
+                versionedApply(mutation, slot, locked);
+                markdownEvents.publish(mutation);
+            } finally {
+                for (var shard : locked) {
+                    shard.lock.unlock();
+                }
+            }
+        }
+        if(persistence != null){
+            snapshotIfDue();
+            persistence.awaitDurable(sequence);
+        }
+        return true;
+    }
+
+    private void snapshotIfDue() {
+        writeLock.lock();
+        try {
+            if(persistence.snapshotDue()){
+                lockShards();
+                try {
+                    persistence.snapshot(capture(true));
+                } finally {
+                    unlockShards();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void resolve(List<ProductID> ids, int[] partitions, Optional<Markdown>[] markdowns, boolean parallel) {
+        var lookups = IntStream.range(0, markdowns.length);
+        (parallel ? lookups.parallel() : lookups).forEach(i -> {
+            var id = ids.get(i).id();
+            markdowns[i] = lookup(shards[partitions[i]], id.getMostSignificantBits(), id.getLeastSignificantBits());
+        });
+    }
+
+    private Optional<Markdown> lookup(Shard shard, long msb, long lsb) {
+        var slot = shard.index.get(msb, lsb);
+        if(slot == ProductMarkdownIndex.NO_SLOT && catalog != null){
+            slot = catalog.slotOf(msb, lsb);
+        }
+        if(slot != ProductMarkdownIndex.NO_SLOT){
+            return markdownSlots[slot];
+        }
+        return Optional.empty();
+    }
+
+    private boolean unchanged(boolean[] touched, long[] shardVersions) {
+        for (int i = 0; i < shards.length; i++) {
+            if(touched[i] && ((shardVersions[i] & 1) != 0 || shards[i].version != shardVersions[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a mutation with an odd version, so optimistic readers can tell their lookups overlapped it.
+     * Single writer: the version is only changed under the write lock.
+     */
+    private void versionedApply(MarkdownMutation mutation) {
+        version++;
+        VarHandle.storeStoreFence();
+        try {
+            apply(mutation);
+        } finally {
+            version++;
+        }
+    }
+
+    /**
+     * Applies an association write under the locks of its shards, with their versions odd meanwhile.
+     */
+    private void versionedApply(MarkdownMutation mutation, int slot, Shard[] locked) {
+        for (var shard : locked) {
+            shard.version++;
+        }
+        VarHandle.storeStoreFence();
+        try {
+            applyAssociations(mutation, slot);
+            revise();
+        } finally {
+            for (var shard : locked) {
+                shard.version++;
+            }
+        }
+    }
+
+    private boolean accepts(MarkdownMutation mutation) {
+        if(mutation instanceof MarkdownMutation.Updated || mutation instanceof MarkdownMutation.Deleted){
+            return markdownStorage.containsKey(mutation.markdownId().id());
+        }
+        if(mutation instanceof MarkdownMutation.Associated){
+            return markdownSlotIds.containsKey(mutation.markdownId().id());
+        }
+        return true;
+    }
+
+    /**
+     * State transition shared by live writes and journal replay. Must hold the write lock or run during recovery.
+     */
+    private void apply(MarkdownMutation mutation) {
+        var id = mutation.markdownId().id();
+        if(mutation instanceof MarkdownMutation.Created created){
+            var markdown = Optional.of(new Markdown(created.markdownId(), PolicyFactory.create(created.specification())));
+            var slot = markdownSlots.length;
+            markdownSlots = withSlot(slot, markdown);
+            markdownSlotIds.put(id, slot);
+            markdownStorage = with(id, markdown);
+            markdownRevisions = withRevision(id, revise());
+        } else if(mutation instanceof MarkdownMutation.Updated updated){
+            if(markdownStorage.containsKey(id)){
+                var markdown = Optional.of(new Markdown(updated.markdownId(), PolicyFactory.create(updated.specification())));
+                markdownSlots = withSlot(markdownSlotIds.get(id), markdown);
+                markdownStorage = with(id, markdown);
+                markdownRevisions = withRevision(id, revise());
+            }
+        } else if(mutation instanceof MarkdownMutation.Deleted){
+            if(markdownStorage.containsKey(id)){
+                var slot = markdownSlotIds.remove(id);
+                markdownSlots = withSlot(slot, Optional.empty());
+                markdownStorage = with(id, null);
+                markdownRevisions = withRevision(id, null);
+                dissociateAll(slot);
+                revise();
+            }
+        } else if(mutation instanceof MarkdownMutation.Associated){
+            var slot = markdownSlotIds.get(id);
+            if(slot != null){
+                applyAssociations(mutation, slot);
+                revise();
+            }
+        } else if(mutation instanceof MarkdownMutation.AssociationRemoved){
+            applyAssociations(mutation, ProductMarkdownIndex.NO_SLOT);
+            revise();
+        }
+    }
+
+    /**
+     * Bumps the revision after a write was applied, so that a reader never gets a revision newer than its state.
+     */
+    private Revision revise() {
+        return revision.updateAndGet(current -> current.next(Instant.now()));
+    }
+
+    /**
+     * Must hold the locks of the shards of the products, or run during recovery.
+     */
+    private void applyAssociations(MarkdownMutation mutation, int slot) {
+        if(mutation instanceof MarkdownMutation.Associated associated){
+            for (var product : associated.products()) {
+                associate(product.id().getMostSignificantBits(), product.id().getLeastSignificantBits(), slot);
+            }
+        } else if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+            for (var product : removed.products()) {
+                dissociate(product.id().getMostSignificantBits(), product.id().getLeastSignificantBits());
+            }
+        }
+    }
+
+    private void associate(long msb, long lsb, int slot) {
+        shardOf(msb, lsb).index.put(msb, lsb, slot);
+    }
+
+    private void dissociate(long msb, long lsb) {
+        var shard = shardOf(msb, lsb);
+        if(catalog != null && catalog.slotOf(msb, lsb) != MappedCatalog.NO_SLOT){
+            shard.index.put(msb, lsb, removedSlot);
+        } else {
+            shard.index.remove(msb, lsb);
+        }
+    }
+
+    /**
+     * Drops the associations of a deleted markdown. The ones in the catalog already resolve to no markdown
+     * through the emptied slot, and are left out of the next export.
+     */
+    private void dissociateAll(int slot) {
+        for (var shard : shards) {
+            shard.index.dropSlot(slot, (msb, lsb, __) -> {
+                if(catalog != null && catalog.slotOf(msb, lsb) != MappedCatalog.NO_SLOT){
+                    shard.index.put(msb, lsb, removedSlot);
+                } else {
+                    shard.index.remove(msb, lsb);
+                }
+            });
+        }
+    }
+
+    /**
+     * Catalog products of a slot not overridden by the overlay, found by scanning the catalog.
+     */
+    private Stream<UUID> catalogProducts(int slot) {
+        return IntStream.range(0, catalog.size())
+                .filter(i -> catalog.slotAt(i) == slot
+                        && shardOf(catalog.msbAt(i), catalog.lsbAt(i)).index.get(catalog.msbAt(i), catalog.lsbAt(i)) == ProductMarkdownIndex.NO_SLOT)
+                .mapToObj(i -> new UUID(catalog.msbAt(i), catalog.lsbAt(i)));
+    }
+
+    /**
+     * Restores a snapshot of the journal. On top of a catalog, the snapshot lists every markdown still alive,
+     * so catalog markdowns it lacks were deleted, and its associations are the overlay, with tombstones for
+     * the catalog products removed since. A snapshot taken on another catalog cannot be restored.
+     */
+    private void restore(MarkdownSnapshot snapshot) {
+        if(snapshot.catalog() != MarkdownSnapshot.NO_CATALOG && (catalog == null || catalog.checksum() != snapshot.catalog())){
+            throw new IllegalStateException("The markdown journal snapshot " + snapshot.sequence()
+                    + " was taken on top of another catalog");
+        }
+        var kept = snapshot.markdowns().stream().map(entry -> entry.id().id()).collect(Collectors.toSet());
+        for (var id : List.copyOf(markdownStorage.keySet())) {
+            if(!kept.contains(id)){
+                apply(new MarkdownMutation.Deleted(new MarkdownID(id)));
+            }
+        }
+        restoreMarkdowns(snapshot.markdowns());
+        var counts = new int[shards.length][markdownSlots.length];
+        for (int i = 0; i < snapshot.associationCount(); i++) {
+            counts[partitioner.partitionOf(snapshot.productMsb()[i], snapshot.productLsb()[i])][snapshot.productSlots()[i]]++;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].index.ensureCapacity(Arrays.stream(counts[i]).sum());
+            for (int slot = 0; slot < counts[i].length; slot++) {
+                if(counts[i][slot] > 0){
+                    shards[i].index.ensureCapacity(slot, counts[i][slot]);
+                }
+            }
+        }
+        for (int i = 0; i < snapshot.associationCount(); i++) {
+            var msb = snapshot.productMsb()[i];
+            var lsb = snapshot.productLsb()[i];
+            if(snapshot.productSlots()[i] == removedSlot){
+                dissociate(msb, lsb);
+            } else {
+                associate(msb, lsb, snapshot.productSlots()[i]);
+            }
+        }
+    }
+
+    private void restoreMarkdowns(List<MarkdownSnapshot.Entry> entries) {
+        var storage = new HashMap<>(markdownStorage);
+        var revisions = new HashMap<>(markdownRevisions);
+        var restored = revise();
+        var slots = markdownSlots;
+        for (var entry : entries) {
+            var markdown = Optional.of(new Markdown(entry.id(), PolicyFactory.create(entry.specification())));
+            slots = Arrays.copyOf(slots, Math.max(slots.length, entry.slot() + 1));
+            slots[entry.slot()] = markdown;
+            storage.put(entry.id().id(), markdown);
+            revisions.put(entry.id().id(), restored);
+            markdownSlotIds.put(entry.id().id(), entry.slot());
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if(slots[i] == null){
+                slots[i] = Optional.empty();
+            }
+        }
+        markdownSlots = slots;
+        markdownStorage = Map.copyOf(storage);
+        markdownRevisions = Map.copyOf(revisions);
+    }
+
+    /**
+     * Copies the state under the write lock and returns the function that builds the snapshot from the copy,
+     * off the lock. Associations pointing to deleted markdowns are dropped. With {@code overlay}, for the journal,
+     * only the overlay is kept, catalog products it removed included with the removed slot, so that restoring on top
+     * of the same catalog removes them again. Otherwise, for an export, the ones of the catalog are merged in,
+     * unless the overlay has a newer one.
+     */
+    private LongFunction<MarkdownSnapshot> capture(boolean overlay) {
+        var storage = markdownStorage;
+        var slotIds = Map.copyOf(markdownSlotIds);
+        var associations = new ProductMarkdownIndex[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            associations[i] = shards[i].index.copy();
+        }
+        var slots = markdownSlots;
+        return sequence -> {
+            var markdowns = new ArrayList<MarkdownSnapshot.Entry>(slotIds.size());
+            slotIds.forEach((id, slot) -> markdowns.add(new MarkdownSnapshot.Entry(slot, new MarkdownID(id),
+                    storage.get(id).get().policy().describe())));
+            var merged = !overlay && catalog != null;
+            var capacity = Arrays.stream(associations).mapToInt(ProductMarkdownIndex::size).sum() + (merged ? catalog.size() : 0);
+            var msb = new long[capacity];
+            var lsb = new long[capacity];
+            var productSlots = new int[capacity];
+            var count = new int[1];
+            for (int i = 0; merged && i < catalog.size(); i++) {
+                var productMsb = catalog.msbAt(i);
+                var productLsb = catalog.lsbAt(i);
+                var slot = catalog.slotAt(i);
+                if(associations[partitioner.partitionOf(productMsb, productLsb)].get(productMsb, productLsb) == ProductMarkdownIndex.NO_SLOT
+                        && slots[slot].isPresent()){
+                    msb[count[0]] = productMsb;
+                    lsb[count[0]] = productLsb;
+                    productSlots[count[0]++] = slot;
+                }
+            }
+            for (var shardAssociations : associations) {
+                shardAssociations.forEach((productMsb, productLsb, slot) -> {
+                    if(slots[slot].isPresent() || (overlay && slot == removedSlot)){
+                        msb[count[0]] = productMsb;
+                        lsb[count[0]] = productLsb;
+                        productSlots[count[0]++] = slot;
+                    }
+                });
+            }
+            return new MarkdownSnapshot(sequence, markdowns,
+                    Arrays.copyOf(msb, count[0]), Arrays.copyOf(lsb, count[0]), Arrays.copyOf(productSlots, count[0]),
+                    overlay && catalog != null ? catalog.checksum() : MarkdownSnapshot.NO_CATALOG);
+        };
+    }
+
+    private Shard shardOf(long msb, long lsb) {
+        return shards[partitioner.partitionOf(msb, lsb)];
+    }
+
+    private Optional<Integer> slotOf(MarkdownID markdownId) {
+        writeLock.lock();
+        try {
+            return Optional.ofNullable(markdownSlotIds.get(markdownId.id()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Locks the shards of the products, in order. Must hold the main lock.
+     */
+    private Shard[] lockShardsOf(List<ProductID> products) {
+        var touched = new boolean[shards.length];
+        for (var product : products) {
+            touched[partitioner.partitionOf(product)] = true;
+        }
+        var locked = new ArrayList<Shard>();
+        for (int i = 0; i < shards.length; i++) {
+            if(touched[i]){
+                shards[i].lock.lock();
+                locked.add(shards[i]);
+            }
+        }
+        return locked.toArray(new Shard[0]);
+    }
+
+    private void lockShards() {
+        for (var shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockShards() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+    }
+
+    /**
+     * The state is then the same for all readers, with no write in progress.
+     */
+    private void lockAll() {
+        writeLock.lock();
+        lockShards();
+    }
+
+    private void unlockAll() {
+        unlockShards();
+        writeLock.unlock();
+    }
+
+    private static int parseCursor(String cursor) {
+        var slot = Integer.parseInt(cursor);
+        if(slot < 0){
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        return slot;
+    }
+
+    private static MappedCatalog openCatalog(CatalogConfig config) {
+        if(config.file().isPresent()){
+            return openCatalog(Path.of(config.file().get()), config.preload());
+        }
+        if(!config.embedded()){
+            return null;
+        }
+        try {
+            return EmbeddedCatalog.open()
+                    .orElseThrow(() -> new IllegalStateException("No embedded markdown catalog " + EmbeddedCatalog.RESOURCE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the embedded markdown catalog", e);
+        }
+    }
+
+    private static MappedCatalog openCatalog(Path file, boolean preload) {
+        try {
+            var catalog = MappedCatalog.open(file);
+            if(preload){
+                catalog.preloadInBackground();
+            }
+            return catalog;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the markdown catalog " + file, e);
+        }
+    }
+
+    private Map<UUID, Optional<Markdown>> with(UUID id, Optional<Markdown> markdown) {
+        var storage = new HashMap<>(markdownStorage);
+        if(markdown == null){
+            storage.remove(id);
+        } else {
+            storage.put(id, markdown);
+        }
+        return Map.copyOf(storage);
+    }
+
+    private Map<UUID, Revision> withRevision(UUID id, Revision markdownRevision) {
+        var revisions = new HashMap<>(markdownRevisions);
+        if(markdownRevision == null){
+            revisions.remove(id);
+        } else {
+            revisions.put(id, markdownRevision);
+        }
+        return Map.copyOf(revisions);
+    }
+
+    private Optional<Markdown>[] withSlot(int slot, Optional<Markdown> markdown) {
+        var slots = Arrays.copyOf(markdownSlots, Math.max(markdownSlots.length, slot + 1));
+        slots[slot] = markdown;
+        return slots;
+    }
+
+    /**
+     * Associations of the products of one partition, with the positions of the products of every markdown slot
+     * among them. Written under its lock, read without it, but for the products of a slot.
+     */
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final ProductMarkdownIndex index = ProductMarkdownIndex.withSlotPositions();
+        volatile long version;
     }
 }
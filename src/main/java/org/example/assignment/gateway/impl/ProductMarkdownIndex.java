@@ -0,0 +1,401 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.ProductPartitioner;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Open addressing hash index from a product UUID to the int slot of its markdown.
+ * <p>
+ * Keys are stored as the two {@code long} halves of the UUID in parallel arrays and values as {@code int},
+ * which is 20 bytes per table entry. The table is kept between 53% and 80% full, so an association costs
+ * roughly 25 to 38 bytes instead of the 100+ of a {@code HashMap<UUID, UUID>} entry.
+ * <p>
+ * Any number of threads can read while a single thread writes: writers must be serialized by the caller.
+ * A value is published with release semantics after its key, and the key of a used entry never changes,
+ * so readers need no lock. Removed entries become tombstones that are only reclaimed by a rehash, which
+ * builds a new table and publishes it as a whole.
+ * <p>
+ * An index made by {@link #withSlotPositions()} also keeps, for every slot, the set of the positions of its products
+ * in the table, so the products of a slot can be listed, counted and dropped without scanning the table nor storing
+ * their keys again. A position is a single {@code int}, which with the same load factor costs 5 to 8 bytes per
+ * association. Positions only change on a rehash, which rebuilds the sets of the new table from it.
+ */
+class ProductMarkdownIndex {
+
+    static final int NO_SLOT = -1;
+
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final float MAX_LOAD = 0.8f;
+    private static final float GROWTH_FACTOR = 1.5f;
+    private static final int MIN_POSITIONS = 4;
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final boolean slotPositions;
+    private volatile Table table;
+    private int size;
+    private int tombstones;
+
+    ProductMarkdownIndex() {
+        this(false);
+    }
+
+    private ProductMarkdownIndex(boolean slotPositions) {
+        this.slotPositions = slotPositions;
+        this.table = new Table(MIN_CAPACITY, slotPositions);
+    }
+
+    private ProductMarkdownIndex(Table table, int size, int tombstones) {
+        this.slotPositions = false;
+        this.table = table;
+        this.size = size;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * An index that also keeps the positions of the products of every slot.
+     */
+    static ProductMarkdownIndex withSlotPositions() {
+        return new ProductMarkdownIndex(true);
+    }
+
+    int get(UUID productId) {
+        return get(productId.getMostSignificantBits(), productId.getLeastSignificantBits());
+    }
+
+    int get(long msb, long lsb) {
+        var t = table;
+        var capacity = t.values.length;
+        var i = t.indexFor(msb, lsb);
+        while (true) {
+            var value = (int) VALUES.getAcquire(t.values, i);
+            if(value == EMPTY){
+                return NO_SLOT;
+            }
+            if(t.msb[i] == msb && t.lsb[i] == lsb){
+                return value == TOMBSTONE ? NO_SLOT : value - 1;
+            }
+            if(++i == capacity){
+                i = 0;
+            }
+        }
+    }
+
+    void put(UUID productId, int slot) {
+        put(productId.getMostSignificantBits(), productId.getLeastSignificantBits(), slot);
+    }
+
+    void put(long msb, long lsb, int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("Invalid markdown slot " + slot);
+        }
+        var t = table;
+        var i = t.find(msb, lsb);
+        var value = t.values[i];
+        if(value != EMPTY){
+            if(value == slot + 1){
+                return;
+            }
+            if(value == TOMBSTONE){
+                tombstones--;
+                size++;
+            } else {
+                t.removePosition(value - 1, i);
+            }
+            VALUES.setRelease(t.values, i, slot + 1);
+            t.addPosition(slot, i);
+            return;
+        }
+        if(size + tombstones + 1 > t.threshold){
+            t = rehash(size + 1);
+            i = t.find(msb, lsb);
+        }
+        t.msb[i] = msb;
+        t.lsb[i] = lsb;
+        VALUES.setRelease(t.values, i, slot + 1);
+        t.addPosition(slot, i);
+        size++;
+    }
+
+    boolean remove(UUID productId) {
+        return remove(productId.getMostSignificantBits(), productId.getLeastSignificantBits());
+    }
+
+    boolean remove(long msb, long lsb) {
+        var t = table;
+        var i = t.find(msb, lsb);
+        var value = t.values[i];
+        if(value == EMPTY || value == TOMBSTONE){
+            return false;
+        }
+        VALUES.setRelease(t.values, i, TOMBSTONE);
+        t.removePosition(value - 1, i);
+        size--;
+        tombstones++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of products of a slot, with slot positions.
+     */
+    int size(int slot) {
+        var positions = table.positionsOf(slot);
+        return positions == null ? 0 : positions.size;
+    }
+
+    /**
+     * Grows the positions of a slot once so that {@code expectedSize} products fit without further rehashing.
+     */
+    void ensureCapacity(int slot, int expectedSize) {
+        table.positionsFor(slot).ensureCapacity(expectedSize);
+    }
+
+    /**
+     * Products of a slot, with slot positions. Must be called by the writer or serialized with it, the stream can
+     * then be consumed by any thread: writes made meanwhile may or may not be seen.
+     */
+    Stream<UUID> keys(int slot) {
+        var t = table;
+        var positions = t.positionsOf(slot);
+        if(positions == null){
+            return Stream.empty();
+        }
+        var entries = positions.entries;
+        return IntStream.range(0, entries.length)
+                .map(i -> (int) VALUES.getAcquire(entries, i) - 1)
+                .filter(i -> i >= 0 && (int) VALUES.getAcquire(t.values, i) == slot + 1)
+                .mapToObj(i -> new UUID(t.msb[i], t.lsb[i]));
+    }
+
+    /**
+     * Forgets the positions of a slot and hands its products to {@code consumer}, which is expected to put them
+     * in another slot or remove them, neither of which grows the table.
+     */
+    void dropSlot(int slot, EntryConsumer consumer) {
+        var t = table;
+        var positions = t.positionsOf(slot);
+        if(positions == null){
+            return;
+        }
+        t.bySlot[slot] = null;
+        for (var entry : positions.entries) {
+            if(entry > 0){
+                consumer.accept(t.msb[entry - 1], t.lsb[entry - 1], slot);
+            }
+        }
+    }
+
+    /**
+     * Grows the table once so that {@code expectedSize} associations fit without further rehashing.
+     */
+    void ensureCapacity(int expectedSize) {
+        if(expectedSize + tombstones > table.threshold){
+            rehash(expectedSize);
+        }
+    }
+
+    /**
+     * Point in time copy, to be taken by the writer. The copy can then be read by any thread.
+     */
+    ProductMarkdownIndex copy() {
+        var t = table;
+        return new ProductMarkdownIndex(new Table(t.msb.clone(), t.lsb.clone(), t.values.clone()), size, tombstones);
+    }
+
+    void forEach(EntryConsumer consumer) {
+        var t = table;
+        for (int i = 0; i < t.values.length; i++) {
+            var value = (int) VALUES.getAcquire(t.values, i);
+            if(value != EMPTY && value != TOMBSTONE){
+                consumer.accept(t.msb[i], t.lsb[i], value - 1);
+            }
+        }
+    }
+
+    /**
+     * Products of the current table. Writes made while the stream is consumed may or may not be seen.
+     */
+    Stream<UUID> keys() {
+        var t = table;
+        return IntStream.range(0, t.values.length)
+                .filter(i -> {
+                    var value = (int) VALUES.getAcquire(t.values, i);
+                    return value != EMPTY && value != TOMBSTONE;
+                })
+                .mapToObj(i -> new UUID(t.msb[i], t.lsb[i]));
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long msb, long lsb, int slot);
+    }
+
+    private Table rehash(int expectedSize) {
+        var capacity = Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize * GROWTH_FACTOR / MAX_LOAD));
+        var old = table;
+        var t = new Table(capacity, slotPositions);
+        if(slotPositions){
+            for (int slot = 0; slot < old.bySlot.length; slot++) {
+                if(old.bySlot[slot] != null){
+                    t.positionsFor(slot).ensureCapacity(old.bySlot[slot].size);
+                }
+            }
+        }
+        for (int i = 0; i < old.values.length; i++) {
+            var value = old.values[i];
+            if(value != EMPTY && value != TOMBSTONE){
+                var j = t.find(old.msb[i], old.lsb[i]);
+                t.msb[j] = old.msb[i];
+                t.lsb[j] = old.lsb[i];
+                t.values[j] = value;
+                t.addPosition(value - 1, j);
+            }
+        }
+        tombstones = 0;
+        table = t;
+        return t;
+    }
+
+    private static final class Table {
+        final long[] msb;
+        final long[] lsb;
+        final int[] values;
+        final int threshold;
+        Positions[] bySlot;
+
+        Table(int capacity, boolean slotPositions) {
+            this(new long[capacity], new long[capacity], new int[capacity]);
+            this.bySlot = slotPositions ? new Positions[0] : null;
+        }
+
+        Table(long[] msb, long[] lsb, int[] values) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.values = values;
+            this.threshold = (int) (values.length * MAX_LOAD);
+        }
+
+        Positions positionsOf(int slot) {
+            return bySlot != null && slot < bySlot.length ? bySlot[slot] : null;
+        }
+
+        Positions positionsFor(int slot) {
+            if(slot >= bySlot.length){
+                bySlot = Arrays.copyOf(bySlot, Math.max(slot + 1, bySlot.length * 2));
+            }
+            if(bySlot[slot] == null){
+                bySlot[slot] = new Positions();
+            }
+            return bySlot[slot];
+        }
+
+        void addPosition(int slot, int position) {
+            if(bySlot != null){
+                positionsFor(slot).add(position);
+            }
+        }
+
+        void removePosition(int slot, int position) {
+            var positions = positionsOf(slot);
+            if(positions != null){
+                positions.remove(position);
+            }
+        }
+
+        int indexFor(long msb, long lsb) {
+            var hash = ProductPartitioner.hash(msb, lsb);
+            return (int) (((hash >>> 32) * values.length) >>> 32);
+        }
+
+        /**
+         * Index of the entry holding the key, or of the first empty entry of its probe sequence.
+         */
+        int find(long msb, long lsb) {
+            var i = indexFor(msb, lsb);
+            while (values[i] != EMPTY && (this.msb[i] != msb || this.lsb[i] != lsb)) {
+                if(++i == values.length){
+                    i = 0;
+                }
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Open addressing set of table positions, stored plus one so that 0 is empty. A removed position is negated,
+     * which keeps it in its probe sequence: adding it back reuses its entry and readers never see it twice.
+     */
+    private static final class Positions {
+        volatile int[] entries = new int[MIN_POSITIONS];
+        int size;
+        int removed;
+
+        void add(int position) {
+            var key = position + 1;
+            var e = entries;
+            var i = find(e, key);
+            if(e[i] == key){
+                return;
+            }
+            if(e[i] == -key){
+                removed--;
+            } else if(size + removed + 1 > e.length * MAX_LOAD){
+                e = rehash(size + 1);
+                i = find(e, key);
+            }
+            VALUES.setRelease(e, i, key);
+            size++;
+        }
+
+        void remove(int position) {
+            var key = position + 1;
+            var e = entries;
+            var i = find(e, key);
+            if(e[i] == key){
+                VALUES.setRelease(e, i, -key);
+                size--;
+                removed++;
+            }
+        }
+
+        void ensureCapacity(int expectedSize) {
+            if(expectedSize + removed > entries.length * MAX_LOAD){
+                rehash(expectedSize);
+            }
+        }
+
+        private int[] rehash(int expectedSize) {
+            var capacity = Integer.highestOneBit(Math.max(MIN_POSITIONS, (int) Math.ceil(expectedSize * GROWTH_FACTOR / MAX_LOAD)) - 1) << 1;
+            var e = new int[capacity];
+            for (var key : entries) {
+                if(key > 0){
+                    e[find(e, key)] = key;
+                }
+            }
+            removed = 0;
+            entries = e;
+            return e;
+        }
+
+        private static int find(int[] entries, int key) {
+            var mask = entries.length - 1;
+            var hash = key * 0x9E3779B9;
+            var i = (hash ^ (hash >>> 16)) & mask;
+            while (entries[i] != EMPTY && Math.abs(entries[i]) != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
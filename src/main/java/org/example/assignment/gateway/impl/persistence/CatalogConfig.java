@@ -0,0 +1,27 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.Optional;
+
+@ConfigMapping(prefix = "pricing.gateway.catalog")
+public interface CatalogConfig {
+
+    /**
+     * Snapshot file exported by another node, served memory mapped underneath the in memory state.
+     */
+    Optional<String> file();
+
+    /**
+     * Serves the catalog packaged in the application, see {@link EmbeddedCatalog}, when no file is set.
+     */
+    @WithDefault("false")
+    boolean embedded();
+
+    /**
+     * Reads the whole catalog into the page cache in background after startup.
+     */
+    @WithDefault("true")
+    boolean preload();
+}
@@ -0,0 +1,38 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Catalog packaged with the application as the {@value #RESOURCE} classpath resource, so that a node starts
+ * with every markdown and association without a file to mount.
+ * <p>
+ * The resource is read by the static initializer. The native build initializes this class at build time,
+ * so a native image holds the catalog in its image heap: it is mapped with the executable and served
+ * without reading anything at startup.
+ */
+public final class EmbeddedCatalog {
+
+    public static final String RESOURCE = "META-INF/pricing/catalog.bin";
+
+    private static final byte[] SNAPSHOT = read();
+
+    private EmbeddedCatalog() {
+    }
+
+    public static Optional<MappedCatalog> open() throws IOException {
+        return SNAPSHOT == null
+                ? Optional.empty()
+                : Optional.of(MappedCatalog.wrap(ByteBuffer.wrap(SNAPSHOT), RESOURCE));
+    }
+
+    private static byte[] read() {
+        try (var in = EmbeddedCatalog.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            return in == null ? null : in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the embedded catalog " + RESOURCE, e);
+        }
+    }
+}
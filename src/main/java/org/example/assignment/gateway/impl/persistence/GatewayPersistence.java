@@ -0,0 +1,140 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import org.example.assignment.model.MarkdownMutation;
+import org.jboss.logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * File backed durability for the in memory gateway: a {@link MarkdownJournal} of every mutation
+ * plus periodic {@link MarkdownSnapshot}s that bound the part of the journal replayed on startup.
+ * <p>
+ * Appends and snapshot requests must come from one thread at a time, the gateway calls them under its write lock.
+ */
+public class GatewayPersistence implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(GatewayPersistence.class);
+
+    private final PersistenceConfig config;
+    private final Path directory;
+    private final ExecutorService snapshotWriter;
+    private final AtomicBoolean snapshotInProgress;
+    private MarkdownJournal journal;
+
+    public GatewayPersistence(PersistenceConfig config) {
+        this.config = config;
+        this.directory = Path.of(config.directory());
+        this.snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "markdown-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotInProgress = new AtomicBoolean();
+    }
+
+    /**
+     * Restores the latest snapshot, replays the journal written after it and opens the journal for new mutations.
+     */
+    public void recover(Consumer<MarkdownSnapshot> restore, Consumer<MarkdownMutation> replay) {
+        try {
+            Files.createDirectories(directory);
+            var start = System.nanoTime();
+            var sequence = 0L;
+            var associations = 0L;
+            var latest = MarkdownSnapshot.latest(directory);
+            if(latest.isPresent()){
+                var snapshot = MarkdownSnapshot.read(latest.get());
+                restore.accept(snapshot);
+                sequence = snapshot.sequence();
+                associations = snapshot.associationCount();
+            }
+            var replayedAssociations = new long[1];
+            var lastSequence = MarkdownJournal.replay(directory, sequence, mutation -> {
+                if(mutation instanceof MarkdownMutation.Associated associated){
+                    replayedAssociations[0] += associated.products().size();
+                }
+                replay.accept(mutation);
+            });
+            associations += replayedAssociations[0];
+            var elapsedNanos = Math.max(1, System.nanoTime() - start);
+            LOG.infof("Recovered markdown gateway up to sequence %d from %s: %d associations in %d ms (%.2f M associations/s)",
+                    lastSequence, directory, associations, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    associations * 1e3 / elapsedNanos);
+            journal = new MarkdownJournal(directory, lastSequence + 1,
+                    config.fsyncInterval(), config.fsyncBatchSize(), config.waitForFsync());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to recover the markdown gateway from " + directory, e);
+        }
+    }
+
+    public long append(MarkdownMutation mutation) {
+        return journal.append(mutation);
+    }
+
+    public void awaitDurable(long sequence) {
+        journal.awaitDurable(sequence);
+    }
+
+    public long lastSequence() {
+        return journal.lastSequence();
+    }
+
+    public boolean snapshotDue() {
+        return !snapshotInProgress.get() && journal.segmentBytes() >= config.snapshotAfterBytes();
+    }
+
+    /**
+     * Starts a new journal segment and writes, in background, the snapshot built by {@code capture} for the last
+     * appended sequence number. {@code capture} must only use state copied before this call.
+     */
+    public void snapshot(LongFunction<MarkdownSnapshot> capture) {
+        if(!snapshotInProgress.compareAndSet(false, true)){
+            return;
+        }
+        var sequence = journal.lastSequence();
+        try {
+            journal.roll();
+        } catch (IOException e) {
+            snapshotInProgress.set(false);
+            throw new UncheckedIOException(e);
+        }
+        snapshotWriter.execute(() -> {
+            try {
+                var start = System.nanoTime();
+                var snapshot = capture.apply(sequence);
+                var file = MarkdownSnapshot.write(directory, snapshot);
+                journal.deleteSegmentsBefore(sequence);
+                MarkdownSnapshot.deleteOlderThan(directory, sequence);
+                LOG.infof("Wrote %s with %d associations in %d ms", file.getFileName(), snapshot.associationCount(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Unable to write the markdown snapshot", e);
+            } finally {
+                snapshotInProgress.set(false);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(journal != null){
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only view of a {@link MarkdownSnapshot} file whose associations are memory mapped instead of loaded,
+ * or searched in place when the snapshot is already in memory.
+ * <p>
+ * Only the header and the markdown section are read on open, so opening costs the same for any number of
+ * associations. Products are searched in the sorted, fixed width association records, see {@link #slotOf},
+ * and the pages touched are loaded by the OS on demand. The association checksum is not verified, as that would
+ * read the whole file, but it identifies the catalog along with the markdown section one, see {@link #checksum()}.
+ */
+public class MappedCatalog {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int MSB_OFFSET = 0;
+    private static final int LSB_OFFSET = Long.BYTES;
+    private static final int SLOT_OFFSET = Long.BYTES * 2;
+    private static final int BINARY_SEARCH_RANGE = 64;
+
+    private final List<MarkdownSnapshot.Entry> markdowns;
+    private final ByteBuffer associations;
+    private final int size;
+    private final long checksum;
+
+    private MappedCatalog(List<MarkdownSnapshot.Entry> markdowns, ByteBuffer associations, int size, long checksum) {
+        this.markdowns = markdowns;
+        this.associations = associations;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    public static MappedCatalog open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate((int) Math.min(MarkdownSnapshot.HEADER_SIZE, channel.size()));
+            readFully(channel, header, 0);
+            var layout = Layout.of(header.flip(), channel.size(), file.toString());
+            var markdownSection = ByteBuffer.allocate(layout.markdownSectionLength);
+            readFully(channel, markdownSection, layout.headerSize);
+            var associations = channel.map(FileChannel.MapMode.READ_ONLY, layout.associationsOffset(), layout.associationsLength());
+            var trailer = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, trailer, layout.associationsOffset() + layout.associationsLength());
+            return new MappedCatalog(layout.markdowns(markdownSection.array()), associations, (int) layout.associationCount,
+                    layout.checksum(trailer.getInt(0)));
+        }
+    }
+
+    /**
+     * Catalog over a snapshot already in memory, such as a classpath resource: associations are searched in place.
+     */
+    public static MappedCatalog wrap(ByteBuffer snapshot, String source) throws IOException {
+        var bytes = snapshot.slice();
+        var layout = Layout.of(bytes.slice(0, Math.min(MarkdownSnapshot.HEADER_SIZE, bytes.limit())), bytes.limit(), source);
+        var markdownSection = new byte[layout.markdownSectionLength];
+        bytes.get(layout.headerSize, markdownSection);
+        var associations = bytes.slice((int) layout.associationsOffset(), (int) layout.associationsLength());
+        return new MappedCatalog(layout.markdowns(markdownSection), associations, (int) layout.associationCount,
+                layout.checksum(bytes.getInt((int) (layout.associationsOffset() + layout.associationsLength()))));
+    }
+
+    /**
+     * Pages the whole association section in from a background thread, so that lookups stop
+     * hitting the disk sooner. Lookups can be served meanwhile.
+     */
+    public void preloadInBackground() {
+        if(!(associations instanceof MappedByteBuffer mapped)){
+            return;
+        }
+        var preload = new Thread(mapped::load, "markdown-catalog-preload");
+        preload.setDaemon(true);
+        preload.start();
+    }
+
+    public List<MarkdownSnapshot.Entry> markdowns() {
+        return markdowns;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The checksums of the markdown and association sections, which journal snapshots taken on top of the catalog
+     * record so that they are never restored on another one. Never {@link MarkdownSnapshot#NO_CATALOG}.
+     */
+    public long checksum() {
+        return checksum;
+    }
+
+    /**
+     * Markdown slot of a product, or {@link #NO_SLOT}.
+     * <p>
+     * Random UUIDs are uniformly spread, so the position of a product can be estimated by interpolating its
+     * most significant bits, with an error of about the square root of the range. Each step shrinks the range
+     * to a window of a few times that error around the estimate, which touches a handful of pages instead of
+     * one per bisection. The range is only narrowed past records with strictly smaller or larger most significant
+     * bits, so products sharing them are never left out. A binary search finishes the job, and bounds the cost
+     * when ids are not uniform.
+     */
+    public int slotOf(long msb, long lsb) {
+        var low = 0;
+        var high = size - 1;
+        if(high - low > BINARY_SEARCH_RANGE){
+            var lowMsb = msbAt(low);
+            var highMsb = msbAt(high);
+            while (high - low > BINARY_SEARCH_RANGE && lowMsb < highMsb) {
+                if(msb < lowMsb || msb > highMsb){
+                    return NO_SLOT;
+                }
+                var estimate = low + (int) (((double) msb - lowMsb) / ((double) highMsb - lowMsb) * (high - low));
+                var window = 2 * (int) Math.sqrt(high - low) + 1;
+                var windowLow = Math.max(low, estimate - window);
+                var windowHigh = Math.min(high, estimate + window);
+                if(windowLow == low && windowHigh == high){
+                    break;
+                }
+                var windowLowMsb = msbAt(windowLow);
+                if(windowLowMsb > msb){
+                    high = windowLow - 1;
+                    break;
+                }
+                var windowHighMsb = msbAt(windowHigh);
+                if(windowHighMsb < msb){
+                    low = windowHigh + 1;
+                    break;
+                }
+                // Products with the same most significant bits can be on either side of the window: only narrow past strictly smaller or larger ones
+                var narrowed = false;
+                if(windowLowMsb < msb && windowLow > low){
+                    low = windowLow;
+                    lowMsb = windowLowMsb;
+                    narrowed = true;
+                }
+                if(windowHighMsb > msb && windowHigh < high){
+                    high = windowHigh;
+                    highMsb = windowHighMsb;
+                    narrowed = true;
+                }
+                if(!narrowed){
+                    break;
+                }
+            }
+        }
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var result = MarkdownSnapshot.compare(msbAt(mid), lsbAt(mid), msb, lsb);
+            if(result < 0){
+                low = mid + 1;
+            } else if(result > 0){
+                high = mid - 1;
+            } else {
+                return slotAt(mid);
+            }
+        }
+        return NO_SLOT;
+    }
+
+    public long msbAt(int index) {
+        return associations.getLong(index * MarkdownSnapshot.ASSOCIATION_SIZE + MSB_OFFSET);
+    }
+
+    public long lsbAt(int index) {
+        return associations.getLong(index * MarkdownSnapshot.ASSOCIATION_SIZE + LSB_OFFSET);
+    }
+
+    public int slotAt(int index) {
+        return associations.getInt(index * MarkdownSnapshot.ASSOCIATION_SIZE + SLOT_OFFSET);
+    }
+
+    /**
+     * Sections of a snapshot, from its header.
+     */
+    private record Layout(int headerSize, int markdownSectionLength, int markdownSectionCrc, long associationCount, String source) {
+
+        static Layout of(ByteBuffer header, long size, String source) throws IOException {
+            if(header.remaining() < MarkdownSnapshot.VERSION_1_HEADER_SIZE || header.getInt() != MarkdownSnapshot.MAGIC){
+                throw new IOException("Not a markdown snapshot: " + source);
+            }
+            var version = header.getInt();
+            var headerSize = version == 1 ? MarkdownSnapshot.VERSION_1_HEADER_SIZE : MarkdownSnapshot.HEADER_SIZE;
+            if((version != 1 && version != MarkdownSnapshot.VERSION) || header.remaining() + Integer.BYTES * 2 < headerSize){
+                throw new IOException("Not a markdown snapshot: " + source);
+            }
+            header.getLong();
+            var layout = new Layout(headerSize, header.getInt(), header.getInt(), header.getLong(), source);
+            if(version != 1 && header.getLong() != MarkdownSnapshot.NO_CATALOG){
+                throw new IOException("Not a catalog but the writes made on top of one: " + source);
+            }
+            if(layout.associationsLength() > Integer.MAX_VALUE){
+                throw new IOException("Too many associations to map " + source + ": " + layout.associationCount);
+            }
+            if(size != layout.associationsOffset() + layout.associationsLength() + Integer.BYTES){
+                throw new IOException("Truncated markdown snapshot: " + source);
+            }
+            return layout;
+        }
+
+        long associationsOffset() {
+            return (long) headerSize + markdownSectionLength;
+        }
+
+        long checksum(int associationSectionCrc) {
+            var checksum = (long) markdownSectionCrc << 32 | (associationSectionCrc & 0xFFFFFFFFL);
+            return checksum != MarkdownSnapshot.NO_CATALOG ? checksum : 1;
+        }
+
+        long associationsLength() {
+            return associationCount * MarkdownSnapshot.ASSOCIATION_SIZE;
+        }
+
+        List<MarkdownSnapshot.Entry> markdowns(byte[] markdownSection) throws IOException {
+            var crc = new CRC32C();
+            crc.update(markdownSection);
+            if((int) crc.getValue() != markdownSectionCrc){
+                throw new IOException("Corrupted markdown section in " + source);
+            }
+            return MarkdownSnapshot.readMarkdowns(markdownSection);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0){
+                throw new IOException("Unexpected end of markdown snapshot");
+            }
+        }
+    }
+}
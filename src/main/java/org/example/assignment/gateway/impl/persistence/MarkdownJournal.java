@@ -0,0 +1,336 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import org.example.assignment.gateway.codec.MarkdownCodec;
+import org.example.assignment.model.MarkdownMutation;
+import org.jboss.logging.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of markdown mutations.
+ * <p>
+ * The log is split in segments named after the sequence number of their first record. Every record is framed as
+ * {@code length, crc, sequence, payload} so a torn write at the end of the last segment is detected and cut away
+ * on recovery.
+ * <p>
+ * Appends only encode the record into a memory buffer. A background thread writes and fsyncs the buffer when
+ * {@code fsyncBatchSize} records are pending or {@code fsyncInterval} has elapsed, so all the mutations waiting
+ * in {@link #awaitDurable(long)} share the same fsync (group commit).
+ */
+public class MarkdownJournal implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(MarkdownJournal.class);
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final long fsyncIntervalNanos;
+    private final int fsyncBatchSize;
+    private final boolean waitForFsync;
+    private final Object ioLock;
+    private final Thread flusher;
+
+    private final RecordBuffer record;
+    private final DataOutputStream recordOut;
+    private final CRC32C crc;
+    private RecordBuffer pending;
+    private int pendingRecords;
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean closed;
+
+    private FileChannel segment;
+    private long segmentBytes;
+
+    MarkdownJournal(Path directory, long nextSequence, Duration fsyncInterval, int fsyncBatchSize, boolean waitForFsync) throws IOException {
+        this.directory = directory;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.fsyncBatchSize = fsyncBatchSize;
+        this.waitForFsync = waitForFsync;
+        this.ioLock = new Object();
+        this.record = new RecordBuffer(256);
+        this.recordOut = new DataOutputStream(record);
+        this.crc = new CRC32C();
+        this.pending = new RecordBuffer(4096);
+        this.appendedSequence = nextSequence - 1;
+        this.durableSequence = nextSequence - 1;
+        this.segment = openSegment(nextSequence);
+        this.flusher = new Thread(this::flushLoop, "markdown-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends a mutation and returns its sequence number. Callers must not append concurrently.
+     */
+    public synchronized long append(MarkdownMutation mutation) {
+        checkUsable();
+        var sequence = appendedSequence + 1;
+        try {
+            record.reset();
+            recordOut.writeLong(sequence);
+            MarkdownCodec.writeMutation(recordOut, mutation);
+            crc.reset();
+            crc.update(record.buffer(), 0, record.size());
+            var header = ByteBuffer.allocate(HEADER_SIZE).putInt(record.size()).putInt((int) crc.getValue());
+            pending.write(header.array());
+            pending.write(record.buffer(), 0, record.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appendedSequence = sequence;
+        if(++pendingRecords == 1 || pendingRecords >= fsyncBatchSize){
+            notifyAll();
+        }
+        return sequence;
+    }
+
+    /**
+     * Blocks until the mutation with the given sequence number is on disk, unless the journal is configured
+     * to acknowledge mutations without waiting for the fsync.
+     */
+    public synchronized void awaitDurable(long sequence) {
+        if(!waitForFsync){
+            return;
+        }
+        while (durableSequence < sequence) {
+            checkUsable();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the journal", e);
+            }
+        }
+    }
+
+    public synchronized long lastSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * Bytes written to the current segment.
+     */
+    public long segmentBytes() {
+        synchronized (ioLock) {
+            return segmentBytes;
+        }
+    }
+
+    /**
+     * Flushes the pending records and starts a new segment for the records following the last appended one.
+     * Must be called by the thread that appends.
+     */
+    public void roll() throws IOException {
+        synchronized (ioLock) {
+            flush();
+            segment.close();
+            segment = openSegment(lastSequence() + 1);
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all precede the given sequence number.
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        var segments = listSegments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if(firstSequence(segments.get(i + 1)) <= sequence + 1){
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if(closed){
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            flush();
+            segment.close();
+        }
+    }
+
+    /**
+     * Replays every record with a sequence number greater than {@code afterSequence}, cutting away a torn tail.
+     * Returns the sequence number of the last record found.
+     */
+    static long replay(Path directory, long afterSequence, Consumer<MarkdownMutation> consumer) throws IOException {
+        var lastSequence = afterSequence;
+        for (var segmentPath : listSegments(directory)) {
+            var segmentSize = Files.size(segmentPath);
+            var validBytes = 0L;
+            try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath), 1 << 16))) {
+                var crc = new CRC32C();
+                while (true) {
+                    int length;
+                    int checksum;
+                    byte[] payload;
+                    try {
+                        length = in.readInt();
+                        checksum = in.readInt();
+                        if(length < Long.BYTES || length > segmentSize - validBytes - HEADER_SIZE){
+                            break;
+                        }
+                        payload = new byte[length];
+                        in.readFully(payload);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(payload);
+                    if((int) crc.getValue() != checksum){
+                        break;
+                    }
+                    var record = new DataInputStream(new ByteArrayInputStream(payload));
+                    var sequence = record.readLong();
+                    if(sequence > lastSequence){
+                        if(sequence != lastSequence + 1 && lastSequence != afterSequence){
+                            LOG.warnf("Journal gap between sequence %d and %d", lastSequence, sequence);
+                        }
+                        consumer.accept(MarkdownCodec.readMutation(record));
+                        lastSequence = sequence;
+                    }
+                    validBytes += HEADER_SIZE + length;
+                }
+            }
+            if(validBytes < segmentSize){
+                LOG.warnf("Truncating torn journal tail of %s at %d bytes", segmentPath, validBytes);
+                try (var channel = FileChannel.open(segmentPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                var deadline = System.nanoTime() + fsyncIntervalNanos;
+                while (!closed && (pendingRecords == 0 || (pendingRecords < fsyncBatchSize && System.nanoTime() < deadline))) {
+                    try {
+                        var remaining = deadline - System.nanoTime();
+                        if(pendingRecords == 0){
+                            wait();
+                            deadline = System.nanoTime() + fsyncIntervalNanos;
+                        } else if(remaining > 0){
+                            wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if(closed){
+                    return;
+                }
+            }
+            try {
+                synchronized (ioLock) {
+                    flush();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                LOG.error("Unable to write the markdown journal", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes and fsyncs whatever is pending. Must hold {@link #ioLock}, so records reach the file in order.
+     */
+    private void flush() throws IOException {
+        RecordBuffer batch;
+        long batchSequence;
+        synchronized (this) {
+            if(pendingRecords == 0){
+                return;
+            }
+            batch = pending;
+            batchSequence = appendedSequence;
+            pending = new RecordBuffer(Math.max(4096, batch.size()));
+            pendingRecords = 0;
+        }
+        var buffer = ByteBuffer.wrap(batch.buffer(), 0, batch.size());
+        while (buffer.hasRemaining()) {
+            segmentBytes += segment.write(buffer);
+        }
+        segment.force(false);
+        synchronized (this) {
+            durableSequence = batchSequence;
+            notifyAll();
+        }
+    }
+
+    private void checkUsable() {
+        if(failure != null){
+            throw new UncheckedIOException("The markdown journal failed", failure);
+        }
+        if(closed){
+            throw new IllegalStateException("The markdown journal is closed");
+        }
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        segmentBytes = 0;
+        var path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files
+                    .filter(x -> x.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(x -> x.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Gives access to the internal buffer, to avoid copying records around.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import org.example.assignment.gateway.codec.MarkdownCodec;
+import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.MarkdownPolicySpecification;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Compacted image of the gateway state up to a journal sequence number.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * header       magic, version, sequence, markdown section length and crc, association count, catalog (40 bytes)
+ * markdowns    per markdown: slot, id, encoded specification
+ * associations per product, sorted by id: most and least significant bits, markdown slot (20 bytes each)
+ * trailer      crc of the association section
+ * </pre>
+ * Associations have a fixed width and are sorted, so a product can be found in the file by binary search.
+ * <p>
+ * A snapshot of a node serving a {@link MappedCatalog} only holds the writes made on top of it, and the
+ * {@link MappedCatalog#checksum()} of that catalog; a complete snapshot, such as a catalog, has {@link #NO_CATALOG}.
+ * Version 1 files, whose header had no catalog, are complete.
+ */
+public record MarkdownSnapshot(long sequence, List<Entry> markdowns, long[] productMsb, long[] productLsb, int[] productSlots,
+                               long catalog) {
+
+    public record Entry(int slot, MarkdownID id, MarkdownPolicySpecification specification) {
+    }
+
+    public static final long NO_CATALOG = 0;
+
+    static final int MAGIC = 0x4D44534E;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    static final int VERSION_1_HEADER_SIZE = 32;
+    static final int ASSOCIATION_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+    private static final int CHUNK_ENTRIES = 4096;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    public MarkdownSnapshot(long sequence, List<Entry> markdowns, long[] productMsb, long[] productLsb, int[] productSlots) {
+        this(sequence, markdowns, productMsb, productLsb, productSlots, NO_CATALOG);
+    }
+
+    public int associationCount() {
+        return productSlots.length;
+    }
+
+    /**
+     * Writes the snapshot next to the journal, sorting the associations in place.
+     */
+    static Path write(Path directory, MarkdownSnapshot snapshot) throws IOException {
+        var target = directory.resolve(String.format("%s%020d%s", PREFIX, snapshot.sequence, SUFFIX));
+        var temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeTo(Channels.newOutputStream(channel), snapshot);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Writes the snapshot file content to a stream, sorting the associations in place. The stream is not closed.
+     */
+    public static void writeTo(OutputStream stream, MarkdownSnapshot snapshot) throws IOException {
+        sort(snapshot.productMsb, snapshot.productLsb, snapshot.productSlots, 0, snapshot.associationCount());
+
+        var markdownBytes = new ByteArrayOutputStream();
+        var markdownOut = new DataOutputStream(markdownBytes);
+        for (var markdown : snapshot.markdowns) {
+            markdownOut.writeInt(markdown.slot());
+            MarkdownCodec.writeUUID(markdownOut, markdown.id().id());
+            MarkdownCodec.writeSpecification(markdownOut, markdown.specification());
+        }
+        var crc = new CRC32C();
+        crc.update(markdownBytes.toByteArray());
+
+        var out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.sequence);
+        out.writeInt(markdownBytes.size());
+        out.writeInt((int) crc.getValue());
+        out.writeLong(snapshot.associationCount());
+        out.writeLong(snapshot.catalog);
+        markdownBytes.writeTo(out);
+        crc.reset();
+        var chunk = ByteBuffer.allocate(ASSOCIATION_SIZE * CHUNK_ENTRIES);
+        for (int i = 0; i < snapshot.associationCount(); i++) {
+            chunk.putLong(snapshot.productMsb[i]).putLong(snapshot.productLsb[i]).putInt(snapshot.productSlots[i]);
+            if(!chunk.hasRemaining() || i == snapshot.associationCount() - 1){
+                crc.update(chunk.array(), 0, chunk.position());
+                out.write(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+        }
+        out.writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    static Optional<Path> latest(Path directory) throws IOException {
+        var snapshots = list(directory);
+        return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+    }
+
+    static void deleteOlderThan(Path directory, long sequence) throws IOException {
+        for (var snapshot : list(directory)) {
+            if(sequenceOf(snapshot) < sequence){
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    static MarkdownSnapshot read(Path file) throws IOException {
+        try (var in = Files.newInputStream(file)) {
+            return readFrom(in, file.toString());
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(OutputStream, MarkdownSnapshot)}, {@code source} names it in errors.
+     * The stream is not closed.
+     */
+    public static MarkdownSnapshot readFrom(InputStream stream, String source) throws IOException {
+        var in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if(in.readInt() != MAGIC){
+            throw new IOException("Not a markdown snapshot: " + source);
+        }
+        var version = in.readInt();
+        if(version != 1 && version != VERSION){
+            throw new IOException("Unsupported markdown snapshot version " + version + ": " + source);
+        }
+        var sequence = in.readLong();
+        var markdownSectionLength = in.readInt();
+        var markdownSectionCrc = in.readInt();
+        var associationCount = Math.toIntExact(in.readLong());
+        var catalog = version == 1 ? NO_CATALOG : in.readLong();
+
+        var markdownSection = new byte[markdownSectionLength];
+        in.readFully(markdownSection);
+        var crc = new CRC32C();
+        crc.update(markdownSection);
+        if((int) crc.getValue() != markdownSectionCrc){
+            throw new IOException("Corrupted markdown section in " + source);
+        }
+        var markdowns = readMarkdowns(markdownSection);
+
+        var msb = new long[associationCount];
+        var lsb = new long[associationCount];
+        var slots = new int[associationCount];
+        var chunk = ByteBuffer.allocate(ASSOCIATION_SIZE * CHUNK_ENTRIES);
+        crc.reset();
+        for (int i = 0; i < associationCount; i += CHUNK_ENTRIES) {
+            var entries = Math.min(CHUNK_ENTRIES, associationCount - i);
+            chunk.clear();
+            in.readFully(chunk.array(), 0, entries * ASSOCIATION_SIZE);
+            crc.update(chunk.array(), 0, entries * ASSOCIATION_SIZE);
+            for (int j = i; j < i + entries; j++) {
+                msb[j] = chunk.getLong();
+                lsb[j] = chunk.getLong();
+                slots[j] = chunk.getInt();
+            }
+        }
+        if((int) crc.getValue() != in.readInt()){
+            throw new IOException("Corrupted association section in " + source);
+        }
+        return new MarkdownSnapshot(sequence, markdowns, msb, lsb, slots, catalog);
+    }
+
+    static List<Entry> readMarkdowns(byte[] markdownSection) throws IOException {
+        var markdowns = new ArrayList<Entry>();
+        var in = new DataInputStream(new ByteArrayInputStream(markdownSection));
+        while (in.available() > 0) {
+            var slot = in.readInt();
+            var id = new MarkdownID(MarkdownCodec.readUUID(in));
+            markdowns.add(new Entry(slot, id, MarkdownCodec.readSpecification(in)));
+        }
+        return markdowns;
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files
+                    .filter(x -> x.getFileName().toString().startsWith(PREFIX))
+                    .filter(x -> x.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        var name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    static int compare(long msb, long lsb, long otherMsb, long otherLsb) {
+        var result = Long.compare(msb, otherMsb);
+        return result != 0 ? result : Long.compare(lsb, otherLsb);
+    }
+
+    private static void sort(long[] msb, long[] lsb, int[] slots, int from, int to) {
+        while (to - from > 16) {
+            var mid = (from + to) >>> 1;
+            var pivotMsb = msb[mid];
+            var pivotLsb = lsb[mid];
+            var i = from;
+            var j = to - 1;
+            while (i <= j) {
+                while (compare(msb[i], lsb[i], pivotMsb, pivotLsb) < 0) {
+                    i++;
+                }
+                while (compare(msb[j], lsb[j], pivotMsb, pivotLsb) > 0) {
+                    j--;
+                }
+                if(i <= j){
+                    swap(msb, lsb, slots, i++, j--);
+                }
+            }
+            if(j - from < to - i){
+                sort(msb, lsb, slots, from, j + 1);
+                from = i;
+            } else {
+                sort(msb, lsb, slots, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(msb[j - 1], lsb[j - 1], msb[j], lsb[j]) > 0; j--) {
+                swap(msb, lsb, slots, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] msb, long[] lsb, int[] slots, int i, int j) {
+        var m = msb[i];
+        msb[i] = msb[j];
+        msb[j] = m;
+        var l = lsb[i];
+        lsb[i] = lsb[j];
+        lsb[j] = l;
+        var s = slots[i];
+        slots[i] = slots[j];
+        slots[j] = s;
+    }
+}
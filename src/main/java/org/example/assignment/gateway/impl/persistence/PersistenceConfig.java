@@ -0,0 +1,46 @@
+package org.example.assignment.gateway.impl.persistence;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+@ConfigMapping(prefix = "pricing.gateway.persistence")
+public interface PersistenceConfig {
+
+    /**
+     * When disabled the gateway is in memory only.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Directory holding the write-ahead log segments and the snapshots.
+     */
+    @WithDefault("data")
+    String directory();
+
+    /**
+     * Longest time a mutation waits for other ones to share the same fsync.
+     */
+    @WithDefault("5ms")
+    Duration fsyncInterval();
+
+    /**
+     * Number of pending mutations that triggers an fsync before the interval expires.
+     */
+    @WithDefault("512")
+    int fsyncBatchSize();
+
+    /**
+     * When false a mutation is acknowledged once written to the OS, without waiting for the fsync.
+     */
+    @WithDefault("true")
+    boolean waitForFsync();
+
+    /**
+     * Size of the log written since the last snapshot after which a new compacted snapshot is taken.
+     */
+    @WithDefault("67108864")
+    long snapshotAfterBytes();
+}
@@ -0,0 +1,34 @@
+package org.example.assignment.gateway.impl.redis;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+
+@ConfigMapping(prefix = "pricing.gateway.redis")
+public interface RedisGatewayConfig {
+
+    @WithDefault("localhost")
+    String host();
+
+    @WithDefault("6379")
+    int port();
+
+    /**
+     * Prepended to every key, so several environments can share a server.
+     */
+    @WithDefault("pricing:")
+    String keyPrefix();
+
+    /**
+     * Connections kept open to the server, requests beyond it wait for a free one.
+     */
+    @WithDefault("8")
+    int poolSize();
+
+    /**
+     * Bounds connecting, each reply and the wait for a pooled connection.
+     */
+    @WithDefault("2s")
+    Duration timeout();
+}
@@ -0,0 +1,753 @@
+package org.example.assignment.gateway.impl.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.arc.properties.IfBuildProperty;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.gateway.codec.MarkdownCodec;
+import org.example.assignment.gateway.impl.persistence.MarkdownSnapshot;
+import org.example.assignment.model.Markdown;
+import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.MarkdownMutation;
+import org.example.assignment.model.MarkdownPage;
+import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.ProductID;
+import org.example.assignment.model.Revision;
+import org.example.assignment.policy.PolicyFactory;
+import org.example.assignment.service.MarkdownEvents;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import static org.example.assignment.gateway.impl.redis.RespConnection.bytes;
+
+/**
+ * Gateway keeping markdowns and associations in a Redis compatible server, so that several pricing nodes
+ * share them. Selected at build time with {@code pricing.gateway.backend=redis}.
+ * <p>
+ * Keys, all under the configured prefix, with ids as their 16 raw bytes:
+ * <pre>
+ * markdowns        hash of markdown id to creation sequence (8 bytes) and encoded specification
+ * p:{product}      id of the markdown of the product
+ * m:{markdown}     set of the products of the markdown
+ * sequence         counter giving markdowns their creation order, which is the order of pages
+ * associations     number of associated products
+ * version          bumped by every write
+ * modified         time in milliseconds of the latest write
+ * revisions        hash of markdown id to the version (8 bytes) and time (8 bytes) of its latest write
+ * </pre>
+ * Writes are optimistic transactions: the state is read under WATCH of the version key and the changes are
+ * queued in MULTI along with a version bump, so EXEC is refused and the write starts over when another one
+ * committed in between. The version read under WATCH also tells the one the write commits, which is the revision
+ * given to the markdowns it creates or updates. Writes of one node are also serialized by a lock, as in the in memory gateway,
+ * so that they only conflict with writes of other nodes, and published to the markdown events of the node once committed,
+ * still under the lock, so that the events come in the order the writes were committed. Readers resolving many products check the version around their lookups, like the
+ * seqlock of the in memory gateway, and read again when it moved.
+ * <p>
+ * Lookups for many products are pipelined, two round trips whatever their number.
+ * Decoded policies are kept by markdown id along with their encoding, so a policy is only rebuilt when
+ * the specification stored for it changed.
+ */
+@ApplicationScoped
+@Named("MarkdownGateway")
+@IfBuildProperty(name = "pricing.gateway.backend", stringValue = "redis")
+public class RedisMarkdownGateway implements MarkdownGateway {
+
+    private static final int CONSISTENT_READ_ATTEMPTS = 8;
+    private static final int WRITE_ATTEMPTS = 16;
+    private static final long WRITE_BACKOFF_NANOS = 100_000;
+    private static final int KEYS_PER_COMMAND = 1_000;
+    private static final int MAX_DECODED_MARKDOWNS = 10_000;
+
+    private static final byte[] GET = bytes("GET");
+    private static final byte[] SET = bytes("SET");
+    private static final byte[] MGET = bytes("MGET");
+    private static final byte[] MSET = bytes("MSET");
+    private static final byte[] DEL = bytes("DEL");
+    private static final byte[] INCR = bytes("INCR");
+    private static final byte[] INCRBY = bytes("INCRBY");
+    private static final byte[] HGET = bytes("HGET");
+    private static final byte[] HMGET = bytes("HMGET");
+    private static final byte[] HSET = bytes("HSET");
+    private static final byte[] HDEL = bytes("HDEL");
+    private static final byte[] HEXISTS = bytes("HEXISTS");
+    private static final byte[] HLEN = bytes("HLEN");
+    private static final byte[] HGETALL = bytes("HGETALL");
+    private static final byte[] SADD = bytes("SADD");
+    private static final byte[] SREM = bytes("SREM");
+    private static final byte[] SMEMBERS = bytes("SMEMBERS");
+    private static final byte[] SCARD = bytes("SCARD");
+    private static final byte[] WATCH = bytes("WATCH");
+    private static final byte[] UNWATCH = bytes("UNWATCH");
+    private static final byte[] MULTI = bytes("MULTI");
+    private static final byte[] EXEC = bytes("EXEC");
+
+    private final String host;
+    private final int port;
+    private final Duration timeout;
+    private final Semaphore connections;
+    private final ArrayBlockingQueue<RespConnection> idle;
+    private final byte[] markdownsKey;
+    private final byte[] sequenceKey;
+    private final byte[] associationsKey;
+    private final byte[] versionKey;
+    private final byte[] modifiedKey;
+    private final byte[] revisionsKey;
+    private final byte[] productPrefix;
+    private final byte[] productsPrefix;
+    private final Cache<UUID, DecodedMarkdown> decoded;
+    private final ReentrantLock writeLock;
+    private final MarkdownEvents markdownEvents;
+
+    @Inject
+    public RedisMarkdownGateway(RedisGatewayConfig config, @Named("MarkdownEvents") MarkdownEvents markdownEvents) {
+        this(config.host(), config.port(), config.keyPrefix(), config.poolSize(), config.timeout(), markdownEvents);
+    }
+
+    public RedisMarkdownGateway(String host, int port, String keyPrefix, int poolSize, Duration timeout) {
+        this(host, port, keyPrefix, poolSize, timeout, MarkdownEvents.disabled());
+    }
+
+    public RedisMarkdownGateway(String host, int port, String keyPrefix, int poolSize, Duration timeout,
+                                MarkdownEvents markdownEvents) {
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.connections = new Semaphore(poolSize);
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        this.markdownsKey = bytes(keyPrefix + "markdowns");
+        this.sequenceKey = bytes(keyPrefix + "sequence");
+        this.associationsKey = bytes(keyPrefix + "associations");
+        this.versionKey = bytes(keyPrefix + "version");
+        this.modifiedKey = bytes(keyPrefix + "modified");
+        this.revisionsKey = bytes(keyPrefix + "revisions");
+        this.productPrefix = bytes(keyPrefix + "p:");
+        this.productsPrefix = bytes(keyPrefix + "m:");
+        this.decoded = Caffeine.newBuilder().maximumSize(MAX_DECODED_MARKDOWNS).build();
+        this.writeLock = new ReentrantLock();
+        this.markdownEvents = markdownEvents;
+    }
+
+    @Override
+    public Optional<Markdown> getPolicyByProductId(ProductID id) {
+        return withConnection(connection -> {
+            var markdownId = (byte[]) connection.call(GET, key(productPrefix, id.id()));
+            if(markdownId == null){
+                return Optional.empty();
+            }
+            var value = (byte[]) connection.call(HGET, markdownsKey, markdownId);
+            return value != null ? Optional.of(decode(uuid(markdownId), value)) : Optional.empty();
+        });
+    }
+
+    /**
+     * The markdown ids of the products come from pipelined MGETs, then their distinct markdowns from HMGETs.
+     * The server does the work, so {@code parallel} is ignored.
+     */
+    @Override
+    public List<Optional<Markdown>> getPoliciesByProductIds(List<ProductID> ids, boolean parallel) {
+        var keys = new byte[ids.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(productPrefix, ids.get(i).id());
+        }
+        return withConnection(connection -> {
+            for (int attempt = 0; attempt < CONSISTENT_READ_ATTEMPTS; attempt++) {
+                connection.send(GET, versionKey);
+                sendAll(connection, chunks(MGET, null, Arrays.asList(keys)));
+                connection.flush();
+                var before = (byte[]) connection.read();
+                var markdownIds = readChunks(connection, keys.length);
+
+                var distinct = new LinkedHashMap<UUID, byte[]>();
+                for (var markdownId : markdownIds) {
+                    if(markdownId != null){
+                        distinct.putIfAbsent(uuid(markdownId), markdownId);
+                    }
+                }
+                sendAll(connection, chunks(HMGET, markdownsKey, new ArrayList<>(distinct.values())));
+                connection.send(GET, versionKey);
+                connection.flush();
+                var values = readChunks(connection, distinct.size());
+                var after = (byte[]) connection.read();
+                if(!Arrays.equals(before, after)){
+                    continue;
+                }
+
+                var markdowns = new HashMap<UUID, Optional<Markdown>>(distinct.size() * 2);
+                var index = 0;
+                for (var markdownId : distinct.keySet()) {
+                    var value = values[index++];
+                    markdowns.put(markdownId, value != null ? Optional.of(decode(markdownId, value)) : Optional.empty());
+                }
+                var result = new ArrayList<Optional<Markdown>>(markdownIds.length);
+                for (var markdownId : markdownIds) {
+                    result.add(markdownId != null ? markdowns.get(uuid(markdownId)) : Optional.empty());
+                }
+                return result;
+            }
+            throw new IllegalStateException("Markdowns kept changing while resolving " + ids.size() + " products");
+        });
+    }
+
+    @Override
+    public Optional<MarkdownID> createNew(MarkdownPolicySpecification specification) {
+        var id = UUID.randomUUID();
+        return write(new MarkdownMutation.Created(new MarkdownID(id), specification), connection -> {
+            var sequence = (Long) connection.call(INCR, sequenceKey);
+            return new Transaction<>(List.<byte[][]>of(new byte[][]{HSET, markdownsKey, idBytes(id), encode(sequence, specification)}),
+                    Optional.of(new MarkdownID(id)), List.of(id));
+        });
+    }
+
+    @Override
+    public Optional<Markdown> get(MarkdownID markdownId) {
+        return withConnection(connection -> {
+            var value = (byte[]) connection.call(HGET, markdownsKey, idBytes(markdownId.id()));
+            return value != null ? Optional.of(decode(markdownId.id(), value)) : Optional.empty();
+        });
+    }
+
+    @Override
+    public Optional<Boolean> update(MarkdownID markdownId, MarkdownPolicySpecification specification) {
+        var id = idBytes(markdownId.id());
+        return write(new MarkdownMutation.Updated(markdownId, specification), connection -> {
+            var value = (byte[]) connection.call(HGET, markdownsKey, id);
+            if(value == null){
+                return new Transaction<>(List.of(), Optional.empty());
+            }
+            return new Transaction<>(List.<byte[][]>of(new byte[][]{HSET, markdownsKey, id, encode(sequenceOf(value), specification)}),
+                    Optional.of(Boolean.TRUE), List.of(markdownId.id()));
+        });
+    }
+
+    @Override
+    public Optional<Boolean> delete(MarkdownID markdownId) {
+        var id = idBytes(markdownId.id());
+        var productsKey = key(productsPrefix, markdownId.id());
+        Optional<Boolean> deleted = write(new MarkdownMutation.Deleted(markdownId), connection -> {
+            if((Long) connection.call(HEXISTS, markdownsKey, id) == 0){
+                return new Transaction<>(List.of(), Optional.empty());
+            }
+            var products = members(connection, productsKey);
+            var commands = new ArrayList<byte[][]>();
+            commands.add(new byte[][]{HDEL, markdownsKey, id});
+            commands.add(new byte[][]{HDEL, revisionsKey, id});
+            commands.add(new byte[][]{DEL, productsKey});
+            commands.addAll(chunks(DEL, null, products.stream().map(product -> key(productPrefix, product)).toList()));
+            if(!products.isEmpty()){
+                commands.add(new byte[][]{INCRBY, associationsKey, bytes(-products.size())});
+            }
+            return new Transaction<>(commands, Optional.of(Boolean.TRUE));
+        });
+        deleted.ifPresent(x -> decoded.invalidate(markdownId.id()));
+        return deleted;
+    }
+
+    @Override
+    public List<Markdown> getAll() {
+        return withConnection(connection -> {
+            var markdowns = new ArrayList<Markdown>();
+            for (var stored : storedMarkdowns(connection)) {
+                markdowns.add(decode(stored.id(), stored.value()));
+            }
+            return markdowns;
+        });
+    }
+
+    /**
+     * Pages follow the creation sequence, the cursor is the sequence of the next markdown.
+     * Every page reads all markdowns, which are expected to be a few thousands at most.
+     */
+    @Override
+    public MarkdownPage getPage(Optional<String> cursor, int limit) {
+        var from = cursor.map(RedisMarkdownGateway::parseCursor).orElse(0L);
+        return withConnection(connection -> {
+            var markdowns = new ArrayList<Markdown>(Math.min(limit, 1_024));
+            Optional<String> next = Optional.empty();
+            for (var stored : storedMarkdowns(connection)) {
+                if(stored.sequence() < from){
+                    continue;
+                }
+                if(markdowns.size() == limit){
+                    next = Optional.of(Long.toString(stored.sequence()));
+                    break;
+                }
+                markdowns.add(decode(stored.id(), stored.value()));
+            }
+            return new MarkdownPage(markdowns, next);
+        });
+    }
+
+    /**
+     * Products already associated to another markdown are moved, associating to a missing markdown does nothing.
+     */
+    @Override
+    public void associateToProducts(MarkdownID markdownId, List<ProductID> products) {
+        var id = idBytes(markdownId.id());
+        var keys = distinctKeys(products);
+        write(new MarkdownMutation.Associated(markdownId, products), connection -> {
+            if((Long) connection.call(HEXISTS, markdownsKey, id) == 0){
+                return new Transaction<>(List.of(), null);
+            }
+            var current = readKeys(connection, keys);
+            var moved = new ArrayList<byte[]>();
+            var previous = new HashMap<UUID, List<byte[]>>();
+            var added = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if(current[i] == null){
+                    added++;
+                } else if(Arrays.equals(current[i], id)){
+                    continue;
+                } else {
+                    previous.computeIfAbsent(uuid(current[i]), x -> new ArrayList<>()).add(productOf(keys[i]));
+                }
+                moved.add(keys[i]);
+            }
+            var commands = new ArrayList<byte[][]>();
+            var pairs = new ArrayList<byte[]>(moved.size() * 2);
+            for (var key : moved) {
+                pairs.add(key);
+                pairs.add(id);
+            }
+            commands.addAll(chunks(MSET, null, pairs));
+            commands.addAll(chunks(SADD, key(productsPrefix, markdownId.id()), moved.stream().map(this::productOf).toList()));
+            previous.forEach((markdown, removed) -> commands.addAll(chunks(SREM, key(productsPrefix, markdown), removed)));
+            if(added > 0){
+                commands.add(new byte[][]{INCRBY, associationsKey, bytes(added)});
+            }
+            return new Transaction<>(commands, null);
+        });
+    }
+
+    /**
+     * Only products associated to this markdown lose their association.
+     */
+    @Override
+    public void removeAssociationToProducts(MarkdownID markdownID, List<ProductID> products) {
+        var id = idBytes(markdownID.id());
+        var keys = distinctKeys(products);
+        write(new MarkdownMutation.AssociationRemoved(markdownID, products), connection -> {
+            var current = readKeys(connection, keys);
+            var removed = new ArrayList<byte[]>();
+            for (int i = 0; i < keys.length; i++) {
+                if(Arrays.equals(current[i], id)){
+                    removed.add(keys[i]);
+                }
+            }
+            var commands = new ArrayList<byte[][]>();
+            commands.addAll(chunks(DEL, null, removed));
+            commands.addAll(chunks(SREM, key(productsPrefix, markdownID.id()), removed.stream().map(this::productOf).toList()));
+            if(!removed.isEmpty()){
+                commands.add(new byte[][]{INCRBY, associationsKey, bytes(-removed.size())});
+            }
+            return new Transaction<>(commands, null);
+        });
+    }
+
+    /**
+     * The products are read at once, the stream doesn't hold a connection.
+     */
+    @Override
+    public Optional<Stream<ProductID>> getAssociations(MarkdownID markdownId) {
+        return withConnection(connection -> {
+            connection.send(HEXISTS, markdownsKey, idBytes(markdownId.id()));
+            connection.send(SMEMBERS, key(productsPrefix, markdownId.id()));
+            connection.flush();
+            var exists = (Long) connection.read() != 0;
+            var products = (List<?>) connection.read();
+            return exists ? Optional.of(products.stream().map(product -> new ProductID(uuid((byte[]) product)))) : Optional.empty();
+        });
+    }
+
+    @Override
+    public Optional<Long> countAssociations(MarkdownID markdownId) {
+        return withConnection(connection -> {
+            connection.send(HEXISTS, markdownsKey, idBytes(markdownId.id()));
+            connection.send(SCARD, key(productsPrefix, markdownId.id()));
+            connection.flush();
+            var exists = (Long) connection.read() != 0;
+            var count = (Long) connection.read();
+            return exists ? Optional.of(count) : Optional.empty();
+        });
+    }
+
+    @Override
+    public int markdownCount() {
+        return withConnection(connection -> ((Long) connection.call(HLEN, markdownsKey)).intValue());
+    }
+
+    @Override
+    public long associationCount() {
+        return withConnection(connection -> {
+            var count = (byte[]) connection.call(GET, associationsKey);
+            return count != null ? Long.parseLong(new String(count, StandardCharsets.US_ASCII)) : 0L;
+        });
+    }
+
+    @Override
+    public Revision revision() {
+        return withConnection(connection -> revisionOf((List<?>) connection.call(MGET, versionKey, modifiedKey)));
+    }
+
+    /**
+     * Markdowns written before revisions were kept get the revision of the whole state, which is never older.
+     */
+    @Override
+    public Optional<Revision> revisionOf(MarkdownID markdownId) {
+        var id = idBytes(markdownId.id());
+        return withConnection(connection -> {
+            connection.send(HEXISTS, markdownsKey, id);
+            connection.send(HGET, revisionsKey, id);
+            connection.send(MGET, versionKey, modifiedKey);
+            connection.flush();
+            var exists = (Long) connection.read() != 0;
+            var value = (byte[]) connection.read();
+            var revision = revisionOf((List<?>) connection.read());
+            if(!exists){
+                return Optional.empty();
+            }
+            if(value == null){
+                return Optional.of(revision);
+            }
+            var buffer = ByteBuffer.wrap(value);
+            return Optional.of(new Revision(buffer.getLong(), Instant.ofEpochMilli(buffer.getLong())));
+        });
+    }
+
+    /**
+     * Markdown slots of the catalog follow the creation sequence.
+     */
+    @Override
+    public void exportCatalog(OutputStream out) throws IOException {
+        var snapshot = withConnection(connection -> {
+            for (int attempt = 0; attempt < CONSISTENT_READ_ATTEMPTS; attempt++) {
+                var before = connection.call(GET, versionKey);
+                var markdowns = storedMarkdowns(connection);
+                for (var stored : markdowns) {
+                    connection.send(SMEMBERS, key(productsPrefix, stored.id()));
+                }
+                connection.send(GET, versionKey);
+                connection.flush();
+                var products = new ArrayList<List<?>>(markdowns.size());
+                var count = 0;
+                for (int i = 0; i < markdowns.size(); i++) {
+                    products.add((List<?>) connection.read());
+                    count += products.get(i).size();
+                }
+                if(!Arrays.equals((byte[]) before, (byte[]) connection.read())){
+                    continue;
+                }
+                var entries = new ArrayList<MarkdownSnapshot.Entry>(markdowns.size());
+                var msb = new long[count];
+                var lsb = new long[count];
+                var slots = new int[count];
+                var index = 0;
+                for (int slot = 0; slot < markdowns.size(); slot++) {
+                    var stored = markdowns.get(slot);
+                    entries.add(new MarkdownSnapshot.Entry(slot, new MarkdownID(stored.id()), readSpecification(stored.value())));
+                    for (var product : products.get(slot)) {
+                        var buffer = ByteBuffer.wrap((byte[]) product);
+                        msb[index] = buffer.getLong();
+                        lsb[index] = buffer.getLong();
+                        slots[index++] = slot;
+                    }
+                }
+                return new MarkdownSnapshot(0, entries, msb, lsb, slots);
+            }
+            throw new IllegalStateException("Markdowns kept changing while exporting the catalog");
+        });
+        MarkdownSnapshot.writeTo(out, snapshot);
+    }
+
+    @PreDestroy
+    void close() {
+        RespConnection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Reads under WATCH of the version and runs the commands prepared from them in a transaction,
+     * starting over after a random pause when it's refused. The mutation is published once the transaction
+     * committed changes.
+     */
+    private <T> T write(MarkdownMutation mutation, Exchange<Transaction<T>> prepare) {
+        writeLock.lock();
+        try {
+            return withConnection(connection -> {
+                for (int attempt = 0; attempt < WRITE_ATTEMPTS; attempt++) {
+                    connection.call(WATCH, versionKey);
+                    var transaction = prepare.on(connection);
+                    if(transaction.commands().isEmpty()){
+                        connection.call(UNWATCH);
+                        return transaction.result();
+                    }
+                    var next = revisionOf((List<?>) connection.call(MGET, versionKey, modifiedKey)).next(Instant.now());
+                    connection.send(MULTI);
+                    sendAll(connection, transaction.commands());
+                    for (var markdownId : transaction.revised()) {
+                        connection.send(HSET, revisionsKey, idBytes(markdownId), encode(next));
+                    }
+                    connection.send(INCR, versionKey);
+                    connection.send(SET, modifiedKey, bytes(next.modified().toEpochMilli()));
+                    connection.send(EXEC);
+                    connection.flush();
+                    for (int i = 0; i < transaction.commands().size() + transaction.revised().size() + 3; i++) {
+                        connection.read();
+                    }
+                    var replies = (List<?>) connection.read();
+                    if(replies != null){
+                        for (var reply : replies) {
+                            if(reply instanceof RespConnection.RespException e){
+                                throw e;
+                            }
+                        }
+                        markdownEvents.publish(mutation);
+                        return transaction.result();
+                    }
+                    LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(WRITE_BACKOFF_NANOS << Math.min(attempt, 6)));
+                }
+                throw new IllegalStateException("Markdowns kept changing, write given up after " + WRITE_ATTEMPTS + " attempts");
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs an exchange on a pooled connection. A connection that failed in any way may have replies
+     * left to read, so it's closed instead of going back to the pool.
+     */
+    private <T> T withConnection(Exchange<T> exchange) {
+        var connection = borrow();
+        var healthy = false;
+        try {
+            var result = exchange.on(connection);
+            healthy = true;
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if(healthy){
+                idle.offer(connection);
+            } else {
+                closeQuietly(connection);
+            }
+            connections.release();
+        }
+    }
+
+    private RespConnection borrow() {
+        try {
+            if(!connections.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)){
+                throw new IllegalStateException("No connection to " + host + ":" + port + " free within " + timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a connection", e);
+        }
+        var connection = idle.poll();
+        if(connection != null){
+            return connection;
+        }
+        try {
+            return new RespConnection(host, port, timeout);
+        } catch (IOException e) {
+            connections.release();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Values of the keys, with one pipelined MGET per chunk of keys.
+     */
+    private static byte[][] readKeys(RespConnection connection, byte[][] keys) throws IOException {
+        sendAll(connection, chunks(MGET, null, Arrays.asList(keys)));
+        connection.flush();
+        return readChunks(connection, keys.length);
+    }
+
+    private static void sendAll(RespConnection connection, List<byte[][]> commands) throws IOException {
+        for (var command : commands) {
+            connection.send(command);
+        }
+    }
+
+    /**
+     * Reads the array replies of the commands sending {@code count} arguments in chunks, as one array.
+     */
+    private static byte[][] readChunks(RespConnection connection, int count) throws IOException {
+        var values = new byte[count][];
+        var index = 0;
+        while (index < count) {
+            for (var value : (List<?>) connection.read()) {
+                values[index++] = (byte[]) value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Commands with the arguments split in chunks, so that a large batch doesn't make one huge command.
+     */
+    private static List<byte[][]> chunks(byte[] command, byte[] key, List<byte[]> arguments) {
+        var fixed = key != null ? 2 : 1;
+        var chunkSize = command == MSET ? KEYS_PER_COMMAND * 2 : KEYS_PER_COMMAND;
+        var commands = new ArrayList<byte[][]>(arguments.size() / chunkSize + 1);
+        for (int from = 0; from < arguments.size(); from += chunkSize) {
+            var chunk = arguments.subList(from, Math.min(arguments.size(), from + chunkSize));
+            var line = new byte[fixed + chunk.size()][];
+            line[0] = command;
+            if(key != null){
+                line[1] = key;
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                line[fixed + i] = chunk.get(i);
+            }
+            commands.add(line);
+        }
+        return commands;
+    }
+
+    private List<StoredMarkdown> storedMarkdowns(RespConnection connection) throws IOException {
+        var fields = (List<?>) connection.call(HGETALL, markdownsKey);
+        var markdowns = new ArrayList<StoredMarkdown>(fields.size() / 2);
+        for (int i = 0; i < fields.size(); i += 2) {
+            var value = (byte[]) fields.get(i + 1);
+            markdowns.add(new StoredMarkdown(uuid((byte[]) fields.get(i)), sequenceOf(value), value));
+        }
+        markdowns.sort(Comparator.comparingLong(StoredMarkdown::sequence));
+        return markdowns;
+    }
+
+    private static List<UUID> members(RespConnection connection, byte[] key) throws IOException {
+        var members = (List<?>) connection.call(SMEMBERS, key);
+        var ids = new ArrayList<UUID>(members.size());
+        for (var member : members) {
+            ids.add(uuid((byte[]) member));
+        }
+        return ids;
+    }
+
+    private Markdown decode(UUID id, byte[] value) throws IOException {
+        var cached = decoded.getIfPresent(id);
+        if(cached != null && Arrays.equals(cached.value(), value)){
+            return cached.markdown();
+        }
+        var markdown = new Markdown(new MarkdownID(id), PolicyFactory.create(readSpecification(value)));
+        decoded.put(id, new DecodedMarkdown(value, markdown));
+        return markdown;
+    }
+
+    private static MarkdownPolicySpecification readSpecification(byte[] value) throws IOException {
+        return MarkdownCodec.readSpecification(new DataInputStream(new ByteArrayInputStream(value, Long.BYTES, value.length - Long.BYTES)));
+    }
+
+    private static byte[] encode(long sequence, MarkdownPolicySpecification specification) throws IOException {
+        var value = new ByteArrayOutputStream(64);
+        var out = new DataOutputStream(value);
+        out.writeLong(sequence);
+        MarkdownCodec.writeSpecification(out, specification);
+        return value.toByteArray();
+    }
+
+    private static byte[] encode(Revision revision) {
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(revision.version()).putLong(revision.modified().toEpochMilli()).array();
+    }
+
+    /**
+     * The revision of the whole state, from the values of the version and modified keys.
+     */
+    private static Revision revisionOf(List<?> values) {
+        var version = (byte[]) values.get(0);
+        var modified = (byte[]) values.get(1);
+        return new Revision(version != null ? Long.parseLong(new String(version, StandardCharsets.US_ASCII)) : 0L,
+                Instant.ofEpochMilli(modified != null ? Long.parseLong(new String(modified, StandardCharsets.US_ASCII)) : 0L));
+    }
+
+    private static long sequenceOf(byte[] value) {
+        return ByteBuffer.wrap(value).getLong();
+    }
+
+    private byte[][] distinctKeys(List<ProductID> products) {
+        var distinct = new LinkedHashSet<UUID>();
+        products.forEach(product -> distinct.add(product.id()));
+        var keys = new byte[distinct.size()][];
+        var index = 0;
+        for (var product : distinct) {
+            keys[index++] = key(productPrefix, product);
+        }
+        return keys;
+    }
+
+    private byte[] productOf(byte[] productKey) {
+        return Arrays.copyOfRange(productKey, productPrefix.length, productKey.length);
+    }
+
+    private static byte[] key(byte[] prefix, UUID id) {
+        return ByteBuffer.allocate(prefix.length + 16).put(prefix)
+                .putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static byte[] idBytes(UUID id) {
+        return key(new byte[0], id);
+    }
+
+    private static UUID uuid(byte[] id) {
+        var buffer = ByteBuffer.wrap(id);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static long parseCursor(String cursor) {
+        var sequence = Long.parseLong(cursor);
+        if(sequence < 0){
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        return sequence;
+    }
+
+    private static void closeQuietly(RespConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // the connection is dropped either way
+        }
+    }
+
+    @FunctionalInterface
+    private interface Exchange<T> {
+        T on(RespConnection connection) throws IOException;
+    }
+
+    /**
+     * Commands of a write, its result and the markdowns it creates or updates.
+     */
+    private record Transaction<T>(List<byte[][]> commands, T result, List<UUID> revised) {
+
+        Transaction(List<byte[][]> commands, T result) {
+            this(commands, result, List.of());
+        }
+    }
+
+    private record StoredMarkdown(UUID id, long sequence, byte[] value) {
+    }
+
+    private record DecodedMarkdown(byte[] value, Markdown markdown) {
+    }
+}
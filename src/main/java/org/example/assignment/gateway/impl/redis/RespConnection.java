@@ -0,0 +1,141 @@
+package org.example.assignment.gateway.impl.redis;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+
+/**
+ * A connection speaking RESP2, the Redis protocol, with only what the gateway needs.
+ * Commands are buffered by {@link #send(byte[]...)} and go out on {@link #flush()}, so a batch of them
+ * costs one round trip: replies are then read back in the same order with {@link #read()}.
+ * <p>
+ * Replies are decoded to {@link String} for status, {@link Long} for integers, {@code byte[]} for bulk strings
+ * and {@link java.util.List} for arrays, null for nil. Error replies throw a {@link RespException}.
+ * Not thread safe: the gateway hands connections out from a pool.
+ */
+final class RespConnection implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final BufferedInputStream in;
+
+    RespConnection(String host, int port, Duration timeout) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), (int) timeout.toMillis());
+        socket.setSoTimeout((int) timeout.toMillis());
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        this.in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] bytes(long value) {
+        return bytes(Long.toString(value));
+    }
+
+    Object call(byte[]... arguments) throws IOException {
+        send(arguments);
+        flush();
+        return read();
+    }
+
+    void send(byte[]... arguments) throws IOException {
+        out.write('*');
+        writeNumber(arguments.length);
+        for (var argument : arguments) {
+            out.write('$');
+            writeNumber(argument.length);
+            out.write(argument);
+            out.write(CRLF);
+        }
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    Object read() throws IOException {
+        var type = in.read();
+        switch (type) {
+            case '+':
+                return readLine();
+            case '-':
+                throw new RespException(readLine());
+            case ':':
+                return Long.parseLong(readLine());
+            case '$': {
+                var length = Integer.parseInt(readLine());
+                if(length < 0){
+                    return null;
+                }
+                var value = in.readNBytes(length);
+                if(value.length != length || in.read() != '\r' || in.read() != '\n'){
+                    throw new EOFException("Truncated bulk reply");
+                }
+                return value;
+            }
+            case '*': {
+                var length = Integer.parseInt(readLine());
+                if(length < 0){
+                    return null;
+                }
+                var elements = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    try {
+                        elements.add(read());
+                    } catch (RespException e) {
+                        elements.add(e);
+                    }
+                }
+                return elements;
+            }
+            case -1:
+                throw new EOFException("Connection closed by the server");
+            default:
+                throw new IOException("Unexpected reply type " + type);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void writeNumber(int value) throws IOException {
+        out.write(bytes(value));
+        out.write(CRLF);
+    }
+
+    private String readLine() throws IOException {
+        var line = new StringBuilder();
+        int next;
+        while ((next = in.read()) != '\r') {
+            if(next == -1){
+                throw new EOFException("Connection closed by the server");
+            }
+            line.append((char) next);
+        }
+        if(in.read() != '\n'){
+            throw new IOException("Malformed reply line");
+        }
+        return line.toString();
+    }
+
+    /**
+     * An error reply. The connection is still usable. Inside an array reply, such as the one of EXEC,
+     * errors are returned as elements instead of thrown.
+     */
+    static final class RespException extends RuntimeException {
+        RespException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.assignment.gateway.impl.replication;
+
+import org.example.assignment.gateway.impl.persistence.MarkdownSnapshot;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Where a follower gets the state and the changes of its leader from.
+ */
+public interface ChangeFeed {
+
+    /**
+     * The current state of the leader, taken at its last sequence number, with the epoch of its change log.
+     */
+    Snapshot snapshot() throws IOException;
+
+    /**
+     * Changes after {@code sequence}, as {@link ChangeLog#read(long, int, Duration)} returns them on the leader.
+     */
+    Optional<ChangeLog.Batch> changesAfter(long sequence, int limit, Duration wait) throws IOException;
+
+    record Snapshot(long epoch, MarkdownSnapshot snapshot) {
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.assignment.gateway.impl.replication;
+
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.example.assignment.gateway.codec.MarkdownCodec;
+import org.example.assignment.model.MarkdownMutation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The latest writes of the in memory gateway, in the order of their sequence numbers, for followers to fetch.
+ * <p>
+ * Only a bounded window is kept, weighted by products so that a few bulk associations can't hold the heap:
+ * a follower asking for changes that already left it starts over from a snapshot.
+ * Every start of the log gets a random epoch, which followers compare to tell that the sequence numbers
+ * they hold belong to another run of the leader.
+ */
+@ApplicationScoped
+@Named("ChangeLog")
+@UnlessBuildProperty(name = "pricing.gateway.backend", stringValue = "redis", enableIfMissing = true)
+public class ChangeLog {
+
+    private final long capacity;
+    private final ReentrantLock lock;
+    private final Condition appended;
+    private Change[] ring;
+    private int head;
+    private int size;
+    private long weight;
+    private long lastSequence;
+    private long epoch;
+
+    @Inject
+    public ChangeLog(ReplicationConfig config) {
+        this(config.logCapacity());
+    }
+
+    public ChangeLog(long capacity) {
+        if(capacity < 1){
+            throw new IllegalArgumentException("Invalid change log capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.lock = new ReentrantLock();
+        this.appended = lock.newCondition();
+        this.ring = new Change[16];
+        this.epoch = newEpoch();
+    }
+
+    /**
+     * Drops every change and starts a new epoch after {@code sequence}.
+     */
+    public void reset(long sequence) {
+        lock.lock();
+        try {
+            ring = new Change[16];
+            head = 0;
+            size = 0;
+            weight = 0;
+            lastSequence = sequence;
+            epoch = newEpoch();
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by the gateway under its write lock, so changes come in order. A gap in the sequence numbers
+     * starts a new epoch, as followers could not tell what was missed.
+     */
+    public void append(long sequence, MarkdownMutation mutation) {
+        lock.lock();
+        try {
+            if(sequence != lastSequence + 1){
+                reset(sequence - 1);
+            }
+            if(size == ring.length){
+                var grown = new Change[ring.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = at(i);
+                }
+                ring = grown;
+                head = 0;
+            }
+            var change = new Change(sequence, System.currentTimeMillis(), mutation);
+            ring[(head + size) & (ring.length - 1)] = change;
+            size++;
+            weight += change.weight();
+            lastSequence = sequence;
+            while (weight > capacity && size > 1) {
+                weight -= ring[head].weight();
+                ring[head] = null;
+                head = (head + 1) & (ring.length - 1);
+                size--;
+            }
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code sequence}, waiting up to {@code wait} for one when there is none yet.
+     * Empty when the changes right after {@code sequence} are no longer kept, or never were in this epoch.
+     */
+    public Optional<Batch> read(long sequence, int limit, Duration wait) throws InterruptedException {
+        lock.lock();
+        try {
+            var remaining = wait.toNanos();
+            while (lastSequence == sequence && remaining > 0) {
+                remaining = appended.awaitNanos(remaining);
+            }
+            var first = lastSequence - size + 1;
+            if(sequence < first - 1 || sequence > lastSequence){
+                return Optional.empty();
+            }
+            var count = (int) Math.min(limit, lastSequence - sequence);
+            var changes = new ArrayList<Change>(count);
+            for (int i = 0; i < count; i++) {
+                changes.add(at((int) (sequence + 1 - first) + i));
+            }
+            return Optional.of(new Batch(epoch, lastSequence, changes));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long epoch() {
+        lock.lock();
+        try {
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Change at(int index) {
+        return ring[(head + index) & (ring.length - 1)];
+    }
+
+    private static long newEpoch() {
+        return UUID.randomUUID().getMostSignificantBits();
+    }
+
+    /**
+     * A write of the gateway, with the time in milliseconds the leader logged it at.
+     */
+    public record Change(long sequence, long timestamp, MarkdownMutation mutation) {
+
+        long weight() {
+            if(mutation instanceof MarkdownMutation.Associated associated){
+                return 1L + associated.products().size();
+            }
+            if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+                return 1L + removed.products().size();
+            }
+            return 1L;
+        }
+    }
+
+    /**
+     * Changes read from the log in one epoch, and the last sequence number logged when they were read.
+     */
+    public record Batch(long epoch, long lastSequence, List<Change> changes) {
+
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeLong(epoch);
+            out.writeLong(lastSequence);
+            out.writeInt(changes.size());
+            for (var change : changes) {
+                out.writeLong(change.sequence());
+                out.writeLong(change.timestamp());
+                MarkdownCodec.writeMutation(out, change.mutation());
+            }
+        }
+
+        public static Batch readFrom(DataInput in) throws IOException {
+            var epoch = in.readLong();
+            var lastSequence = in.readLong();
+            var count = in.readInt();
+            var changes = new ArrayList<Change>(count);
+            for (int i = 0; i < count; i++) {
+                changes.add(new Change(in.readLong(), in.readLong(), MarkdownCodec.readMutation(in)));
+            }
+            return new Batch(epoch, lastSequence, changes);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.assignment.gateway.impl.replication;
+
+import org.example.assignment.gateway.impl.persistence.MarkdownSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Fetches from the replication endpoints of a leader, {@code /v1/replication/snapshot} and
+ * {@code /v1/replication/changes}, with the JDK HTTP client.
+ */
+public class HttpChangeFeed implements ChangeFeed {
+
+    public static final String EPOCH_HEADER = "Replication-Epoch";
+
+    private final URI leader;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    public HttpChangeFeed(URI leader, Duration timeout) {
+        this.leader = leader;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public Snapshot snapshot() throws IOException {
+        var uri = leader.resolve("/v1/replication/snapshot");
+        var response = send(HttpRequest.newBuilder(uri).timeout(timeout).build());
+        try (var body = response.body()) {
+            if(response.statusCode() != 200){
+                throw new IOException("Unexpected status " + response.statusCode() + " from " + uri);
+            }
+            return new Snapshot(epochOf(response), MarkdownSnapshot.readFrom(body, uri.toString()));
+        }
+    }
+
+    /**
+     * The leader answers 410 Gone when the changes are no longer in its log.
+     */
+    @Override
+    public Optional<ChangeLog.Batch> changesAfter(long sequence, int limit, Duration wait) throws IOException {
+        var uri = leader.resolve("/v1/replication/changes?after=" + sequence + "&limit=" + limit + "&wait=" + wait.toMillis());
+        var response = send(HttpRequest.newBuilder(uri).timeout(timeout.plus(wait)).build());
+        try (var body = response.body()) {
+            if(response.statusCode() == 410){
+                return Optional.empty();
+            }
+            if(response.statusCode() != 200){
+                throw new IOException("Unexpected status " + response.statusCode() + " from " + uri);
+            }
+            return Optional.of(ChangeLog.Batch.readFrom(new DataInputStream(new BufferedInputStream(body, 1 << 16))));
+        }
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+        }
+    }
+
+    private static long epochOf(HttpResponse<?> response) throws IOException {
+        var epoch = response.headers().firstValue(EPOCH_HEADER);
+        if(epoch.isEmpty()){
+            throw new IOException("No " + EPOCH_HEADER + " header from " + response.uri());
+        }
+        try {
+            return Long.parseLong(epoch.get());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid " + EPOCH_HEADER + " header from " + response.uri(), e);
+        }
+    }
+}
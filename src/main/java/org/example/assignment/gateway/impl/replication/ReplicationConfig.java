@@ -0,0 +1,53 @@
+package org.example.assignment.gateway.impl.replication;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@ConfigMapping(prefix = "pricing.replication")
+public interface ReplicationConfig {
+
+    /**
+     * Base URL of the node to follow. Without it the node is a leader, serving its change log to followers.
+     */
+    Optional<String> leader();
+
+    /**
+     * Changes kept for followers, each weighing one plus the number of its products.
+     * A follower that falls further behind starts over from a snapshot.
+     */
+    @WithDefault("1000000")
+    long logCapacity();
+
+    /**
+     * Most changes a follower fetches per request.
+     */
+    @WithDefault("1000")
+    int batchSize();
+
+    /**
+     * How long a request for changes waits on the leader when there is none yet.
+     */
+    @WithDefault("10s")
+    Duration pollWait();
+
+    /**
+     * Bounds connecting to the leader and each request, on top of the poll wait.
+     */
+    @WithDefault("5s")
+    Duration timeout();
+
+    /**
+     * Pause before retrying after a failed request.
+     */
+    @WithDefault("1s")
+    Duration retryDelay();
+
+    /**
+     * How long startup waits for the first snapshot of the leader before failing.
+     */
+    @WithDefault("60s")
+    Duration startupTimeout();
+}
@@ -0,0 +1,201 @@
+package org.example.assignment.gateway.impl.replication;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.model.MarkdownMutation;
+import org.example.assignment.service.FinalPriceCache;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the in memory gateway of a follower in line with its leader, when {@code pricing.replication.leader} is set.
+ * <p>
+ * Startup installs a snapshot of the leader, taken at some sequence number, and waits for it. A background thread
+ * then long polls the changes after the last one applied and replicates them in order. When the leader no longer has
+ * them, or restarted with a new epoch, the follower installs a new snapshot, again with ordinary writes.
+ * Pricing reads go to the gateway as usual and never wait for the leader, they only see its changes later.
+ * <p>
+ * The lag is the number of changes the leader had logged and the follower had not applied at the last poll.
+ * The delay of a change, from the leader logging it to the follower applying it, uses the clocks of both nodes.
+ */
+@Startup
+@ApplicationScoped
+@Named("ReplicationFollower")
+@UnlessBuildProperty(name = "pricing.gateway.backend", stringValue = "redis", enableIfMissing = true)
+public class ReplicationFollower {
+
+    private static final Logger LOG = Logger.getLogger(ReplicationFollower.class);
+
+    private final ChangeFeed feed;
+    private final MarkdownGatewayImpl gateway;
+    private final FinalPriceCache finalPriceCache;
+    private final int batchSize;
+    private final Duration pollWait;
+    private final Duration retryDelay;
+    private final Timer delay;
+    private final Counter applied;
+    private final Counter resyncs;
+    private volatile long epoch;
+    private volatile long sequence;
+    private volatile long leaderSequence;
+    private volatile boolean running;
+    private Thread poller;
+
+    @Inject
+    public ReplicationFollower(ReplicationConfig config,
+                               @Named("MarkdownGateway") MarkdownGatewayImpl gateway,
+                               @Named("FinalPriceCache") FinalPriceCache finalPriceCache,
+                               MeterRegistry registry) {
+        this(config.leader().map(leader -> new HttpChangeFeed(URI.create(leader), config.timeout())).orElse(null),
+                gateway, finalPriceCache, registry, config.batchSize(), config.pollWait(), config.retryDelay());
+        if(feed != null){
+            LOG.infof("Following %s", config.leader().get());
+            start(config.startupTimeout());
+        }
+    }
+
+    public ReplicationFollower(ChangeFeed feed, MarkdownGatewayImpl gateway, FinalPriceCache finalPriceCache,
+                               MeterRegistry registry, int batchSize, Duration pollWait, Duration retryDelay) {
+        this.feed = feed;
+        this.gateway = gateway;
+        this.finalPriceCache = finalPriceCache;
+        this.batchSize = batchSize;
+        this.pollWait = pollWait;
+        this.retryDelay = retryDelay;
+        Gauge.builder("pricing.replication.lag", this, x -> x.lag())
+                .description("Changes logged by the leader and not yet applied, as of the last poll")
+                .register(registry);
+        this.delay = Timer.builder("pricing.replication.delay")
+                .description("Time from the leader logging a change to this node applying it")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.applied = Counter.builder("pricing.replication.applied")
+                .description("Changes of the leader applied")
+                .register(registry);
+        this.resyncs = Counter.builder("pricing.replication.resyncs")
+                .description("Snapshots of the leader installed after falling out of its change log")
+                .register(registry);
+    }
+
+    /**
+     * Installs a snapshot of the leader, retrying until {@code timeout}, then follows its changes in background.
+     */
+    public void start(Duration timeout) {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            try {
+                sync();
+                break;
+            } catch (IOException e) {
+                if(System.nanoTime() - deadline > 0){
+                    throw new IllegalStateException("Unable to get the markdowns of the leader", e);
+                }
+                LOG.warnf("Unable to get the markdowns of the leader, retrying in %s: %s", retryDelay, e.getMessage());
+                LockSupport.parkNanos(retryDelay.toNanos());
+            }
+        }
+        running = true;
+        poller = new Thread(this::follow, "markdown-replication");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if(poller != null){
+            poller.interrupt();
+            poller.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Installs the current state of the leader and continues from its sequence number.
+     */
+    public void sync() throws IOException {
+        var snapshot = feed.snapshot();
+        var start = System.nanoTime();
+        gateway.install(snapshot.snapshot(), this::propagate);
+        epoch = snapshot.epoch();
+        sequence = snapshot.snapshot().sequence();
+        leaderSequence = Math.max(leaderSequence, sequence);
+        LOG.infof("Installed the markdowns of the leader at sequence %d, %d associations in %d ms", sequence,
+                snapshot.snapshot().associationCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Applies the next changes of the leader, waiting up to the poll wait for some, and returns how many.
+     * Installs a new snapshot instead when the changes are gone or the leader started a new epoch.
+     */
+    public int poll() throws IOException {
+        var batch = feed.changesAfter(sequence, batchSize, pollWait);
+        if(batch.isEmpty() || batch.get().epoch() != epoch){
+            LOG.infof("Changes after sequence %d are no longer available from the leader, installing its snapshot", sequence);
+            resyncs.increment();
+            sync();
+            return 0;
+        }
+        for (var change : batch.get().changes()) {
+            gateway.replicate(change.sequence(), change.mutation());
+            propagate(change.mutation());
+            sequence = change.sequence();
+            delay.record(Math.max(0, System.currentTimeMillis() - change.timestamp()), TimeUnit.MILLISECONDS);
+        }
+        leaderSequence = batch.get().lastSequence();
+        applied.increment(batch.get().changes().size());
+        return batch.get().changes().size();
+    }
+
+    /**
+     * Sequence number of the last change of the leader applied.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public long lag() {
+        return Math.max(0, leaderSequence - sequence);
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                if(!running){
+                    return;
+                }
+                LOG.warnf("Unable to replicate from the leader, retrying in %s: %s", retryDelay, e.getMessage());
+                LockSupport.parkNanos(retryDelay.toNanos());
+            }
+        }
+    }
+
+    /**
+     * Invalidates the final prices of the change, as the markdown service does for local writes.
+     * The gateway publishes it to the markdown events once applied.
+     */
+    private void propagate(MarkdownMutation mutation) {
+        if(mutation instanceof MarkdownMutation.Associated associated){
+            finalPriceCache.invalidateProducts(associated.products());
+        } else if(mutation instanceof MarkdownMutation.AssociationRemoved removed){
+            finalPriceCache.invalidateProducts(removed.products());
+        } else if(mutation instanceof MarkdownMutation.Updated || mutation instanceof MarkdownMutation.Deleted){
+            finalPriceCache.invalidateMarkdown(mutation.markdownId());
+        }
+    }
+}
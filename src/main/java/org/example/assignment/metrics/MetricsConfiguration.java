@@ -0,0 +1,33 @@
+package org.example.assignment.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+@Singleton
+public class MetricsConfiguration {
+
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+
+    /**
+     * Publishes the latency of every endpoint as a histogram, so percentiles can be aggregated across nodes.
+     */
+    @Produces
+    @Singleton
+    public MeterFilter httpServerHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if(id.getName().equals(HTTP_SERVER_REQUESTS)){
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.assignment.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.model.MarkdownType;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pricing counters, gateway gauges and bulk association timers published through Micrometer.
+ * <p>
+ * The pricing hot path only increments a {@link LongAdder}, which spreads concurrent increments over
+ * separate cells; the registry sums the adders when it is scraped.
+ */
+@ApplicationScoped
+@Named("PricingMetrics")
+public class PricingMetrics {
+
+    private static final String EVALUATIONS = "pricing.policy.evaluations";
+    private static final String BULK_ASSOCIATIONS = "pricing.associations.bulk";
+
+    private final boolean enabled;
+    private final LongAdder[] markdownEvaluations;
+    private final LongAdder defaultEvaluations;
+    private final Timer associations;
+    private final Timer associationRemovals;
+    private final Counter importedAssociations;
+
+    @Inject
+    public PricingMetrics(MeterRegistry registry,
+                          @Named("MarkdownGateway") MarkdownGateway markdownGateway,
+                          @ConfigProperty(name = "pricing.metrics.enabled", defaultValue = "true") boolean enabled) {
+        this.enabled = enabled;
+        this.markdownEvaluations = new LongAdder[MarkdownType.values().length];
+        for (var type : MarkdownType.values()) {
+            markdownEvaluations[type.ordinal()] = evaluationCounter(registry, type, "markdown");
+        }
+        this.defaultEvaluations = evaluationCounter(registry, MarkdownType.DEFAULT, "default");
+        Gauge.builder("pricing.gateway.markdowns", markdownGateway, x -> x.markdownCount())
+                .description("Markdowns stored in the gateway")
+                .register(registry);
+        Gauge.builder("pricing.gateway.associations", markdownGateway, x -> x.associationCount())
+                .description("Product associations stored in the gateway")
+                .register(registry);
+        this.associations = bulkTimer(registry, "associate");
+        this.associationRemovals = bulkTimer(registry, "remove");
+        this.importedAssociations = Counter.builder("pricing.associations.imported")
+                .description("Product associations applied by streaming imports, updated as every chunk is applied")
+                .register(registry);
+    }
+
+    /**
+     * A price was calculated with the markdown associated to the product. Prices served by the final price cache
+     * are not calculated, so they are not counted here nor in {@link #defaultEvaluated()}.
+     */
+    public void markdownEvaluated(MarkdownType type) {
+        if(enabled){
+            markdownEvaluations[type.ordinal()].increment();
+        }
+    }
+
+    /**
+     * A price was calculated with the default policy, as the product has no markdown.
+     */
+    public void defaultEvaluated() {
+        if(enabled){
+            defaultEvaluations.increment();
+        }
+    }
+
+    public Timer associations() {
+        return associations;
+    }
+
+    public Timer associationRemovals() {
+        return associationRemovals;
+    }
+
+    public void associationsImported(int count) {
+        importedAssociations.increment(count);
+    }
+
+    private static LongAdder evaluationCounter(MeterRegistry registry, MarkdownType type, String source) {
+        var evaluations = new LongAdder();
+        FunctionCounter.builder(EVALUATIONS, evaluations, LongAdder::sum)
+                .description("Prices calculated, by policy type and by where the policy came from")
+                .tags("type", type.name(), "source", source)
+                .register(registry);
+        return evaluations;
+    }
+
+    private static Timer bulkTimer(MeterRegistry registry, String operation) {
+        return Timer.builder(BULK_ASSOCIATIONS)
+                .description("Duration of bulk product association calls")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
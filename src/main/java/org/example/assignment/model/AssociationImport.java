@@ -0,0 +1,9 @@
+package org.example.assignment.model;
+
+import java.util.Optional;
+
+/**
+ * Outcome of a streaming association import: the products associated, and why the import stopped early if it did.
+ */
+public record AssociationImport(long imported, Optional<String> failure) {
+}
@@ -0,0 +1,7 @@
+package org.example.assignment.model;
+
+/**
+ * Final price of every line of a cart, in the order of the lines, and their total, in minor units.
+ */
+public record CartPrice(long[] linePrices, long total) {
+}
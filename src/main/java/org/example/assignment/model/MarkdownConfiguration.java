@@ -1,7 +1,18 @@
 package org.example.assignment.model;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-public record MarkdownConfiguration(Optional<Float> percentage, Optional<Map<Integer, Float>> thresholds) {
+/**
+ * Settings of a policy: the percentage of a {@link MarkdownType#PERCENTAGE}, the thresholds of a
+ * {@link MarkdownType#COUNT} or the layers of a {@link MarkdownType#STACKED}, in the order they apply.
+ */
+public record MarkdownConfiguration(Optional<Float> percentage,
+                                    Optional<Map<Integer, Float>> thresholds,
+                                    Optional<List<MarkdownPolicySpecification>> layers) {
+
+    public MarkdownConfiguration(Optional<Float> percentage, Optional<Map<Integer, Float>> thresholds) {
+        this(percentage, thresholds, Optional.empty());
+    }
 }
@@ -0,0 +1,26 @@
+package org.example.assignment.model;
+
+import java.util.List;
+
+/**
+ * A change applied to the markdown storage, as recorded by the persistence layer.
+ */
+public sealed interface MarkdownMutation {
+
+    MarkdownID markdownId();
+
+    record Created(MarkdownID markdownId, MarkdownPolicySpecification specification) implements MarkdownMutation {
+    }
+
+    record Updated(MarkdownID markdownId, MarkdownPolicySpecification specification) implements MarkdownMutation {
+    }
+
+    record Deleted(MarkdownID markdownId) implements MarkdownMutation {
+    }
+
+    record Associated(MarkdownID markdownId, List<ProductID> products) implements MarkdownMutation {
+    }
+
+    record AssociationRemoved(MarkdownID markdownId, List<ProductID> products) implements MarkdownMutation {
+    }
+}
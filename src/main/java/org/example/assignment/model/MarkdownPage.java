@@ -0,0 +1,10 @@
+package org.example.assignment.model;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A page of markdowns and the opaque cursor of the next page, absent on the last one.
+ */
+public record MarkdownPage(List<Markdown> markdowns, Optional<String> nextCursor) {
+}
@@ -3,5 +3,6 @@ package org.example.assignment.model;
 public enum MarkdownType {
     DEFAULT,
     PERCENTAGE,
-    COUNT
+    COUNT,
+    STACKED
 }
@@ -0,0 +1,128 @@
+package org.example.assignment.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact money arithmetic on {@code long} minor units, e.g. cents with the default scale of 2.
+ * The scale is read once from the {@code pricing.money.scale} system property, so it is a constant for the JIT.
+ * <p>
+ * Discounts are rates in millionths (a percentage with 4 decimals) and are rounded to the minor unit with
+ * {@link RoundingMode#HALF_EVEN}. The common path is plain {@code long} arithmetic and never allocates:
+ * {@link BigDecimal} is only used for amounts that would overflow and for doubles that are a tie at the scale.
+ * Doubles are only used at the API boundary, through {@link #fromDouble(double)} and {@link #toDouble(long)}.
+ */
+public final class Money {
+
+    public static final int SCALE = scale();
+    public static final long RATE_UNIT = 1_000_000;
+
+    private static final long FACTOR = pow10(SCALE);
+    private static final double MAX_EXACT = 0x1p53;
+    private static final double TIE_TOLERANCE = 1e-6;
+
+    private Money() {
+    }
+
+    /**
+     * Minor units of a decimal amount, rounded half even at the scale.
+     *
+     * @throws ArithmeticException when the amount is not finite or too large to be exact
+     */
+    public static long fromDouble(double value) {
+        if(!representable(value)){
+            throw new ArithmeticException("amount out of range: " + value);
+        }
+        var scaled = value * FACTOR;
+        var rounded = Math.rint(scaled);
+        if(Math.abs(Math.abs(scaled - rounded) - 0.5) < TIE_TOLERANCE){
+            // Close to a tie the binary value can't tell, round the shortest decimal representing it
+            return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+        }
+        return (long) rounded;
+    }
+
+    /**
+     * The double closest to the decimal amount.
+     */
+    public static double toDouble(long minorUnits) {
+        return minorUnits / (double) FACTOR;
+    }
+
+    public static double[] toDoubles(long[] minorUnits) {
+        var values = new double[minorUnits.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = toDouble(minorUnits[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Whether {@link #fromDouble(double)} accepts the amount.
+     */
+    public static boolean representable(double value) {
+        return Math.abs(value * FACTOR) < MAX_EXACT;
+    }
+
+    /**
+     * Whether a unit price converts to minor units and its line total for the quantity fits a {@code long}.
+     */
+    public static boolean fits(double unitPrice, int quantity) {
+        return representable(unitPrice) && fits((long) Math.rint(unitPrice * FACTOR), quantity);
+    }
+
+    /**
+     * Whether the line total of a unit price in minor units for the quantity fits a {@code long}.
+     */
+    public static boolean fits(long unitPrice, int quantity) {
+        return Math.multiplyHigh(unitPrice, quantity) == (unitPrice * quantity) >> 63;
+    }
+
+    /**
+     * @throws ArithmeticException on overflow
+     */
+    public static long times(long unitPrice, int quantity) {
+        return Math.multiplyExact(unitPrice, (long) quantity);
+    }
+
+    /**
+     * Rate of a percentage in millionths of the amount, 12.5% being 125,000.
+     */
+    public static long rate(float percentage) {
+        return Math.round(percentage * (double) (RATE_UNIT / 100));
+    }
+
+    /**
+     * {@code amount * rate / RATE_UNIT}, rounded half even to the minor unit.
+     */
+    public static long proportion(long amount, long rate) {
+        var product = amount * rate;
+        if(Math.multiplyHigh(amount, rate) != product >> 63){
+            return BigDecimal.valueOf(amount)
+                    .multiply(BigDecimal.valueOf(rate))
+                    .divide(BigDecimal.valueOf(RATE_UNIT), 0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+        }
+        var quotient = Math.floorDiv(product, RATE_UNIT);
+        var twiceRemainder = (product - quotient * RATE_UNIT) * 2;
+        // Branch free half even: round up past the half, or on the half when the quotient is odd, the sign bit of
+        // RATE_UNIT - (twiceRemainder + odd) being set exactly when it is above RATE_UNIT
+        return quotient + ((RATE_UNIT - twiceRemainder - (quotient & 1)) >>> 63);
+    }
+
+    private static int scale() {
+        var scale = Integer.getInteger("pricing.money.scale", 2);
+        if(scale < 0 || scale > 9){
+            throw new IllegalStateException("pricing.money.scale must be between 0 and 9: " + scale);
+        }
+        return scale;
+    }
+
+    private static long pow10(int exponent) {
+        var value = 1L;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+}
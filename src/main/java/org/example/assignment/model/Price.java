@@ -1,4 +1,15 @@
 package org.example.assignment.model;
 
-public record Price(Double value) {
+/**
+ * A price in minor units, see {@link Money}.
+ */
+public record Price(long minorUnits) {
+
+    public static Price of(double value) {
+        return new Price(Money.fromDouble(value));
+    }
+
+    public double value() {
+        return Money.toDouble(minorUnits);
+    }
 }
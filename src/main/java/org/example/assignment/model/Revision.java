@@ -0,0 +1,16 @@
+package org.example.assignment.model;
+
+import java.time.Instant;
+
+/**
+ * Version of some state of the markdowns, bumped by every write to it, and the time of the latest of these writes.
+ */
+public record Revision(long version, Instant modified) {
+
+    /**
+     * The revision after one more write at {@code time}, never modified earlier than this one.
+     */
+    public Revision next(Instant time) {
+        return new Revision(version + 1, time.isAfter(modified) ? time : modified);
+    }
+}
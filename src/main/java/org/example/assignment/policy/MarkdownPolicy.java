@@ -1,12 +1,46 @@
 package org.example.assignment.policy;
 
 import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.MarkdownType;
+import org.example.assignment.model.Money;
 import org.example.assignment.model.Price;
 import org.example.assignment.model.ProductBasket;
 
 public interface MarkdownPolicy {
 
-    Price apply(ProductBasket productBasket);
+    /**
+     * Allocation free evaluation used on the pricing hot path, prices in minor units of {@link Money}.
+     */
+    long apply(long unitPrice, int quantity);
+
+    default Price apply(ProductBasket productBasket) {
+        return new Price(apply(productBasket.productPrice().minorUnits(), productBasket.quantity()));
+    }
+
+    /**
+     * Columnar evaluation of many pairs at once, e.g. to reprice a whole catalogue:
+     * {@code prices[i] = apply(unitPrices[i], quantities[i])}. Policies override it with a loop that keeps
+     * their configuration in registers.
+     */
+    default void apply(long[] unitPrices, int[] quantities, long[] prices) {
+        checkBatch(unitPrices, quantities, prices);
+        for (int i = 0; i < unitPrices.length; i++) {
+            prices[i] = apply(unitPrices[i], quantities[i]);
+        }
+    }
 
     MarkdownPolicySpecification describe();
+
+    /**
+     * Type of the policy, without building its whole description.
+     */
+    default MarkdownType type() {
+        return describe().type();
+    }
+
+    static void checkBatch(long[] unitPrices, int[] quantities, long[] prices) {
+        if(quantities.length != unitPrices.length || prices.length != unitPrices.length){
+            throw new IllegalArgumentException("unit prices, quantities and prices must have the same length");
+        }
+    }
 }
@@ -4,15 +4,46 @@ import org.example.assignment.model.MarkdownPolicySpecification;
 import org.example.assignment.policy.impl.CountMarkdownPolicy;
 import org.example.assignment.policy.impl.DefaultMarkdownPolicy;
 import org.example.assignment.policy.impl.PercentageMarkdownPolicy;
+import org.example.assignment.policy.impl.StackedMarkdownPolicy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PolicyFactory {
 
+    static final int STACK_CACHE_SIZE = 4096;
+
+    private static final Map<List<MarkdownPolicySpecification>, StackedMarkdownPolicy> STACKS = new ConcurrentHashMap<>();
+
     public static MarkdownPolicy create(MarkdownPolicySpecification specification) {
         return switch (specification.type()) {
             case DEFAULT -> new DefaultMarkdownPolicy();
             case PERCENTAGE -> new PercentageMarkdownPolicy(specification.configuration().percentage().get());
             case COUNT -> new CountMarkdownPolicy(specification.configuration().thresholds().get());
+            case STACKED -> stack(specification.configuration().layers().get());
         };
     }
 
+    /**
+     * Stacks are compiled once per distinct list of layers and shared by every markdown stacking the same ones,
+     * whatever the number of products associated to them. Past {@value #STACK_CACHE_SIZE} distinct stacks new ones
+     * are compiled for their markdown only.
+     */
+    private static StackedMarkdownPolicy stack(List<MarkdownPolicySpecification> layers) {
+        if(layers.isEmpty()){
+            throw new IllegalArgumentException("A stacked markdown needs at least one layer");
+        }
+        var cached = STACKS.get(layers);
+        if(cached != null){
+            return cached;
+        }
+        var policy = new StackedMarkdownPolicy(layers);
+        if(STACKS.size() >= STACK_CACHE_SIZE){
+            return policy;
+        }
+        var previous = STACKS.putIfAbsent(policy.describe().configuration().layers().get(), policy);
+        return previous != null ? previous : policy;
+    }
+
 }
@@ -3,25 +3,71 @@ package org.example.assignment.policy.impl;
 import org.example.assignment.model.*;
 import org.example.assignment.policy.MarkdownPolicy;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
+/**
+ * Thresholds are compiled at construction into sorted primitive arrays of quantities and discount rates,
+ * so finding the tier for a quantity is a binary search. When every threshold is small enough the tiers are also expanded into a table indexed
+ * by quantity and the lookup becomes a single array access.
+ */
 public class CountMarkdownPolicy implements MarkdownPolicy {
 
-    private static final float NO_DISCOUNT_PERCENTAGE = 0f;
+    private static final long NO_DISCOUNT = 0;
+    private static final int DIRECT_INDEX_LIMIT = 1024;
 
-    private final TreeMap<Integer, Float> thresholds;
+    private final Map<Integer, Float> thresholds;
+    private final int[] quantities;
+    private final long[] rates;
+    private final long[] rateByQuantity;
 
     public CountMarkdownPolicy(Map<Integer, Float> thresholds) {
-        this.thresholds = new TreeMap<>(thresholds);
+        var sortedThresholds = new TreeMap<>(thresholds);
+        this.thresholds = Collections.unmodifiableMap(sortedThresholds);
+        this.quantities = sortedThresholds.keySet().stream().mapToInt(x -> x).toArray();
+        this.rates = new long[quantities.length];
+        var i = 0;
+        for (var percentage : sortedThresholds.values()) {
+            rates[i++] = Money.rate(percentage);
+        }
+        this.rateByQuantity = compileDirectIndex(quantities, rates);
     }
 
     @Override
-    public Price apply(ProductBasket productBasket) {
-        var fullPrice = productBasket.productPrice().value() * productBasket.quantity();
-        var discount = (fullPrice * findDiscountPercentage(productBasket.quantity())) / 100;
-        return new Price(fullPrice - discount);
+    public long apply(long unitPrice, int quantity) {
+        var fullPrice = Money.times(unitPrice, quantity);
+        return fullPrice - Money.proportion(fullPrice, findDiscountRate(quantity));
+    }
+
+    /**
+     * With a direct index the tier lookup is a bounded array access, done inline; otherwise every pair
+     * goes through the binary search.
+     */
+    @Override
+    public void apply(long[] unitPrices, int[] quantities, long[] prices) {
+        MarkdownPolicy.checkBatch(unitPrices, quantities, prices);
+        var table = rateByQuantity;
+        if(table == null){
+            for (int i = 0; i < unitPrices.length; i++) {
+                prices[i] = apply(unitPrices[i], quantities[i]);
+            }
+            return;
+        }
+        var last = table.length - 1;
+        for (int i = 0; i < unitPrices.length; i++) {
+            var quantity = quantities[i];
+            var rate = quantity < 0 ? NO_DISCOUNT : table[Math.min(quantity, last)];
+            var fullPrice = Money.times(unitPrices[i], quantity);
+            prices[i] = fullPrice - Money.proportion(fullPrice, rate);
+        }
+    }
+
+    @Override
+    public MarkdownType type() {
+        return MarkdownType.COUNT;
     }
 
     @Override
@@ -31,13 +77,32 @@ public class CountMarkdownPolicy implements MarkdownPolicy {
                 new MarkdownConfiguration(Optional.empty(), Optional.of(thresholds)));
     }
 
-    private float findDiscountPercentage(int quantity) {
-        return thresholds
-                .entrySet()
-                .stream()
-                .filter(x -> x.getKey() <= quantity)
-                .map(x -> x.getValue())
-                .reduce((__, x) -> x)
-                .orElse(NO_DISCOUNT_PERCENTAGE);
+    private long findDiscountRate(int quantity) {
+        if(rateByQuantity != null){
+            return quantity < 0
+                    ? NO_DISCOUNT
+                    : rateByQuantity[Math.min(quantity, rateByQuantity.length - 1)];
+        }
+        var index = Arrays.binarySearch(quantities, quantity);
+        if(index >= 0){
+            return rates[index];
+        }
+        var insertionPoint = -index - 1;
+        return insertionPoint == 0 ? NO_DISCOUNT : rates[insertionPoint - 1];
+    }
+
+    private static long[] compileDirectIndex(int[] quantities, long[] rates) {
+        if(quantities.length == 0 || quantities[0] < 0 || quantities[quantities.length - 1] > DIRECT_INDEX_LIMIT){
+            return null;
+        }
+        var table = new long[quantities[quantities.length - 1] + 1];
+        var tier = -1;
+        for (int quantity = 0; quantity < table.length; quantity++) {
+            if(tier + 1 < quantities.length && quantities[tier + 1] == quantity){
+                tier++;
+            }
+            table[quantity] = tier < 0 ? NO_DISCOUNT : rates[tier];
+        }
+        return table;
     }
 }
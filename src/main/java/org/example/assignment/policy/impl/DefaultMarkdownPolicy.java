@@ -7,8 +7,13 @@ import java.util.Optional;
 
 public class DefaultMarkdownPolicy implements MarkdownPolicy {
     @Override
-    public Price apply(ProductBasket productBasket) {
-        return new Price(productBasket.productPrice().value() * productBasket.quantity());
+    public long apply(long unitPrice, int quantity) {
+        return Money.times(unitPrice, quantity);
+    }
+
+    @Override
+    public MarkdownType type() {
+        return MarkdownType.DEFAULT;
     }
 
     @Override
@@ -6,17 +6,33 @@ import org.example.assignment.policy.MarkdownPolicy;
 import java.util.Optional;
 
 public class PercentageMarkdownPolicy implements MarkdownPolicy {
-    private final Float discountPercentage;
+    private final float discountPercentage;
+    private final long discountRate;
 
     public PercentageMarkdownPolicy(Float discountPercentage) {
         this.discountPercentage = discountPercentage;
+        this.discountRate = Money.rate(discountPercentage);
     }
 
     @Override
-    public Price apply(ProductBasket productBasket) {
-        var fullPrice = productBasket.productPrice().value() * productBasket.quantity();
-        var discount = (fullPrice * discountPercentage) / 100;
-        return new Price(fullPrice - discount );
+    public long apply(long unitPrice, int quantity) {
+        var fullPrice = Money.times(unitPrice, quantity);
+        return fullPrice - Money.proportion(fullPrice, discountRate);
+    }
+
+    @Override
+    public void apply(long[] unitPrices, int[] quantities, long[] prices) {
+        MarkdownPolicy.checkBatch(unitPrices, quantities, prices);
+        var rate = discountRate;
+        for (int i = 0; i < unitPrices.length; i++) {
+            var fullPrice = Money.times(unitPrices[i], quantities[i]);
+            prices[i] = fullPrice - Money.proportion(fullPrice, rate);
+        }
+    }
+
+    @Override
+    public MarkdownType type() {
+        return MarkdownType.PERCENTAGE;
     }
 
     @Override
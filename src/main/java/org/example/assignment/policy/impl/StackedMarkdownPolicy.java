@@ -0,0 +1,151 @@
+package org.example.assignment.policy.impl;
+
+import org.example.assignment.model.*;
+import org.example.assignment.policy.MarkdownPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Markdowns stacked in order: every layer discounts the price left by the previous one, rounded to the minor
+ * unit at each step, so a 10% layer over a 20% layer takes 28% off.
+ * <p>
+ * The layers are compiled at construction into rows of discount rates, one rate per layer, with a row for every
+ * quantity range where no tier of any layer starts or ends. Pricing picks the row of the quantity and runs
+ * through it in a single loop, without calling the layers nor building intermediate prices. Percentages have the
+ * same rate on every row, layers that never discount are left out and stacked layers are flattened.
+ * As in {@link CountMarkdownPolicy}, when every threshold is small enough the row of a quantity is a single array
+ * access, otherwise a binary search.
+ */
+public class StackedMarkdownPolicy implements MarkdownPolicy {
+
+    private static final long NO_DISCOUNT = 0;
+    private static final int DIRECT_INDEX_LIMIT = 1024;
+
+    private final List<MarkdownPolicySpecification> layers;
+    private final int width;
+    private final int[] breakpoints;
+    private final long[] rates;
+    private final int[] offsetByQuantity;
+
+    public StackedMarkdownPolicy(List<MarkdownPolicySpecification> layers) {
+        this.layers = List.copyOf(layers);
+        var tiers = new ArrayList<NavigableMap<Integer, Long>>();
+        compile(layers, tiers);
+        var quantities = new TreeSet<Integer>();
+        tiers.forEach(x -> quantities.addAll(x.keySet()));
+        quantities.remove(Integer.MIN_VALUE);
+        this.width = tiers.size();
+        this.breakpoints = quantities.stream().mapToInt(x -> x).toArray();
+        this.rates = new long[(breakpoints.length + 1) * width];
+        for (int row = 0; row <= breakpoints.length; row++) {
+            var quantity = row == 0 ? Integer.MIN_VALUE : breakpoints[row - 1];
+            for (int layer = 0; layer < width; layer++) {
+                var tier = tiers.get(layer).floorEntry(quantity);
+                rates[row * width + layer] = tier == null ? NO_DISCOUNT : tier.getValue();
+            }
+        }
+        this.offsetByQuantity = compileDirectIndex(breakpoints, width);
+    }
+
+    @Override
+    public long apply(long unitPrice, int quantity) {
+        return discount(Money.times(unitPrice, quantity), offsetOf(quantity));
+    }
+
+    @Override
+    public void apply(long[] unitPrices, int[] quantities, long[] prices) {
+        MarkdownPolicy.checkBatch(unitPrices, quantities, prices);
+        var table = offsetByQuantity;
+        if(table == null){
+            for (int i = 0; i < unitPrices.length; i++) {
+                prices[i] = apply(unitPrices[i], quantities[i]);
+            }
+            return;
+        }
+        var last = table.length - 1;
+        for (int i = 0; i < unitPrices.length; i++) {
+            var quantity = quantities[i];
+            var offset = quantity < 0 ? 0 : table[Math.min(quantity, last)];
+            prices[i] = discount(Money.times(unitPrices[i], quantity), offset);
+        }
+    }
+
+    /**
+     * Number of layers compiled into the rows, without the ones that never discount.
+     */
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public MarkdownType type() {
+        return MarkdownType.STACKED;
+    }
+
+    @Override
+    public MarkdownPolicySpecification describe() {
+        return new MarkdownPolicySpecification(
+                MarkdownType.STACKED,
+                new MarkdownConfiguration(Optional.empty(), Optional.empty(), Optional.of(layers)));
+    }
+
+    private long discount(long price, int offset) {
+        var rates = this.rates;
+        for (int i = offset, end = offset + width; i < end; i++) {
+            price -= Money.proportion(price, rates[i]);
+        }
+        return price;
+    }
+
+    private int offsetOf(int quantity) {
+        if(offsetByQuantity != null){
+            return quantity < 0 ? 0 : offsetByQuantity[Math.min(quantity, offsetByQuantity.length - 1)];
+        }
+        var index = Arrays.binarySearch(breakpoints, quantity);
+        return (index >= 0 ? index + 1 : -index - 1) * width;
+    }
+
+    /**
+     * Rate of every layer from the quantity of each of its tiers on, percentages starting from the lowest quantity.
+     */
+    private static void compile(List<MarkdownPolicySpecification> layers, List<NavigableMap<Integer, Long>> tiers) {
+        for (var layer : layers) {
+            var configuration = layer.configuration();
+            var tier = new TreeMap<Integer, Long>();
+            switch (layer.type()) {
+                case DEFAULT -> {
+                }
+                case PERCENTAGE -> tier.put(Integer.MIN_VALUE, Money.rate(configuration.percentage().get()));
+                case COUNT -> configuration.thresholds().get().forEach((quantity, percentage) -> tier.put(quantity, Money.rate(percentage)));
+                case STACKED -> compile(configuration.layers().get(), tiers);
+            }
+            if(tier.values().stream().anyMatch(x -> x != NO_DISCOUNT)){
+                tiers.add(tier);
+            }
+        }
+    }
+
+    private static int[] compileDirectIndex(int[] breakpoints, int width) {
+        if(breakpoints.length == 0){
+            return new int[]{0};
+        }
+        if(breakpoints[0] < 0 || breakpoints[breakpoints.length - 1] > DIRECT_INDEX_LIMIT){
+            return null;
+        }
+        var table = new int[breakpoints[breakpoints.length - 1] + 1];
+        var row = 0;
+        for (int quantity = 0; quantity < table.length; quantity++) {
+            if(row < breakpoints.length && breakpoints[row] == quantity){
+                row++;
+            }
+            table[quantity] = row * width;
+        }
+        return table;
+    }
+}
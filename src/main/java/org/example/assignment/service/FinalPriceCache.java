@@ -0,0 +1,196 @@
+package org.example.assignment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.example.assignment.model.Markdown;
+import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.ProductID;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of final prices by product, unit price and quantity, prices in minor units.
+ * <p>
+ * Entries are grouped by product, so a product is invalidated with a single removal, and every product
+ * is indexed under the markdown its prices were calculated with, so updating or deleting a markdown
+ * invalidates only its products. The index is only changed while the cache entry of the product is locked,
+ * which keeps it in line with the cached products.
+ * <p>
+ * A price calculated while an invalidation runs might be stale: every invalidation bumps a generation,
+ * and a price whose calculation started in an older generation is removed right after being cached.
+ */
+@ApplicationScoped
+@Named("FinalPriceCache")
+public class FinalPriceCache {
+
+    static final long MISSING = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final int maximumPerProduct;
+    private final Cache<ProductID, ProductPrices> prices;
+    private final ConcurrentHashMap<MarkdownID, Set<ProductID>> productsByMarkdown;
+    private final AtomicLong generation;
+
+    @Inject
+    public FinalPriceCache(FinalPriceCacheConfig config, MeterRegistry registry) {
+        this(config.enabled(), config.maximumSize(), config.maximumPerProduct());
+        CaffeineCacheMetrics.monitor(registry, prices, "finalprice");
+    }
+
+    FinalPriceCache(boolean enabled, long maximumSize, int maximumPerProduct) {
+        this.enabled = enabled;
+        this.maximumPerProduct = maximumPerProduct;
+        this.productsByMarkdown = new ConcurrentHashMap<>();
+        this.generation = new AtomicLong();
+        this.prices = Caffeine.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((ProductID id, ProductPrices productPrices) -> productPrices.size())
+                .evictionListener((ProductID id, ProductPrices productPrices, RemovalCause cause) -> unindex(id, productPrices))
+                .recordStats()
+                .build();
+    }
+
+    public static FinalPriceCache disabled() {
+        return new FinalPriceCache(false, 0, 0);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * The cached price, or {@link #MISSING}.
+     */
+    public long get(ProductID productID, long unitPrice, int quantity) {
+        var productPrices = prices.getIfPresent(productID);
+        return productPrices != null ? productPrices.get(unitPrice, quantity) : MISSING;
+    }
+
+    /**
+     * To be read before looking up the markdown of a price that will be cached.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(long startGeneration, ProductID productID, Optional<Markdown> markdown, long unitPrice, int quantity, long price) {
+        var markdownId = markdown.isPresent() ? markdown.get().id() : null;
+        prices.asMap().compute(productID, (id, current) -> {
+            if(current != null && Objects.equals(current.markdownId, markdownId)){
+                return current.with(unitPrice, quantity, price, maximumPerProduct);
+            }
+            if(current != null){
+                unindex(id, current);
+            }
+            if(markdownId != null){
+                productsByMarkdown.computeIfAbsent(markdownId, __ -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            return ProductPrices.of(markdownId, unitPrice, quantity, price);
+        });
+        if(generation.get() != startGeneration){
+            invalidate(productID);
+        }
+    }
+
+    public void invalidateProducts(Collection<ProductID> products) {
+        if(!enabled){
+            return;
+        }
+        generation.incrementAndGet();
+        products.forEach(this::invalidate);
+    }
+
+    public void invalidateMarkdown(MarkdownID markdownId) {
+        if(!enabled){
+            return;
+        }
+        generation.incrementAndGet();
+        var products = productsByMarkdown.get(markdownId);
+        if(products != null){
+            products.forEach(this::invalidate);
+        }
+    }
+
+    public CacheStats stats() {
+        return prices.stats();
+    }
+
+    private void invalidate(ProductID productID) {
+        prices.asMap().computeIfPresent(productID, (id, current) -> {
+            unindex(id, current);
+            return null;
+        });
+    }
+
+    private void unindex(ProductID productID, ProductPrices productPrices) {
+        if(productPrices.markdownId != null){
+            productsByMarkdown.computeIfPresent(productPrices.markdownId, (__, products) -> {
+                products.remove(productID);
+                return products.isEmpty() ? null : products;
+            });
+        }
+    }
+
+    /**
+     * Immutable prices of a product, searched linearly as a product is priced with a handful of unit prices
+     * and quantities.
+     */
+    private static final class ProductPrices {
+        final MarkdownID markdownId;
+        final long[] unitPrices;
+        final int[] quantities;
+        final long[] prices;
+
+        private ProductPrices(MarkdownID markdownId, long[] unitPrices, int[] quantities, long[] prices) {
+            this.markdownId = markdownId;
+            this.unitPrices = unitPrices;
+            this.quantities = quantities;
+            this.prices = prices;
+        }
+
+        static ProductPrices of(MarkdownID markdownId, long unitPrice, int quantity, long price) {
+            return new ProductPrices(markdownId, new long[] {unitPrice}, new int[] {quantity}, new long[] {price});
+        }
+
+        int size() {
+            return prices.length;
+        }
+
+        long get(long unitPrice, int quantity) {
+            for (int i = 0; i < prices.length; i++) {
+                if(quantities[i] == quantity && unitPrices[i] == unitPrice){
+                    return prices[i];
+                }
+            }
+            return MISSING;
+        }
+
+        ProductPrices with(long unitPrice, int quantity, long price, int maximumPerProduct) {
+            if(get(unitPrice, quantity) != MISSING){
+                return this;
+            }
+            var from = prices.length < maximumPerProduct ? 0 : 1;
+            var length = prices.length - from + 1;
+            var newUnitPrices = Arrays.copyOfRange(unitPrices, from, from + length);
+            var newQuantities = Arrays.copyOfRange(quantities, from, from + length);
+            var newPrices = Arrays.copyOfRange(prices, from, from + length);
+            newUnitPrices[length - 1] = unitPrice;
+            newQuantities[length - 1] = quantity;
+            newPrices[length - 1] = price;
+            return new ProductPrices(markdownId, newUnitPrices, newQuantities, newPrices);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.assignment.service;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+@ConfigMapping(prefix = "pricing.cache")
+public interface FinalPriceCacheConfig {
+
+    /**
+     * Off unless turned on: whether it pays off depends on how often the same baskets are priced again, which
+     * {@code MarkdownServicePricingBenchmark} measures with and without it. Cached prices are not evaluated again,
+     * so they don't count in the pricing evaluation counters.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * Maximum number of cached final prices, over all products.
+     */
+    @WithDefault("100000")
+    long maximumSize();
+
+    /**
+     * Maximum number of (unit price, quantity) pairs cached for a single product, the oldest is dropped first.
+     */
+    @WithDefault("16")
+    int maximumPerProduct();
+}
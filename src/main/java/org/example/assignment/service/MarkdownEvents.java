@@ -0,0 +1,232 @@
+package org.example.assignment.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import org.example.assignment.model.MarkdownMutation;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Markdown writes applied by this node, numbered in order, for downstream caches to invalidate exactly what changed.
+ * <p>
+ * The gateway publishes every write once applied, before releasing the locks it was applied under, so writes to
+ * the same products are numbered in the order they were applied.
+ * <p>
+ * Publishing never waits for subscribers: every subscriber has a bounded queue, drained by its own sender task.
+ * A subscriber too slow to keep up loses the queued events and gets a reset instead, telling it to drop
+ * everything it derived from markdowns, after which it keeps receiving the new events.
+ * <p>
+ * The latest events are kept, weighted by products, so a subscriber reconnecting after some event resumes
+ * right after it. Sequence numbers start from the startup time in microseconds, so the ones of a previous run
+ * are older than anything kept and resuming from them resets.
+ */
+@ApplicationScoped
+@Named("MarkdownEvents")
+public class MarkdownEvents {
+
+    private static final Logger LOG = Logger.getLogger(MarkdownEvents.class);
+
+    private final boolean enabled;
+    private final long retainedProducts;
+    private final int bufferSize;
+    private final ReentrantLock lock;
+    private final ArrayDeque<Event> retained;
+    private final List<Subscription> subscriptions;
+    private final ExecutorService senders;
+    private long retainedWeight;
+    private long sequence;
+
+    @Inject
+    public MarkdownEvents(MarkdownEventsConfig config) {
+        this(config.enabled(), config.retainedProducts(), config.bufferSize());
+    }
+
+    public MarkdownEvents(boolean enabled, long retainedProducts, int bufferSize) {
+        this.enabled = enabled;
+        this.retainedProducts = retainedProducts;
+        this.bufferSize = bufferSize;
+        this.lock = new ReentrantLock();
+        this.retained = new ArrayDeque<>();
+        this.subscriptions = new ArrayList<>();
+        this.senders = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "markdown-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sequence = System.currentTimeMillis() * 1000;
+    }
+
+    public static MarkdownEvents disabled() {
+        return new MarkdownEvents(false, 1, 1);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Numbers the write, keeps it for resuming subscribers and queues it for the current ones.
+     * Called by the gateway while it holds the locks of the write.
+     */
+    public void publish(MarkdownMutation mutation) {
+        if(!enabled){
+            return;
+        }
+        lock.lock();
+        try {
+            var event = new Event(++sequence, Optional.of(mutation));
+            retained.addLast(event);
+            retainedWeight += event.weight();
+            while (retainedWeight > retainedProducts && retained.size() > 1) {
+                retainedWeight -= retained.removeFirst().weight();
+            }
+            for (var subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the events after {@code after} to the subscriber, or the events from now on when empty.
+     * When the events after it are no longer kept, or don't fit its buffer, it first gets a reset.
+     */
+    public Subscription subscribe(OptionalLong after, Subscriber subscriber) {
+        if(!enabled){
+            throw new IllegalStateException("Markdown events are disabled");
+        }
+        lock.lock();
+        try {
+            var subscription = new Subscription(subscriber);
+            if(after.isPresent()){
+                var from = after.getAsLong();
+                var first = retained.isEmpty() ? sequence + 1 : retained.getFirst().sequence();
+                if(from < first - 1 || from > sequence || sequence - from > bufferSize){
+                    subscription.offer(new Event(sequence, Optional.empty()));
+                } else {
+                    for (var event : retained) {
+                        if(event.sequence() > from){
+                            subscription.offer(event);
+                        }
+                    }
+                }
+            }
+            subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int subscriberCount() {
+        lock.lock();
+        try {
+            return subscriptions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * Receives the events of a subscription, one at a time. Failing to send one ends the subscription.
+     */
+    @FunctionalInterface
+    public interface Subscriber {
+        void send(Event event) throws IOException;
+    }
+
+    /**
+     * A write of the markdowns, or, without one, a reset: events were lost up to this sequence number.
+     */
+    public record Event(long sequence, Optional<MarkdownMutation> mutation) {
+
+        public boolean reset() {
+            return mutation.isEmpty();
+        }
+
+        long weight() {
+            if(mutation.orElse(null) instanceof MarkdownMutation.Associated associated){
+                return 1L + associated.products().size();
+            }
+            if(mutation.orElse(null) instanceof MarkdownMutation.AssociationRemoved removed){
+                return 1L + removed.products().size();
+            }
+            return 1L;
+        }
+    }
+
+    public final class Subscription {
+
+        private final Subscriber subscriber;
+        private final ArrayBlockingQueue<Event> queue;
+        private final AtomicBoolean scheduled;
+        private volatile boolean open;
+
+        private Subscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            this.scheduled = new AtomicBoolean();
+            this.open = true;
+        }
+
+        public void cancel() {
+            open = false;
+            lock.lock();
+            try {
+                subscriptions.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean open() {
+            return open;
+        }
+
+        /**
+         * Called under the lock of the events, so by one publisher at a time.
+         */
+        private void offer(Event event) {
+            if(!queue.offer(event)){
+                queue.clear();
+                queue.offer(new Event(event.sequence(), Optional.empty()));
+            }
+            if(scheduled.compareAndSet(false, true)){
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                for (var event = queue.poll(); event != null && open; event = queue.poll()) {
+                    try {
+                        subscriber.send(event);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.debugf("Markdown events subscriber gone: %s", e.getMessage());
+                        cancel();
+                    }
+                }
+                scheduled.set(false);
+            } while (open && !queue.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+    }
+}
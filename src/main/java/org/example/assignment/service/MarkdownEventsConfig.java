@@ -0,0 +1,23 @@
+package org.example.assignment.service;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+@ConfigMapping(prefix = "pricing.events")
+public interface MarkdownEventsConfig {
+
+    @WithDefault("true")
+    boolean enabled();
+
+    /**
+     * Events kept for subscribers resuming after a disconnection, each weighing one plus the number of its products.
+     */
+    @WithDefault("1000000")
+    long retainedProducts();
+
+    /**
+     * Events queued for a subscriber, beyond which it gets a reset instead of the events it is too slow to take.
+     */
+    @WithDefault("10000")
+    int bufferSize();
+}
@@ -1,32 +1,134 @@
 package org.example.assignment.service;
 
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.metrics.PricingMetrics;
 import org.example.assignment.model.*;
+import org.example.assignment.policy.MarkdownPolicy;
 import org.example.assignment.policy.impl.DefaultMarkdownPolicy;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 @Named("MarkdownService")
 public class MarkdownService {
 
+    private static final Logger LOG = Logger.getLogger(MarkdownService.class);
+    private static final MarkdownPolicy DEFAULT_POLICY = new DefaultMarkdownPolicy();
+    private static final int IMPORT_CHUNK_SIZE = 10_000;
+    private static final long IMPORT_PROGRESS_INTERVAL = 1_000_000;
+    static final int DEFAULT_CART_PARALLEL_THRESHOLD = 4096;
+
     private final MarkdownGateway markdownGateway;
+    private final PricingMetrics pricingMetrics;
+    private final FinalPriceCache finalPriceCache;
+    private final int cartParallelThreshold;
+
+    public MarkdownService(MarkdownGateway markdownGateway) {
+        this(markdownGateway,
+                new PricingMetrics(new CompositeMeterRegistry(), markdownGateway, false),
+                FinalPriceCache.disabled(),
+                DEFAULT_CART_PARALLEL_THRESHOLD);
+    }
 
     @Inject
-    public MarkdownService(@Named("MarkdownGateway")MarkdownGateway markdownGateway) {
+    public MarkdownService(@Named("MarkdownGateway")MarkdownGateway markdownGateway,
+                           @Named("PricingMetrics")PricingMetrics pricingMetrics,
+                           @Named("FinalPriceCache")FinalPriceCache finalPriceCache,
+                           @ConfigProperty(name = "pricing.cart.parallel-threshold", defaultValue = "4096") int cartParallelThreshold) {
         this.markdownGateway = markdownGateway;
+        this.pricingMetrics = pricingMetrics;
+        this.finalPriceCache = finalPriceCache;
+        this.cartParallelThreshold = cartParallelThreshold;
     }
 
     public Price calculatePrice(ProductBasket productBasket) {
-        return markdownGateway
-                .getPolicyByProductId(productBasket.productID())
-                .map(x -> x.policy())
-                .orElse(new DefaultMarkdownPolicy())
-                .apply(productBasket);
+        return new Price(calculatePrice(
+                productBasket.productID(),
+                productBasket.productPrice().minorUnits(),
+                productBasket.quantity()));
+    }
+
+    /**
+     * Final price in minor units of {@link Money}.
+     */
+    public long calculatePrice(ProductID productID, long unitPrice, int quantity) {
+        if(!finalPriceCache.enabled()){
+            return evaluate(findPolicy(productID), unitPrice, quantity);
+        }
+        var cached = finalPriceCache.get(productID, unitPrice, quantity);
+        if(cached != FinalPriceCache.MISSING){
+            return cached;
+        }
+        var generation = finalPriceCache.generation();
+        var markdown = markdownGateway.getPolicyByProductId(productID);
+        var price = evaluate(markdown.isPresent() ? markdown.get().policy() : DEFAULT_POLICY, unitPrice, quantity);
+        finalPriceCache.put(generation, productID, markdown, unitPrice, quantity, price);
+        return price;
+    }
+
+    /**
+     * Prices a batch of baskets, returning the prices in minor units in the same order.
+     * Each distinct product is looked up in the gateway only once.
+     */
+    public long[] calculatePrices(List<ProductBasket> productBaskets) {
+        var policies = new HashMap<ProductID, MarkdownPolicy>();
+        var prices = new long[productBaskets.size()];
+        for (int i = 0; i < prices.length; i++) {
+            var productBasket = productBaskets.get(i);
+            prices[i] = evaluate(
+                    policies.computeIfAbsent(productBasket.productID(), this::findPolicy),
+                    productBasket.productPrice().minorUnits(),
+                    productBasket.quantity());
+        }
+        return prices;
+    }
+
+    /**
+     * Prices every line of a cart with the markdowns of one state of the gateway, so a cart is never priced
+     * half before and half after a markdown change. Carts of at least {@code pricing.cart.parallel-threshold}
+     * lines are looked up and evaluated over the common fork/join pool. The final price cache is not used,
+     * as its prices might come from different states.
+     *
+     * @throws CartTotalOutOfRangeException when the total doesn't fit a {@code long}
+     */
+    public CartPrice calculateCart(List<ProductBasket> lines) {
+        var parallel = lines.size() >= cartParallelThreshold;
+        var productIds = new ArrayList<ProductID>(lines.size());
+        for (var line : lines) {
+            productIds.add(line.productID());
+        }
+        var markdowns = markdownGateway.getPoliciesByProductIds(productIds, parallel);
+        var linePrices = new long[lines.size()];
+        var evaluations = IntStream.range(0, linePrices.length);
+        (parallel ? evaluations.parallel() : evaluations).forEach(i -> {
+            var markdown = markdowns.get(i);
+            var line = lines.get(i);
+            linePrices[i] = evaluate(markdown.isPresent() ? markdown.get().policy() : DEFAULT_POLICY,
+                    line.productPrice().minorUnits(), line.quantity());
+        });
+        var total = 0L;
+        for (int i = 0; i < linePrices.length; i++) {
+            try {
+                total = Math.addExact(total, linePrices[i]);
+            } catch (ArithmeticException e) {
+                throw new CartTotalOutOfRangeException(i);
+            }
+        }
+        return new CartPrice(linePrices, total);
     }
 
     public Optional<MarkdownID> createPolicy(MarkdownPolicySpecification specification) {
@@ -42,40 +144,148 @@ public class MarkdownService {
         markdownGateway.get(markdownId)
                 .filter(markdown -> markdown.policy().describe().type().equals(specification.type()))
                 .ifPresentOrElse(
-                        __ -> result.value = markdownGateway.update(markdownId, specification),
+                        __ -> {
+                            result.value = markdownGateway.update(markdownId, specification);
+                            finalPriceCache.invalidateMarkdown(markdownId);
+                        },
                         () -> {}
                 );
         return result.value;
     }
 
     public Optional<Boolean> deletePolicy(MarkdownID markdownId) {
-        return markdownGateway.delete(markdownId);
+        var result = markdownGateway.delete(markdownId);
+        finalPriceCache.invalidateMarkdown(markdownId);
+        return result;
     }
 
     public List<Markdown> retrieveAllPolicies() {
         return markdownGateway.getAll();
     }
 
+    public MarkdownPage retrievePolicies(Optional<String> cursor, int limit) {
+        return markdownGateway.getPage(cursor, limit);
+    }
+
+    /**
+     * Revision of all markdowns and associations, which final prices and listings are derived from.
+     */
+    public Revision retrieveRevision() {
+        return markdownGateway.revision();
+    }
+
+    public Optional<Revision> retrievePolicyRevision(MarkdownID markdownId) {
+        return markdownGateway.revisionOf(markdownId);
+    }
+
     public Boolean associateToProducts(MarkdownID markdownID, List<ProductID> products) {
         var result = new Object() {Boolean value = Boolean.FALSE; };
         markdownGateway.get(markdownID)
                 .ifPresent(__ -> {
-                    markdownGateway.associateToProducts(markdownID, products);
+                    pricingMetrics.associations().record(() -> markdownGateway.associateToProducts(markdownID, products));
+                    finalPriceCache.invalidateProducts(products);
                     result.value = Boolean.TRUE;
                 });
         return result.value;
     }
 
+    public Optional<Stream<ProductID>> retrieveAssociations(MarkdownID markdownID) {
+        return markdownGateway.getAssociations(markdownID);
+    }
+
+    public Optional<Long> countAssociations(MarkdownID markdownID) {
+        return markdownGateway.countAssociations(markdownID);
+    }
+
     public boolean removeAssociationToProducts(MarkdownID markdownID, List<ProductID> products) {
         var result = new Object() {Boolean value = Boolean.FALSE; };
         markdownGateway.get(markdownID)
                 .ifPresent(__ -> {
-                    markdownGateway.removeAssociationToProducts(markdownID, products);
+                    pricingMetrics.associationRemovals().record(() -> markdownGateway.removeAssociationToProducts(markdownID, products));
+                    finalPriceCache.invalidateProducts(products);
                     result.value = Boolean.TRUE;
                 });
         return result.value;
     }
 
+    /**
+     * Associates the product ids read from the stream, applying them in chunks of {@value #IMPORT_CHUNK_SIZE}
+     * so that memory stays bounded whatever the size of the import, and pricing reads interleave with the writes.
+     * The import is not atomic: chunks applied before a malformed line are kept, and the result says how many.
+     */
+    public Optional<AssociationImport> importAssociations(MarkdownID markdownID, InputStream in, ProductIdReader.Format format) throws IOException {
+        if(markdownGateway.get(markdownID).isEmpty()){
+            return Optional.empty();
+        }
+        var reader = new ProductIdReader(in, format);
+        var imported = 0L;
+        var chunk = new ArrayList<ProductID>(IMPORT_CHUNK_SIZE);
+        try {
+            for (var product = reader.next(); product != null; product = reader.next()) {
+                chunk.add(product);
+                if(chunk.size() == IMPORT_CHUNK_SIZE){
+                    imported += importChunk(markdownID, chunk, imported);
+                    chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                }
+            }
+            imported += importChunk(markdownID, chunk, imported);
+        } catch (ProductIdReader.MalformedLineException e) {
+            imported += importChunk(markdownID, chunk, imported);
+            LOG.infof("Import to markdown %s stopped after %d associations: %s", markdownID.id(), imported, e.getMessage());
+            return Optional.of(new AssociationImport(imported, Optional.of(e.getMessage())));
+        }
+        LOG.infof("Imported %d associations to markdown %s", imported, markdownID.id());
+        return Optional.of(new AssociationImport(imported, Optional.empty()));
+    }
+
+    public void exportCatalog(OutputStream out) throws IOException {
+        markdownGateway.exportCatalog(out);
+    }
+
+    private int importChunk(MarkdownID markdownID, List<ProductID> chunk, long importedBefore) {
+        if(chunk.isEmpty()){
+            return 0;
+        }
+        pricingMetrics.associations().record(() -> markdownGateway.associateToProducts(markdownID, chunk));
+        finalPriceCache.invalidateProducts(chunk);
+        pricingMetrics.associationsImported(chunk.size());
+        if((importedBefore + chunk.size()) / IMPORT_PROGRESS_INTERVAL > importedBefore / IMPORT_PROGRESS_INTERVAL){
+            LOG.infof("Importing to markdown %s: %d associations", markdownID.id(), importedBefore + chunk.size());
+        }
+        return chunk.size();
+    }
+
+    private long evaluate(MarkdownPolicy policy, long unitPrice, int quantity) {
+        if(policy == DEFAULT_POLICY){
+            pricingMetrics.defaultEvaluated();
+        } else {
+            pricingMetrics.markdownEvaluated(policy.type());
+        }
+        return policy.apply(unitPrice, quantity);
+    }
+
+    private MarkdownPolicy findPolicy(ProductID productID) {
+        var markdown = markdownGateway.getPolicyByProductId(productID);
+        return markdown.isPresent() ? markdown.get().policy() : DEFAULT_POLICY;
+    }
+
+    /**
+     * The total of a cart overflows from its line at {@link #line()}, which can happen after markdowns marking
+     * prices up.
+     */
+    public static class CartTotalOutOfRangeException extends ArithmeticException {
+        private final int line;
+
+        CartTotalOutOfRangeException(int line) {
+            super("cart total out of range from line " + line);
+            this.line = line;
+        }
+
+        public int line() {
+            return line;
+        }
+    }
+
 //    public void removeAssociationToProducts(MarkdownID markdownID, List<ProductID> products) {
 //
 //    }
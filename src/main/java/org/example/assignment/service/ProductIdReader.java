@@ -0,0 +1,194 @@
+package org.example.assignment.service;
+
+import org.example.assignment.model.ProductID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Incremental reader of product ids, one per line, parsed straight from the bytes of a fixed size buffer
+ * so that memory does not grow with the input.
+ * <ul>
+ *     <li>NDJSON: every line is a JSON string, {@code "9f2c...-..."}</li>
+ *     <li>CSV: the id is the first column, optionally quoted; a first line that is not an id is a header</li>
+ * </ul>
+ * Blank lines are skipped.
+ */
+public class ProductIdReader {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final int UUID_LENGTH = 36;
+
+    private final InputStream in;
+    private final Format format;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private long line;
+
+    public ProductIdReader(InputStream in, Format format) {
+        this.in = in;
+        this.format = format;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * The next product id, or null at the end of the input.
+     */
+    public ProductID next() throws IOException {
+        while (true) {
+            var end = nextLineEnd();
+            if(end < 0){
+                return null;
+            }
+            var start = position;
+            position = end < limit ? end + 1 : end;
+            line++;
+            var id = parse(start, end);
+            if(id != null){
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Number of the line last read, starting from 1.
+     */
+    public long line() {
+        return line;
+    }
+
+    private int nextLineEnd() throws IOException {
+        var scanned = position;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if(buffer[i] == '\n'){
+                    return i;
+                }
+            }
+            scanned = limit;
+            if(endOfInput){
+                return position < limit ? limit : -1;
+            }
+            if(limit - position >= MAX_LINE_LENGTH){
+                throw new MalformedLineException(line + 1, "line longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            var unread = scanned - position;
+            fill();
+            scanned = position + unread;
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads more after them.
+     */
+    private void fill() throws IOException {
+        if(position > 0){
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        var read = in.read(buffer, limit, buffer.length - limit);
+        if(read < 0){
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private ProductID parse(int start, int end) {
+        if(format == Format.CSV){
+            for (int i = start; i < end; i++) {
+                if(buffer[i] == ','){
+                    end = i;
+                    break;
+                }
+            }
+        }
+        while (start < end && isWhitespace(buffer[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        if(start == end){
+            return null;
+        }
+        var quoted = end - start >= 2 && buffer[start] == '"' && buffer[end - 1] == '"';
+        if(quoted){
+            start++;
+            end--;
+        } else if(format == Format.NDJSON){
+            throw malformed(start, end, "expected a JSON string");
+        }
+        var id = end - start == UUID_LENGTH ? parseUUID(start) : null;
+        if(id == null && format == Format.CSV && line == 1){
+            return null;
+        }
+        if(id == null){
+            throw malformed(start, end, "invalid product id");
+        }
+        return new ProductID(id);
+    }
+
+    private UUID parseUUID(int start) {
+        if(buffer[start + 8] != '-' || buffer[start + 13] != '-' || buffer[start + 18] != '-' || buffer[start + 23] != '-'){
+            return null;
+        }
+        var timeLow = hex(start, 8);
+        var timeMid = hex(start + 9, 4);
+        var timeHigh = hex(start + 14, 4);
+        var sequence = hex(start + 19, 4);
+        var node = hex(start + 24, 12);
+        if((timeLow | timeMid | timeHigh | sequence | node) < 0){
+            return null;
+        }
+        return new UUID(timeLow << 32 | timeMid << 16 | timeHigh, sequence << 48 | node);
+    }
+
+    /**
+     * Value of {@code length} hex digits, or -1 when one of them is not a hex digit.
+     */
+    private long hex(int start, int length) {
+        var value = 0L;
+        for (int i = start; i < start + length; i++) {
+            var digit = Character.digit(buffer[i], 16);
+            if(digit < 0){
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private MalformedLineException malformed(int start, int end, String reason) {
+        var content = new String(buffer, start, Math.min(end - start, 64), StandardCharsets.UTF_8);
+        return new MalformedLineException(line, reason + ": " + content);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    public static class MalformedLineException extends IllegalArgumentException {
+        private final long line;
+
+        MalformedLineException(long line, String message) {
+            super("Line " + line + ", " + message);
+            this.line = line;
+        }
+
+        public long line() {
+            return line;
+        }
+    }
+}
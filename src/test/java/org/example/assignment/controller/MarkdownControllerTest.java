@@ -18,14 +18,21 @@ import org.example.assignment.model.ProductID;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.jupiter.api.Assertions.*;
 
 @QuarkusTest
@@ -90,6 +97,63 @@ class MarkdownControllerTest {
         assertEquals(3, mList.size());
     }
 
+    @Test
+    void getMarkdownPages() throws JsonProcessingException {
+
+        var confPerc = new MarkdownConfiguration(Optional.of(1f), Optional.empty());
+        var specPerc = new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, confPerc);
+        IntStream.range(0, 3).forEach(__ -> markdownGateway.createNew(specPerc));
+
+        var firstPage = given()
+                .queryParam("limit", 2)
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("Link", containsString("rel=\"next\""))
+                .extract();
+        var next = firstPage.header("Link").replaceAll(".*cursor=([^>]*)>.*", "$1");
+        var lastPage = given()
+                .queryParam("limit", 2)
+                .queryParam("cursor", next)
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract();
+
+        assertEquals(2, jsonMapper.readValue(firstPage.body().asString(), new TypeReference<List<MarkdownDTO>>(){}).size());
+        assertEquals(1, jsonMapper.readValue(lastPage.body().asString(), new TypeReference<List<MarkdownDTO>>(){}).size());
+        assertNull(lastPage.header("Link"));
+
+        given()
+                .queryParam("cursor", "not a cursor")
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    void streamMarkdownsAsNDJSON() throws JsonProcessingException {
+
+        var confPerc = new MarkdownConfiguration(Optional.of(1f), Optional.empty());
+        var specPerc = new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, confPerc);
+        IntStream.range(0, 300).forEach(__ -> markdownGateway.createNew(specPerc));
+
+        var lines = given()
+                .accept("application/x-ndjson")
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType("application/x-ndjson")
+                .extract().body().asString().split("\n");
+
+        assertEquals(300, lines.length);
+        assertEquals(MarkdownType.PERCENTAGE, jsonMapper.readValue(lines[299], MarkdownDTO.class).type);
+    }
+
     @Test
     void getMarkdownById() {
 
@@ -114,6 +178,91 @@ class MarkdownControllerTest {
         assertEquals(MarkdownType.DEFAULT, markdown.type);
     }
 
+    @Test
+    void getMarkdownByIdNotModified() {
+
+        var confPerc = new MarkdownConfiguration(Optional.of(1f), Optional.empty());
+        var id = markdownGateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, confPerc)).get();
+
+        var etag = given()
+                .pathParam("id", id.id())
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("Last-Modified", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .pathParam("id", id.id())
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}")
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode())
+                .header("ETag", is(etag));
+
+        markdownGateway.associateToProducts(id, List.of(new ProductID(UUID.randomUUID())));
+        given()
+                .pathParam("id", id.id())
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}")
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+
+        markdownGateway.update(id, new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, new MarkdownConfiguration(Optional.of(2f), Optional.empty())));
+        var updated = given()
+                .pathParam("id", id.id())
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract();
+
+        assertNotEquals(etag, updated.header("ETag"));
+        assertEquals(Float.valueOf(2f), updated.body().as(MarkdownDTO.class).percentage);
+    }
+
+    @Test
+    void getMarkdownListNotModifiedUntilAWrite() {
+
+        var confPerc = new MarkdownConfiguration(Optional.of(1f), Optional.empty());
+        var id = markdownGateway.createNew(new MarkdownPolicySpecification(MarkdownType.PERCENTAGE, confPerc)).get();
+
+        var etag = given()
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode());
+
+        given()
+                .accept("application/x-ndjson")
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode());
+
+        markdownGateway.delete(id);
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body(is("[]"));
+    }
+
     @Test
     void getMarkdownByIdNotFound() {
 
@@ -148,6 +297,50 @@ class MarkdownControllerTest {
         assertInstanceOf(UUID.class, UUID.fromString(id));
     }
 
+    @Test
+    void addNewStackedMarkdown() throws JsonProcessingException {
+
+        var count = new MarkdownDTO();
+        count.type = MarkdownType.COUNT;
+        count.thresholds = Map.of(2, 10f);
+        var percentage = new MarkdownDTO();
+        percentage.type = MarkdownType.PERCENTAGE;
+        percentage.percentage = 20f;
+        var markdown = new MarkdownDTO();
+        markdown.type = MarkdownType.STACKED;
+        markdown.layers = List.of(count, percentage);
+
+        var location = given()
+                .contentType(ContentType.JSON)
+                .body(jsonMapper.writeValueAsString(markdown))
+                .when()
+                .post(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract()
+                .header("Location");
+
+        var stacked = given()
+                .when()
+                .get(location)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract()
+                .as(MarkdownDTO.class);
+        assertEquals(MarkdownType.STACKED, stacked.type);
+        assertEquals(List.of(MarkdownType.COUNT, MarkdownType.PERCENTAGE), stacked.layers.stream().map(x -> x.type).toList());
+        assertEquals(Float.valueOf(20f), stacked.layers.get(1).percentage);
+
+        markdown.layers = List.of();
+        given()
+                .contentType(ContentType.JSON)
+                .body(jsonMapper.writeValueAsString(markdown))
+                .when()
+                .post(MARKDOWN_BASE_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
     @Test
     void deleteMarkdown() throws JsonProcessingException {
 
@@ -278,6 +471,44 @@ class MarkdownControllerTest {
         productsIds.forEach(p -> assertEquals(id.get().id(), markdownGateway.getPolicyByProductId(new ProductID(p)).get().id().id()));
     }
 
+    @Test
+    void getAssociations() throws JsonProcessingException {
+
+        var confDef = new MarkdownConfiguration(Optional.empty(), Optional.empty());
+        var specDef = new MarkdownPolicySpecification(MarkdownType.DEFAULT, confDef);
+
+        var id = markdownGateway.createNew(specDef);
+        var productsIds = IntStream.range(0, 3)
+                .mapToObj(__ -> UUID.randomUUID())
+                .toList();
+        markdownGateway.associateToProducts(id.get(), productsIds.stream().map(ProductID::new).toList());
+
+        var body = given()
+                .pathParam("id", id.get().id())
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}/associations")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .extract().body().asString();
+
+        given()
+                .pathParam("id", id.get().id())
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}/associations/count")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("count", is(3));
+
+        given()
+                .pathParam("id", UUID.randomUUID())
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/{id}/associations")
+                .then()
+                .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+
+        assertEquals(Set.copyOf(productsIds), Set.copyOf(jsonMapper.readValue(body, new TypeReference<List<UUID>>(){})));
+    }
+
     @Test
     void removeAssociationToProducts() throws JsonProcessingException {
 
@@ -309,4 +540,86 @@ class MarkdownControllerTest {
 
         productsIds.forEach(p -> assertTrue(markdownGateway.getPolicyByProductId(new ProductID(p)).isEmpty()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void importAssociations() {
+
+        var confDef = new MarkdownConfiguration(Optional.empty(), Optional.empty());
+        var specDef = new MarkdownPolicySpecification(MarkdownType.DEFAULT, confDef);
+
+        var id = markdownGateway.createNew(specDef);
+        var productsIds = IntStream.range(0, 3)
+                .mapToObj(__ -> UUID.randomUUID())
+                .toList();
+        var csv = "productId,name\n" + productsIds.stream().map(x -> x + ",product\n").collect(Collectors.joining());
+
+        given()
+                .contentType("text/csv")
+                .pathParam("id", UUID.randomUUID())
+                .body(csv)
+                .when()
+                .post(MARKDOWN_BASE_PATH+"/{id}/associations/import")
+                .then()
+                .statusCode(Response.Status.NOT_FOUND.getStatusCode());
+
+        given()
+                .contentType("text/csv")
+                .pathParam("id", id.get().id())
+                .body(csv)
+                .when()
+                .post(MARKDOWN_BASE_PATH+"/{id}/associations/import")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("imported", is(3));
+
+        productsIds.forEach(p -> assertEquals(id.get().id(), markdownGateway.getPolicyByProductId(new ProductID(p)).get().id().id()));
+    }
+
+    @Test
+    void importAssociationsUpToAMalformedLine() {
+
+        var confDef = new MarkdownConfiguration(Optional.empty(), Optional.empty());
+        var specDef = new MarkdownPolicySpecification(MarkdownType.DEFAULT, confDef);
+
+        var id = markdownGateway.createNew(specDef);
+        var imported = UUID.randomUUID();
+        var notImported = UUID.randomUUID();
+
+        given()
+                .contentType("application/x-ndjson")
+                .pathParam("id", id.get().id())
+                .body("\"" + imported + "\"\n\"not-an-id\"\n\"" + notImported + "\"\n")
+                .when()
+                .post(MARKDOWN_BASE_PATH+"/{id}/associations/import")
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("imported", is(1))
+                .body("error", startsWith("Line 2"));
+
+        assertEquals(id.get().id(), markdownGateway.getPolicyByProductId(new ProductID(imported)).get().id().id());
+        assertTrue(markdownGateway.getPolicyByProductId(new ProductID(notImported)).isEmpty());
+    }
+
+    @Test
+    void exportCatalog() {
+
+        var confDef = new MarkdownConfiguration(Optional.empty(), Optional.empty());
+        var specDef = new MarkdownPolicySpecification(MarkdownType.DEFAULT, confDef);
+
+        var id = markdownGateway.createNew(specDef);
+        markdownGateway.associateToProducts(id.get(), List.of(new ProductID(UUID.randomUUID())));
+
+        var catalog = given()
+                .when()
+                .get(MARKDOWN_BASE_PATH+"/catalog")
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType("application/octet-stream")
+                .extract()
+                .asByteArray();
+
+        var buffer = ByteBuffer.wrap(catalog);
+        assertEquals(0x4D44534E, buffer.getInt(0));
+        assertEquals(1L, buffer.getLong(24));
+    }
+}
@@ -7,11 +7,15 @@ import io.quarkus.test.junit.QuarkusMock;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import jakarta.ws.rs.core.Response;
+import org.example.assignment.controller.codec.PricingCodec;
 import org.example.assignment.controller.dto.FinalPriceRequest;
 import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
 import org.example.assignment.model.Markdown;
 import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.Price;
+import org.example.assignment.model.ProductBasket;
 import org.example.assignment.model.ProductID;
+import org.example.assignment.model.Revision;
 import org.example.assignment.policy.impl.CountMarkdownPolicy;
 import org.example.assignment.policy.impl.PercentageMarkdownPolicy;
 import org.junit.jupiter.api.BeforeAll;
@@ -20,18 +24,28 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class PricingControllerTest {
 
     private static final String FINAL_PRICE_PATH = "v1/pricing/finalprice";
+    private static final String FINAL_PRICE_BATCH_PATH = "v1/pricing/finalprice/batch";
+    private static final String CART_PATH = "v1/pricing/cart";
+    private static final Revision REVISION = new Revision(42, Instant.parse("2024-01-01T00:00:00Z"));
     private static MarkdownGatewayImpl markdownGateway;
 
     private final ObjectMapper jsonMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
@@ -39,6 +53,7 @@ public class PricingControllerTest {
     @BeforeAll
     public static void setup() {
         markdownGateway = Mockito.mock(MarkdownGatewayImpl.class);
+        Mockito.when(markdownGateway.revision()).thenReturn(REVISION);
         QuarkusMock.installMockForType(markdownGateway, MarkdownGatewayImpl.class);
     }
 
@@ -58,9 +73,11 @@ public class PricingControllerTest {
             "11111111-1111-1111-1111-111111111111,1.0,-1,quantity",
             "11111111-1111-1111-1111-111111111111,1.0,0,quantity",
             "11111111-1111-1111-1111-111111111111,0.0,1,productPrice",
-            "11111111-1111-1111-1111-111111111111,-1.0,1,productPrice"
+            "11111111-1111-1111-1111-111111111111,-1.0,1,productPrice",
+            "11111111-1111-1111-1111-111111111111,,1,productPrice",
+            "11111111-1111-1111-1111-111111111111,1.0,,quantity"
     })
-    public void wrongRequest(String productId, double price, int quantity, String errorField) throws JsonProcessingException {
+    public void wrongRequest(String productId, Double price, Integer quantity, String errorField) throws JsonProcessingException {
 
         var request = new FinalPriceRequest();
         request.productId = productId;
@@ -127,6 +144,52 @@ public class PricingControllerTest {
         Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(productId);
     }
 
+    @Test
+    public void notModifiedWhenTheMarkdownsDidNotChange() throws JsonProcessingException {
+
+        var productId = new ProductID(UUID.randomUUID());
+        var request = new FinalPriceRequest();
+        request.productId = productId.id().toString();
+        request.productPrice = 1d;
+        request.quantity = 100;
+
+        Mockito.when(markdownGateway.getPolicyByProductId(productId)).thenReturn(Optional.empty());
+
+        var etag = given()
+                .body(jsonMapper.writeValueAsString(request))
+                .contentType(ContentType.JSON)
+                .when()
+                .get(FINAL_PRICE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .header("ETag", startsWith("\"42-"))
+                .header("Last-Modified", is("Mon, 01 Jan 2024 00:00:00 GMT"))
+                .extract().header("ETag");
+
+        given()
+                .body(jsonMapper.writeValueAsString(request))
+                .contentType(ContentType.JSON)
+                .header("If-None-Match", etag)
+                .when()
+                .get(FINAL_PRICE_PATH)
+                .then()
+                .statusCode(Response.Status.NOT_MODIFIED.getStatusCode())
+                .header("ETag", is(etag));
+
+        request.quantity = 10;
+        given()
+                .body(jsonMapper.writeValueAsString(request))
+                .contentType(ContentType.JSON)
+                .header("If-None-Match", etag)
+                .when()
+                .get(FINAL_PRICE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body(is("10.0"));
+
+        Mockito.verify(markdownGateway, Mockito.times(2)).getPolicyByProductId(productId);
+    }
+
     @ParameterizedTest
     @CsvSource({
             "20,20.0",
@@ -163,4 +226,328 @@ public class PricingControllerTest {
         Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(productId);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void batchPricing() throws JsonProcessingException {
+
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var policy = Optional.of(new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f)));
+
+        Mockito.when(markdownGateway.getPolicyByProductId(discounted)).thenReturn(policy);
+        Mockito.when(markdownGateway.getPolicyByProductId(notDiscounted)).thenReturn(Optional.empty());
+
+        var requests = List.of(
+                toRequest(discounted, 100),
+                toRequest(notDiscounted, 100),
+                toRequest(discounted, 10)
+        );
+
+        given()
+                .body(jsonMapper.writeValueAsString(requests))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body(is("[50.0,100.0,5.0]"));
+
+        Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(discounted);
+        Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(notDiscounted);
+    }
+
+    @Test
+    public void wrongBatchRequest() throws JsonProcessingException {
+
+        var valid = toRequest(new ProductID(UUID.randomUUID()), 1);
+        var invalid = toRequest(new ProductID(UUID.randomUUID()), 0);
+        invalid.productId = "not-a-uuid";
+
+        var body = given()
+                .body(jsonMapper.writeValueAsString(List.of(valid, invalid)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .extract().body().asString();
+
+        assertTrue(body.contains("productId"));
+        assertTrue(body.contains("quantity"));
+    }
+
+    @Test
+    public void incompleteBatchRequest() throws JsonProcessingException {
+
+        var withoutPrice = toRequest(new ProductID(UUID.randomUUID()), 1);
+        withoutPrice.productPrice = null;
+        var withoutQuantity = toRequest(new ProductID(UUID.randomUUID()), 1);
+        withoutQuantity.quantity = null;
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(withoutPrice, withoutQuantity)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("index", is(List.of(0, 1)))
+                .body("field", is(List.of("productPrice", "quantity")))
+                .body("message", is(List.of("must not be null", "must not be null")));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "11111111-1111-0111-1111-111111111111",
+            "11111111-1111-1111-e111-111111111111",
+            "11111111-1111-1111-F111-111111111111"
+    })
+    public void wrongBatchProductId(String productId) throws JsonProcessingException {
+
+        var request = toRequest(new ProductID(UUID.randomUUID()), 1);
+        request.productId = productId;
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(request)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("field", is(List.of("productId")));
+
+        request.productId = productId.substring(0, 14) + "4" + productId.substring(15, 19) + "8" + productId.substring(20);
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(request)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "6f1c2a3e-8b4d-4c5e-9f60-718293a4b5c6,200",
+            "6F1C2A3E-8B4D-4C5E-9F60-718293A4B5C6,200",
+            "6f1c2a3e-8B4D-4c5e-9F60-718293a4b5c6,200",
+            "6f1c2a3e-8b4d-0c5e-9f60-718293a4b5c6,400",
+            "6f1c2a3e-8b4d-4c5e-ef60-718293a4b5c6,400",
+            "6f1c2a3e-8b4d-4c5e-9f60-718293a4b5cg,400"
+    })
+    public void sameProductIdRulesOnEveryEndpoint(String productId, int expectedStatus) throws JsonProcessingException {
+
+        var request = toRequest(new ProductID(UUID.randomUUID()), 1);
+        request.productId = productId;
+        if(expectedStatus == 200){
+            Mockito.when(markdownGateway.getPoliciesByProductIds(List.of(new ProductID(UUID.fromString(productId))), false))
+                    .thenReturn(List.of(Optional.empty()));
+        }
+
+        given()
+                .body(jsonMapper.writeValueAsString(request))
+                .contentType(ContentType.JSON)
+                .when()
+                .get(FINAL_PRICE_PATH)
+                .then()
+                .statusCode(expectedStatus);
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(request)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(expectedStatus);
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(request)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(CART_PATH)
+                .then()
+                .statusCode(expectedStatus);
+    }
+
+    @Test
+    public void cartPricing() throws JsonProcessingException {
+
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var policy = Optional.of(new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f)));
+
+        Mockito.when(markdownGateway.getPoliciesByProductIds(List.of(discounted, notDiscounted, discounted), false))
+                .thenReturn(List.of(policy, Optional.empty(), policy));
+
+        var requests = List.of(
+                toRequest(discounted, 100),
+                toRequest(notDiscounted, 100),
+                toRequest(discounted, 10)
+        );
+
+        given()
+                .body(jsonMapper.writeValueAsString(requests))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(CART_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body("lines", is(List.of(50.0f, 100.0f, 5.0f)))
+                .body("total", is(155.0f));
+
+        Mockito.verify(markdownGateway, Mockito.times(1)).getPoliciesByProductIds(List.of(discounted, notDiscounted, discounted), false);
+    }
+
+    @Test
+    public void incompleteCartLine() throws JsonProcessingException {
+
+        var complete = toRequest(new ProductID(UUID.randomUUID()), 1);
+        var withoutPrice = toRequest(new ProductID(UUID.randomUUID()), 1);
+        withoutPrice.productPrice = null;
+        var withoutQuantity = toRequest(new ProductID(UUID.randomUUID()), 1);
+        withoutQuantity.quantity = null;
+
+        given()
+                .body(jsonMapper.writeValueAsString(List.of(complete, withoutPrice, withoutQuantity)))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(CART_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("index", is(List.of(1, 2)))
+                .body("field", is(List.of("productPrice", "quantity")));
+    }
+
+    @Test
+    public void cartTotalOutOfRange() throws JsonProcessingException {
+
+        var lines = List.of(
+                toRequest(new ProductID(UUID.randomUUID()), 1000),
+                toRequest(new ProductID(UUID.randomUUID()), 1000),
+                toRequest(new ProductID(UUID.randomUUID()), 1000)
+        );
+        lines.forEach(x -> x.productPrice = 9e13);
+
+        given()
+                .body(jsonMapper.writeValueAsString(lines))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(CART_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("index", is(List.of(1)))
+                .body("field", is(List.of("productPrice")))
+                .body("message", is(List.of("puts the cart total out of range")));
+    }
+
+    @Test
+    public void cartTotalMarkedUpOutOfRange() throws JsonProcessingException {
+
+        var first = new ProductID(UUID.randomUUID());
+        var second = new ProductID(UUID.randomUUID());
+        var markup = Optional.of(new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(-100f)));
+
+        Mockito.when(markdownGateway.getPoliciesByProductIds(List.of(first, second), false))
+                .thenReturn(List.of(markup, markup));
+
+        var lines = List.of(toRequest(first, 100_000), toRequest(second, 100_000));
+        lines.forEach(x -> x.productPrice = 4e13);
+
+        given()
+                .body(jsonMapper.writeValueAsString(lines))
+                .contentType(ContentType.JSON)
+                .when()
+                .post(CART_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .body("index", is(List.of(1)))
+                .body("field", is(List.of("productPrice")))
+                .body("message", is(List.of("puts the cart total out of range")));
+    }
+
+    @Test
+    public void binaryBatchPricing() throws IOException {
+
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var policy = Optional.of(new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f)));
+
+        Mockito.when(markdownGateway.getPolicyByProductId(discounted)).thenReturn(policy);
+        Mockito.when(markdownGateway.getPolicyByProductId(notDiscounted)).thenReturn(Optional.empty());
+
+        var request = new ByteArrayOutputStream();
+        PricingCodec.writeBaskets(request, List.of(
+                new ProductBasket(discounted, Price.of(1d), 100),
+                new ProductBasket(notDiscounted, Price.of(1d), 100)
+        ));
+
+        var response = given()
+                .body(request.toByteArray())
+                .contentType(PricingCodec.MEDIA_TYPE)
+                .accept(PricingCodec.MEDIA_TYPE)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .contentType(PricingCodec.MEDIA_TYPE)
+                .extract().asByteArray();
+
+        assertArrayEquals(new double[] {50.0, 100.0}, PricingCodec.readPrices(new ByteArrayInputStream(response)));
+    }
+
+    @Test
+    public void binaryPricingWithJsonResponse() throws IOException {
+
+        var productId = new ProductID(UUID.randomUUID());
+        Mockito.when(markdownGateway.getPolicyByProductId(productId)).thenReturn(Optional.empty());
+
+        var request = new ByteArrayOutputStream();
+        PricingCodec.writeBasket(request, new ProductBasket(productId, Price.of(1d), 100));
+
+        given()
+                .body(request.toByteArray())
+                .contentType(PricingCodec.MEDIA_TYPE)
+                .accept(ContentType.JSON)
+                .when()
+                .get(FINAL_PRICE_PATH)
+                .then()
+                .statusCode(Response.Status.OK.getStatusCode())
+                .body(is("100.0"));
+    }
+
+    @Test
+    public void wrongBinaryBatchRequest() throws IOException {
+
+        var request = new ByteArrayOutputStream();
+        PricingCodec.writeBaskets(request, List.of(new ProductBasket(new ProductID(new UUID(0, 0)), Price.of(1d), 0)));
+
+        var body = given()
+                .body(request.toByteArray())
+                .contentType(PricingCodec.MEDIA_TYPE)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode())
+                .extract().body().asString();
+
+        assertTrue(body.contains("productId"));
+        assertTrue(body.contains("quantity"));
+
+        given()
+                .body(new byte[] {0, 0, 0, 2, 1, 2, 3})
+                .contentType(PricingCodec.MEDIA_TYPE)
+                .when()
+                .post(FINAL_PRICE_BATCH_PATH)
+                .then()
+                .statusCode(Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    private FinalPriceRequest toRequest(ProductID productId, int quantity) {
+        var request = new FinalPriceRequest();
+        request.productId = productId.id().toString();
+        request.productPrice = 1d;
+        request.quantity = quantity;
+        return request;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.assignment.controller.codec;
+
+import org.example.assignment.model.Price;
+import org.example.assignment.model.ProductBasket;
+import org.example.assignment.model.ProductID;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingCodecTest {
+
+    @Test
+    void roundTripBasketsAndPrices() throws IOException {
+        var productBaskets = List.of(
+                new ProductBasket(new ProductID(UUID.randomUUID()), Price.of(9.99), 3),
+                new ProductBasket(new ProductID(UUID.randomUUID()), Price.of(0.01), 1000)
+        );
+        var baskets = new ByteArrayOutputStream();
+        PricingCodec.writeBaskets(baskets, productBaskets);
+        var prices = new ByteArrayOutputStream();
+        PricingCodec.writePrices(prices, new double[] {29.97, 8.5});
+
+        assertEquals(4 + 2 * 28, baskets.size());
+        assertEquals(productBaskets, PricingCodec.readBaskets(new ByteArrayInputStream(baskets.toByteArray())));
+        assertArrayEquals(new double[] {29.97, 8.5}, PricingCodec.readPrices(new ByteArrayInputStream(prices.toByteArray())));
+    }
+
+    @Test
+    void rejectTruncatedOrOversizedBatches() {
+        var truncated = ByteBuffer.allocate(4 + 28).putInt(2).array();
+        var oversized = ByteBuffer.allocate(4).putInt(PricingCodec.MAX_BATCH_SIZE + 1).array();
+
+        assertThrows(EOFException.class, () -> PricingCodec.readBaskets(new ByteArrayInputStream(truncated)));
+        assertThrows(IOException.class, () -> PricingCodec.readBaskets(new ByteArrayInputStream(oversized)));
+    }
+}
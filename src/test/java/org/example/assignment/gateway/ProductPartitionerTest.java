@@ -0,0 +1,35 @@
+package org.example.assignment.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductPartitionerTest {
+
+    @Test
+    void keepPartitionsStableAcrossReleases() {
+        var sut = new ProductPartitioner(16);
+
+        assertEquals(11, sut.partitionOf(UUID.fromString("11111111-1111-1111-1111-111111111111")));
+        assertEquals(3, sut.partitionOf(UUID.fromString("00000000-0000-0000-0000-000000000001")));
+        assertEquals(0, new ProductPartitioner(3).partitionOf(UUID.fromString("123e4567-e89b-12d3-a456-426614174000")));
+        assertEquals(0, new ProductPartitioner(1).partitionOf(UUID.randomUUID()));
+        assertThrows(IllegalArgumentException.class, () -> new ProductPartitioner(0));
+    }
+
+    @Test
+    void spreadSequentialIdsEvenly() {
+        var sut = new ProductPartitioner(16);
+        var counts = new int[16];
+
+        for (int i = 0; i < 160_000; i++) {
+            counts[sut.partitionOf(new UUID(0, i))]++;
+        }
+
+        for (var count : counts) {
+            assertTrue(Math.abs(count - 10_000) < 500, "uneven partition of " + count);
+        }
+    }
+}
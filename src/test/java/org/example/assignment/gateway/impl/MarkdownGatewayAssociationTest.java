@@ -0,0 +1,81 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewayAssociationTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void listCountAndCascadeDelete() {
+        var sut = new MarkdownGatewayImpl();
+        var kept = sut.createNew(percentage(10f)).get();
+        var deleted = sut.createNew(percentage(10f)).get();
+        var products = products(100);
+        sut.associateToProducts(kept, products.subList(0, 40));
+        sut.associateToProducts(deleted, products.subList(40, 100));
+        sut.associateToProducts(kept, products.subList(90, 100));
+        sut.removeAssociationToProducts(kept, products.subList(0, 10));
+
+        var expected = new HashSet<>(products.subList(10, 40));
+        expected.addAll(products.subList(90, 100));
+        assertEquals(expected, associations(sut, kept));
+        assertEquals(40L, sut.countAssociations(kept).get());
+        assertEquals(50L, sut.countAssociations(deleted).get());
+
+        sut.delete(deleted);
+
+        assertTrue(sut.countAssociations(deleted).isEmpty());
+        assertTrue(sut.getAssociations(deleted).isEmpty());
+        assertEquals(40L, sut.associationCount());
+        products.subList(40, 90).forEach(x -> assertTrue(sut.getPolicyByProductId(x).isEmpty()));
+        products.subList(90, 100).forEach(x -> assertEquals(kept, sut.getPolicyByProductId(x).get().id()));
+    }
+
+    @Test
+    void includeCatalogAssociationsNotOverridden() throws IOException {
+        var source = new MarkdownGatewayImpl();
+        var first = source.createNew(percentage(10f)).get();
+        var second = source.createNew(percentage(10f)).get();
+        var products = products(20);
+        source.associateToProducts(first, products.subList(0, 10));
+        source.associateToProducts(second, products.subList(10, 20));
+        var file = directory.resolve("catalog.bin");
+        try (var out = Files.newOutputStream(file)) {
+            source.exportCatalog(out);
+        }
+        var sut = new MarkdownGatewayImpl(null, MappedCatalog.open(file));
+
+        sut.associateToProducts(second, products.subList(0, 2));
+        sut.removeAssociationToProducts(first, products.subList(2, 3));
+
+        assertEquals(Set.copyOf(products.subList(3, 10)), associations(sut, first));
+        assertEquals(7L, sut.countAssociations(first).get());
+        assertEquals(12L, sut.countAssociations(second).get());
+
+        sut.delete(second);
+
+        assertTrue(sut.getPolicyByProductId(products.get(0)).isEmpty());
+        assertTrue(sut.getPolicyByProductId(products.get(15)).isEmpty());
+        assertEquals(first, sut.getPolicyByProductId(products.get(5)).get().id());
+    }
+
+    private static Set<ProductID> associations(MarkdownGatewayImpl sut, MarkdownID markdownId) {
+        return sut.getAssociations(markdownId).get().collect(Collectors.toCollection(HashSet::new));
+    }
+}
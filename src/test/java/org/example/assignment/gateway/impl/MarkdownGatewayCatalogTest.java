@@ -0,0 +1,116 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewayCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void serveAnExportedCatalog() throws IOException {
+        var source = new MarkdownGatewayImpl();
+        var first = source.createNew(percentage(10f)).get();
+        var second = source.createNew(percentage(20f)).get();
+        var products = products(10_000);
+        source.associateToProducts(first, products.subList(0, 5_000));
+        source.associateToProducts(second, products.subList(5_000, 10_000));
+
+        var sut = new MarkdownGatewayImpl(null, MappedCatalog.open(export(source, "first.bin")));
+
+        assertEquals(2, sut.getAll().size());
+        IntStream.range(0, products.size()).forEach(i ->
+                assertEquals(i < 5_000 ? first : second, sut.getPolicyByProductId(products.get(i)).get().id()));
+        assertTrue(sut.getPolicyByProductId(new ProductID(UUID.randomUUID())).isEmpty());
+    }
+
+    @Test
+    void serveACatalogAlreadyInMemory() throws IOException {
+        var source = new MarkdownGatewayImpl();
+        var markdown = source.createNew(percentage(10f)).get();
+        var products = products(1_000);
+        source.associateToProducts(markdown, products.subList(0, 500));
+        var snapshot = new ByteArrayOutputStream();
+        source.exportCatalog(snapshot);
+
+        var sut = new MarkdownGatewayImpl(null, MappedCatalog.wrap(ByteBuffer.wrap(snapshot.toByteArray()), "memory"));
+
+        IntStream.range(0, products.size()).forEach(i ->
+                assertEquals(i < 500, sut.getPolicyByProductId(products.get(i)).isPresent()));
+        assertThrows(IOException.class, () -> MappedCatalog.wrap(ByteBuffer.wrap(snapshot.toByteArray(), 0, 100), "truncated"));
+    }
+
+    @Test
+    void writeToTheOverlay() throws IOException {
+        var source = new MarkdownGatewayImpl();
+        var first = source.createNew(percentage(10f)).get();
+        var deleted = source.createNew(percentage(20f)).get();
+        var products = products(100);
+        source.associateToProducts(first, products.subList(0, 50));
+        source.associateToProducts(deleted, products.subList(50, 100));
+        var sut = new MarkdownGatewayImpl(null, MappedCatalog.open(export(source, "first.bin")));
+
+        var created = sut.createNew(percentage(30f)).get();
+        var added = new ProductID(UUID.randomUUID());
+        sut.associateToProducts(created, List.of(products.get(1), added));
+        sut.removeAssociationToProducts(first, List.of(products.get(0)));
+        sut.delete(deleted);
+
+        assertOverlay(sut, products, first, created, added);
+        var reexported = new MarkdownGatewayImpl(null, MappedCatalog.open(export(sut, "second.bin")));
+        assertOverlay(reexported, products, first, created, added);
+        assertEquals(50, MappedCatalog.open(directory.resolve("second.bin")).size());
+    }
+
+    @Test
+    void findProductsSharingTheirMostSignificantBits() throws IOException {
+        var source = new MarkdownGatewayImpl();
+        var markdown = source.createNew(percentage(10f)).get();
+        var products = new ArrayList<ProductID>();
+        for (int i = 0; i < 10_000; i++) {
+            products.add(new ProductID(new UUID(i / 500, i)));
+        }
+        source.associateToProducts(markdown, products);
+
+        var catalog = MappedCatalog.open(export(source, "colliding.bin"));
+
+        products.forEach(x -> assertNotEquals(MappedCatalog.NO_SLOT,
+                catalog.slotOf(x.id().getMostSignificantBits(), x.id().getLeastSignificantBits()), x.toString()));
+        assertEquals(MappedCatalog.NO_SLOT, catalog.slotOf(3, 10_000));
+        assertEquals(MappedCatalog.NO_SLOT, catalog.slotOf(20, 0));
+    }
+
+    private void assertOverlay(MarkdownGatewayImpl sut, List<ProductID> products, MarkdownID first, MarkdownID created, ProductID added) {
+        assertTrue(sut.getPolicyByProductId(products.get(0)).isEmpty());
+        assertEquals(created, sut.getPolicyByProductId(products.get(1)).get().id());
+        assertEquals(first, sut.getPolicyByProductId(products.get(2)).get().id());
+        assertEquals(created, sut.getPolicyByProductId(added).get().id());
+        assertTrue(sut.getPolicyByProductId(products.get(50)).isEmpty());
+        assertEquals(2, sut.getAll().size());
+    }
+
+    private Path export(MarkdownGatewayImpl gateway, String name) throws IOException {
+        var file = directory.resolve(name);
+        try (var out = Files.newOutputStream(file)) {
+            gateway.exportCatalog(out);
+        }
+        return file;
+    }
+}
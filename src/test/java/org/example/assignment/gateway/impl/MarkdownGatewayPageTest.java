@@ -0,0 +1,40 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewayPageTest {
+
+    @Test
+    void pageThroughMarkdownsWhileDeletingAndCreating() {
+        var sut = new MarkdownGatewayImpl();
+        var created = IntStream.range(0, 10)
+                .mapToObj(__ -> sut.createNew(percentage(10f)).get())
+                .collect(Collectors.toList());
+        sut.delete(created.get(3));
+        sut.delete(created.get(9));
+
+        var first = sut.getPage(Optional.empty(), 4);
+        sut.delete(created.get(5));
+        var late = sut.createNew(percentage(10f)).get();
+        var second = sut.getPage(first.nextCursor(), 3);
+        var last = sut.getPage(second.nextCursor(), 3);
+
+        var seen = new ArrayList<MarkdownID>();
+        List.of(first, second, last).forEach(page -> page.markdowns().forEach(x -> seen.add(x.id())));
+        assertEquals(List.of(created.get(0), created.get(1), created.get(2), created.get(4),
+                created.get(6), created.get(7), created.get(8), late), seen);
+        assertTrue(second.nextCursor().isPresent());
+        assertTrue(last.nextCursor().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> sut.getPage(Optional.of("not a cursor"), 4));
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.GatewayPersistence;
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.gateway.impl.persistence.PersistenceConfig;
+import org.example.assignment.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.count;
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.example.assignment.testdouble.MarkdownFixtures.stacked;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewayPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    @TempDir
+    Path catalogDirectory;
+
+    @Test
+    void recoverFromJournal() throws Exception {
+        var sut = open(Long.MAX_VALUE);
+        var state = populate(sut);
+        sut.close();
+
+        var recovered = open(Long.MAX_VALUE);
+        assertState(recovered, state);
+        recovered.close();
+    }
+
+    @Test
+    void neverHandOutTheRevisionsOfAPreviousRun() throws Exception {
+        var sut = open(Long.MAX_VALUE);
+        var markdown = sut.createNew(percentage(10f)).get();
+        var written = sut.revisionOf(markdown).get();
+        sut.close();
+        Thread.sleep(2);
+
+        var recovered = open(Long.MAX_VALUE);
+        assertTrue(recovered.revisionOf(markdown).get().version() > written.version());
+        assertTrue(recovered.revision().version() > written.version());
+        recovered.close();
+    }
+
+    @Test
+    void recoverFromSnapshotAndJournalTail() throws Exception {
+        var sut = open(1);
+        var state = populate(sut);
+        var late = product();
+        sut.associateToProducts(state.count, List.of(late));
+        sut.close();
+
+        try (var files = Files.list(directory)) {
+            assertTrue(files.anyMatch(x -> x.getFileName().toString().startsWith("snapshot-")));
+        }
+        var recovered = open(Long.MAX_VALUE);
+        assertState(recovered, state);
+        assertEquals(state.count, recovered.getPolicyByProductId(late).get().id());
+        recovered.close();
+    }
+
+    @Test
+    void keepTheWritesOnTopOfACatalogInSnapshots() throws Exception {
+        var source = new MarkdownGatewayImpl();
+        var kept = source.createNew(percentage(10f)).get();
+        var deleted = source.createNew(percentage(20f)).get();
+        var products = List.of(product(), product(), product());
+        source.associateToProducts(kept, products.subList(0, 2));
+        source.associateToProducts(deleted, products.subList(2, 3));
+        var file = catalogDirectory.resolve("catalog.bin");
+        try (var out = Files.newOutputStream(file)) {
+            source.exportCatalog(out);
+        }
+
+        var sut = openWithCatalog(file, Long.MAX_VALUE);
+        sut.removeAssociationToProducts(kept, products.subList(0, 1));
+        sut.delete(deleted);
+        sut.close();
+        var snapshotted = openWithCatalog(file, 1);
+        var late = product();
+        snapshotted.associateToProducts(kept, List.of(product()));
+        snapshotted.associateToProducts(kept, List.of(late));
+        snapshotted.close();
+
+        try (var files = Files.list(directory)) {
+            assertTrue(files.anyMatch(x -> x.getFileName().toString().startsWith("snapshot-")));
+        }
+        var recovered = openWithCatalog(file, Long.MAX_VALUE);
+        assertEquals(List.of(kept), recovered.getAll().stream().map(Markdown::id).toList());
+        assertTrue(recovered.get(deleted).isEmpty());
+        assertTrue(recovered.getPolicyByProductId(products.get(0)).isEmpty());
+        assertEquals(kept, recovered.getPolicyByProductId(products.get(1)).get().id());
+        assertTrue(recovered.getPolicyByProductId(products.get(2)).isEmpty());
+        assertEquals(kept, recovered.getPolicyByProductId(late).get().id());
+        recovered.close();
+    }
+
+    @Test
+    void restartWithOnlyTheOverlayOfACatalogInMemory() throws Exception {
+        var source = new MarkdownGatewayImpl();
+        var markdown = source.createNew(percentage(10f)).get();
+        var products = products(1000);
+        source.associateToProducts(markdown, products);
+        var file = catalogDirectory.resolve("catalog.bin");
+        try (var out = Files.newOutputStream(file)) {
+            source.exportCatalog(out);
+        }
+
+        var sut = openWithCatalog(file, 1);
+        var added = List.of(product(), product());
+        sut.associateToProducts(markdown, added.subList(0, 1));
+        sut.removeAssociationToProducts(markdown, products.subList(0, 1));
+        sut.associateToProducts(markdown, added.subList(1, 2));
+        sut.close();
+        try (var files = Files.list(directory)) {
+            assertTrue(files.anyMatch(x -> x.getFileName().toString().startsWith("snapshot-")));
+        }
+
+        var restarted = openWithCatalog(file, Long.MAX_VALUE);
+        assertEquals(products.size() + 3, restarted.associationCount());
+        assertTrue(restarted.getPolicyByProductId(products.get(0)).isEmpty());
+        assertEquals(markdown, restarted.getPolicyByProductId(products.get(1)).get().id());
+        assertEquals(markdown, restarted.getPolicyByProductId(added.get(1)).get().id());
+        restarted.close();
+    }
+
+    @Test
+    void refuseASnapshotTakenOnAnotherCatalog() throws Exception {
+        var source = new MarkdownGatewayImpl();
+        var markdown = source.createNew(percentage(10f)).get();
+        source.associateToProducts(markdown, List.of(product()));
+        var file = catalogDirectory.resolve("catalog.bin");
+        var other = catalogDirectory.resolve("other.bin");
+        try (var out = Files.newOutputStream(file)) {
+            source.exportCatalog(out);
+        }
+        source.associateToProducts(markdown, List.of(product()));
+        try (var out = Files.newOutputStream(other)) {
+            source.exportCatalog(out);
+        }
+
+        var sut = openWithCatalog(file, 1);
+        sut.associateToProducts(markdown, List.of(product()));
+        sut.associateToProducts(markdown, List.of(product()));
+        sut.close();
+
+        assertThrows(IllegalStateException.class, () -> openWithCatalog(other, Long.MAX_VALUE));
+    }
+
+    @Test
+    void recoverAStackedMarkdown() throws Exception {
+        var sut = open(1);
+        var layers = List.of(count(Map.of(2, 10f)), percentage(20f));
+        var markdown = sut.createNew(stacked(layers)).get();
+        var product = product();
+        sut.associateToProducts(markdown, List.of(product));
+        sut.close();
+
+        var recovered = open(Long.MAX_VALUE);
+        var policy = recovered.getPolicyByProductId(product).get().policy();
+        assertEquals(layers, policy.describe().configuration().layers().get());
+        assertEquals(720, policy.apply(500, 2));
+        recovered.close();
+    }
+
+    @Test
+    void ignoreATornJournalTail() throws Exception {
+        var sut = open(Long.MAX_VALUE);
+        var state = populate(sut);
+        sut.close();
+        try (var files = Files.list(directory)) {
+            var segment = files.filter(x -> x.getFileName().toString().startsWith("wal-")).sorted().reduce((a, b) -> b).get();
+            Files.write(segment, new byte[] {0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        var recovered = open(Long.MAX_VALUE);
+        assertState(recovered, state);
+        var product = product();
+        recovered.associateToProducts(state.percentage, List.of(product));
+        recovered.close();
+
+        var reopened = open(Long.MAX_VALUE);
+        assertState(reopened, state);
+        assertEquals(state.percentage, reopened.getPolicyByProductId(product).get().id());
+        reopened.close();
+    }
+
+    private State populate(MarkdownGatewayImpl sut) {
+        var percentage = sut.createNew(percentage(10f)).get();
+        var count = sut.createNew(count(Map.of(2, 5f, 5, 20f))).get();
+        var deleted = sut.createNew(new MarkdownPolicySpecification(MarkdownType.DEFAULT,
+                new MarkdownConfiguration(Optional.empty(), Optional.empty()))).get();
+        var products = List.of(product(), product(), product(), product());
+        sut.associateToProducts(percentage, products.subList(0, 2));
+        sut.associateToProducts(count, products.subList(2, 3));
+        sut.associateToProducts(deleted, products.subList(3, 4));
+        sut.removeAssociationToProducts(percentage, products.subList(1, 2));
+        sut.update(percentage, percentage(25f));
+        sut.delete(deleted);
+        return new State(percentage, count, products);
+    }
+
+    private void assertState(MarkdownGatewayImpl sut, State state) {
+        assertEquals(Set.of(state.count, state.percentage), sut.getAll().stream().map(Markdown::id).collect(Collectors.toSet()));
+        assertEquals(25f, sut.get(state.percentage).get().policy().describe().configuration().percentage().get());
+        assertEquals(Map.of(2, 5f, 5, 20f), sut.get(state.count).get().policy().describe().configuration().thresholds().get());
+        assertEquals(state.percentage, sut.getPolicyByProductId(state.products.get(0)).get().id());
+        assertTrue(sut.getPolicyByProductId(state.products.get(1)).isEmpty());
+        assertEquals(state.count, sut.getPolicyByProductId(state.products.get(2)).get().id());
+        assertTrue(sut.getPolicyByProductId(state.products.get(3)).isEmpty());
+    }
+
+    private MarkdownGatewayImpl open(long snapshotAfterBytes) {
+        return new MarkdownGatewayImpl(new GatewayPersistence(new TestConfig(directory, snapshotAfterBytes)));
+    }
+
+    private MarkdownGatewayImpl openWithCatalog(Path catalog, long snapshotAfterBytes) throws IOException {
+        return new MarkdownGatewayImpl(new GatewayPersistence(new TestConfig(directory, snapshotAfterBytes)), MappedCatalog.open(catalog));
+    }
+
+    private static ProductID product() {
+        return new ProductID(UUID.randomUUID());
+    }
+
+    private record State(MarkdownID percentage, MarkdownID count, List<ProductID> products) {
+    }
+
+    private record TestConfig(Path path, long snapshotAfterBytes) implements PersistenceConfig {
+
+        @Override
+        public boolean enabled() {
+            return true;
+        }
+
+        @Override
+        public String directory() {
+            return path.toString();
+        }
+
+        @Override
+        public Duration fsyncInterval() {
+            return Duration.ofMillis(1);
+        }
+
+        @Override
+        public int fsyncBatchSize() {
+            return 16;
+        }
+
+        @Override
+        public boolean waitForFsync() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewayRevisionTest {
+
+    @Test
+    void bumpTheRevisionsOfEveryWrite() {
+        var sut = new MarkdownGatewayImpl();
+        var initial = sut.revision();
+
+        var markdown = sut.createNew(percentage(10f)).get();
+        var created = sut.revisionOf(markdown).get();
+        assertEquals(sut.revision(), created);
+        assertTrue(created.version() > initial.version());
+        assertFalse(created.modified().isBefore(initial.modified()));
+
+        sut.associateToProducts(markdown, List.of(new ProductID(UUID.randomUUID())));
+        assertTrue(sut.revision().version() > created.version());
+        assertEquals(created, sut.revisionOf(markdown).get());
+
+        sut.update(markdown, percentage(20f));
+        assertEquals(sut.revision(), sut.revisionOf(markdown).get());
+        assertNotEquals(created, sut.revisionOf(markdown).get());
+
+        var beforeDelete = sut.revision();
+        sut.delete(markdown);
+        assertTrue(sut.revisionOf(markdown).isEmpty());
+        assertTrue(sut.revision().version() > beforeDelete.version());
+        assertTrue(sut.revisionOf(new MarkdownID(UUID.randomUUID())).isEmpty());
+    }
+}
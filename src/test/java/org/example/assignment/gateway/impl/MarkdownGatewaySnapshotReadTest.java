@@ -0,0 +1,135 @@
+package org.example.assignment.gateway.impl;
+
+import org.example.assignment.gateway.impl.persistence.GatewayPersistence;
+import org.example.assignment.model.*;
+import org.example.assignment.service.MarkdownEvents;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownGatewaySnapshotReadTest {
+
+    @Test
+    void resolveInOrder() {
+        var sut = new MarkdownGatewayImpl();
+        var markdown = sut.createNew(percentage(10f)).get();
+        var products = products(10);
+        sut.associateToProducts(markdown, products.subList(0, 5));
+
+        for (var parallel : List.of(false, true)) {
+            var markdowns = sut.getPoliciesByProductIds(products, parallel);
+
+            assertEquals(products.size(), markdowns.size());
+            IntStream.range(0, products.size()).forEach(i ->
+                    assertEquals(i < 5 ? Optional.of(markdown) : Optional.<MarkdownID>empty(), markdowns.get(i).map(Markdown::id)));
+        }
+    }
+
+    @Test
+    void neverSeeAWriteHalfApplied() throws InterruptedException {
+        var sut = new MarkdownGatewayImpl();
+        var first = sut.createNew(percentage(10f)).get();
+        var second = sut.createNew(percentage(10f)).get();
+        var products = products(2_000);
+        sut.associateToProducts(first, products);
+        var running = new AtomicBoolean(true);
+        var writer = new Thread(() -> {
+            while (running.get()) {
+                sut.associateToProducts(second, products);
+                sut.associateToProducts(first, products);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                var markdowns = sut.getPoliciesByProductIds(products, i % 2 == 0);
+                var resolved = markdowns.stream().map(x -> x.get().id()).distinct().collect(Collectors.toList());
+                assertEquals(1, resolved.size(), "a snapshot mixed the markdowns of two writes");
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    void writeShardsConcurrently() throws InterruptedException {
+        for (var partitions : List.of(1, 64)) {
+            var sut = new MarkdownGatewayImpl(partitions);
+            var first = sut.createNew(percentage(10f)).get();
+            var second = sut.createNew(percentage(10f)).get();
+            var products = products(8_000);
+            var writers = IntStream.range(0, 8).mapToObj(w -> new Thread(() -> {
+                var own = products.subList(w * 1_000, (w + 1) * 1_000);
+                for (int i = 0; i < own.size(); i += 50) {
+                    sut.associateToProducts(second, own.subList(i, i + 50));
+                    sut.associateToProducts(first, own.subList(i, i + 50));
+                }
+            })).collect(Collectors.toList());
+            writers.forEach(Thread::start);
+            for (var writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(8_000L, sut.associationCount());
+            assertEquals(Optional.of(8_000L), sut.countAssociations(first));
+            assertEquals(Optional.of(0L), sut.countAssociations(second));
+            assertTrue(sut.getPoliciesByProductIds(products, false).stream().allMatch(x -> x.get().id().equals(first)));
+        }
+    }
+
+    @Test
+    void publishConcurrentWritesInTheOrderTheyWereApplied() throws InterruptedException {
+        var events = new MarkdownEvents(true, Long.MAX_VALUE, 20_000);
+        var received = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        events.subscribe(OptionalLong.empty(), received::add);
+        var sut = new MarkdownGatewayImpl((GatewayPersistence) null, null, 4, null, events);
+        var markdowns = IntStream.range(0, 4).mapToObj(__ -> sut.createNew(percentage(10f)).get()).toList();
+        var products = products(8);
+        var writers = IntStream.range(0, 8).mapToObj(w -> new Thread(() -> {
+            var random = new Random(w);
+            for (int i = 0; i < 2_000; i++) {
+                var markdown = markdowns.get(random.nextInt(markdowns.size()));
+                var from = random.nextInt(products.size() - 2);
+                if(i % 5 == 4){
+                    sut.removeAssociationToProducts(markdown, products.subList(from, from + 2));
+                } else {
+                    sut.associateToProducts(markdown, products.subList(from, from + 2));
+                }
+            }
+        })).collect(Collectors.toList());
+        writers.forEach(Thread::start);
+        for (var writer : writers) {
+            writer.join();
+        }
+
+        var replayed = new HashMap<ProductID, MarkdownID>();
+        for (int i = 0; i < markdowns.size() + 8 * 2_000; i++) {
+            var event = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(event, "missing event " + i);
+            assertFalse(event.reset());
+            if(event.mutation().get() instanceof MarkdownMutation.Associated associated){
+                associated.products().forEach(product -> replayed.put(product, associated.markdownId()));
+            } else if(event.mutation().get() instanceof MarkdownMutation.AssociationRemoved removed){
+                removed.products().forEach(replayed::remove);
+            }
+        }
+        for (var product : products) {
+            assertEquals(Optional.ofNullable(replayed.get(product)), sut.getPolicyByProductId(product).map(Markdown::id),
+                    "the events of " + product + " came in another order than its writes");
+        }
+    }
+}
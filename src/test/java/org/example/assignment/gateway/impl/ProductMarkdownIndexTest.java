@@ -0,0 +1,136 @@
+package org.example.assignment.gateway.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductMarkdownIndexTest {
+
+    private ProductMarkdownIndex sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new ProductMarkdownIndex();
+    }
+
+    @Test
+    void getAnUnknownProduct() {
+        assertEquals(ProductMarkdownIndex.NO_SLOT, sut.get(UUID.randomUUID()));
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    void putReplaceAndRemove() {
+        var productId = UUID.randomUUID();
+
+        sut.put(productId, 0);
+        assertEquals(0, sut.get(productId));
+
+        sut.put(productId, 7);
+        assertEquals(7, sut.get(productId));
+        assertEquals(1, sut.size());
+
+        assertTrue(sut.remove(productId));
+        assertFalse(sut.remove(productId));
+        assertEquals(ProductMarkdownIndex.NO_SLOT, sut.get(productId));
+        assertEquals(0, sut.size());
+
+        sut.put(productId, 3);
+        assertEquals(3, sut.get(productId));
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    void growAndReclaimTombstones() {
+        var productIds = IntStream.range(0, 100_000).mapToObj(__ -> UUID.randomUUID()).toList();
+
+        IntStream.range(0, productIds.size()).forEach(i -> sut.put(productIds.get(i), i % 10));
+        IntStream.range(0, productIds.size()).filter(i -> i % 2 == 0).forEach(i -> sut.remove(productIds.get(i)));
+        IntStream.range(0, 100_000).forEach(__ -> {
+            var productId = UUID.randomUUID();
+            sut.put(productId, 1);
+            sut.remove(productId);
+        });
+
+        assertEquals(50_000, sut.size());
+        IntStream.range(0, productIds.size()).forEach(i -> assertEquals(
+                i % 2 == 0 ? ProductMarkdownIndex.NO_SLOT : i % 10,
+                sut.get(productIds.get(i))));
+    }
+
+    @Test
+    void keepThePositionsOfEverySlot() {
+        var sut = ProductMarkdownIndex.withSlotPositions();
+        var productIds = IntStream.range(0, 50_000).mapToObj(__ -> UUID.randomUUID()).toList();
+
+        IntStream.range(0, productIds.size()).forEach(i -> sut.put(productIds.get(i), i % 5));
+        IntStream.range(0, productIds.size()).filter(i -> i % 5 == 0).forEach(i -> sut.put(productIds.get(i), 1));
+        IntStream.range(0, productIds.size()).filter(i -> i % 5 == 2).forEach(i -> sut.remove(productIds.get(i)));
+        IntStream.range(0, productIds.size()).filter(i -> i % 10 == 2).forEach(i -> sut.put(productIds.get(i), 2));
+
+        assertEquals(0, sut.size(0));
+        assertEquals(20_000, sut.size(1));
+        assertEquals(5_000, sut.size(2));
+        assertEquals(0, sut.size(7));
+        assertEquals(IntStream.range(0, productIds.size()).filter(i -> i % 5 <= 1).mapToObj(productIds::get).collect(Collectors.toSet()),
+                sut.keys(1).collect(Collectors.toSet()));
+        assertEquals(20_000, sut.keys(1).count());
+        assertEquals(5_000, sut.keys(2).count());
+        assertEquals(0, sut.keys(7).count());
+
+        var dropped = new ArrayList<UUID>();
+        sut.dropSlot(3, (msb, lsb, slot) -> {
+            dropped.add(new UUID(msb, lsb));
+            sut.put(msb, lsb, 4);
+        });
+        assertEquals(10_000, dropped.size());
+        assertEquals(0, sut.size(3));
+        assertEquals(20_000, sut.size(4));
+        assertEquals(0, sut.keys(3).count());
+        assertEquals(20_000, sut.keys(4).distinct().count());
+    }
+
+    @Test
+    void keepNoPositionsInCopies() {
+        var sut = ProductMarkdownIndex.withSlotPositions();
+        sut.put(UUID.randomUUID(), 1);
+
+        var copy = sut.copy();
+
+        assertEquals(1, copy.size());
+        assertEquals(0, copy.size(1));
+        assertEquals(1, sut.size(1));
+    }
+
+    @Test
+    void readWhileWriting() throws InterruptedException {
+        var stable = IntStream.range(0, 1_000).mapToObj(__ -> UUID.randomUUID()).toList();
+        stable.forEach(p -> sut.put(p, 1));
+
+        var running = new AtomicBoolean(true);
+        var wrongReads = new AtomicInteger();
+        var reader = new Thread(() -> {
+            while (running.get()) {
+                stable.forEach(p -> {
+                    if(sut.get(p) != 1){
+                        wrongReads.incrementAndGet();
+                    }
+                });
+            }
+        });
+        reader.start();
+        IntStream.range(0, 200_000).forEach(i -> sut.put(UUID.randomUUID(), 2));
+        running.set(false);
+        reader.join();
+
+        assertEquals(0, wrongReads.get());
+    }
+}
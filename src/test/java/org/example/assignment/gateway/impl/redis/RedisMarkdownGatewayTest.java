@@ -0,0 +1,168 @@
+package org.example.assignment.gateway.impl.redis;
+
+import org.example.assignment.gateway.impl.persistence.MappedCatalog;
+import org.example.assignment.model.*;
+import org.example.assignment.testdouble.InProcessRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisMarkdownGatewayTest {
+
+    private InProcessRedis redis;
+    private RedisMarkdownGateway sut;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new InProcessRedis();
+        sut = gateway();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        sut.close();
+        redis.close();
+    }
+
+    @Test
+    void storeMarkdownsAndAssociations() {
+        var first = sut.createNew(percentage(10f)).get();
+        var second = sut.createNew(percentage(20f)).get();
+        var products = products(3);
+        sut.associateToProducts(first, products);
+        sut.associateToProducts(second, products.subList(2, 3));
+        sut.associateToProducts(new MarkdownID(UUID.randomUUID()), products);
+
+        assertEquals(first, sut.getPolicyByProductId(products.get(0)).get().id());
+        assertEquals(second, sut.getPolicyByProductId(products.get(2)).get().id());
+        assertEquals(Optional.of(2L), sut.countAssociations(first));
+        assertEquals(Set.copyOf(products.subList(0, 2)), sut.getAssociations(first).get().collect(Collectors.toSet()));
+        assertEquals(3, sut.associationCount());
+        assertEquals(Optional.of(Boolean.TRUE), sut.update(first, percentage(50f)));
+        assertEquals(Money.fromDouble(5.0), sut.get(first).get().policy().apply(Money.fromDouble(10.0), 1));
+
+        sut.removeAssociationToProducts(second, products.subList(0, 1));
+        assertEquals(first, sut.getPolicyByProductId(products.get(0)).get().id());
+        assertEquals(Optional.of(Boolean.TRUE), sut.delete(first));
+        assertTrue(sut.getPolicyByProductId(products.get(0)).isEmpty());
+        assertTrue(sut.countAssociations(first).isEmpty());
+        assertTrue(sut.update(first, percentage(5f)).isEmpty());
+        assertTrue(sut.delete(first).isEmpty());
+        assertEquals(1, sut.associationCount());
+        assertEquals(List.of(second), sut.getAll().stream().map(Markdown::id).toList());
+    }
+
+    @Test
+    void shareRevisionsBetweenNodes() {
+        var other = gateway();
+        var initial = sut.revision();
+        var markdown = sut.createNew(percentage(10f)).get();
+        var created = other.revisionOf(markdown).get();
+
+        assertEquals(initial.version() + 1, created.version());
+        assertEquals(created, other.revision());
+        other.associateToProducts(markdown, products(2));
+        assertEquals(created.version() + 1, sut.revision().version());
+        assertEquals(created, sut.revisionOf(markdown).get());
+        other.update(markdown, percentage(20f));
+        assertEquals(sut.revision(), sut.revisionOf(markdown).get());
+        sut.delete(markdown);
+        assertTrue(other.revisionOf(markdown).isEmpty());
+        other.close();
+    }
+
+    @Test
+    void resolveManyProductsInOrder() {
+        var first = sut.createNew(percentage(10f)).get();
+        var second = sut.createNew(percentage(20f)).get();
+        var products = products(2_500);
+        sut.associateToProducts(first, products.subList(0, 2_000));
+        sut.associateToProducts(second, products.subList(1_000, 2_000));
+
+        var lookups = new ArrayList<>(products);
+        lookups.add(new ProductID(UUID.randomUUID()));
+        var markdowns = sut.getPoliciesByProductIds(lookups, false);
+
+        assertEquals(lookups.size(), markdowns.size());
+        IntStream.range(0, lookups.size()).forEach(i -> assertEquals(
+                i < 1_000 ? Optional.of(first) : i < 2_000 ? Optional.of(second) : Optional.empty(),
+                markdowns.get(i).map(Markdown::id)));
+        assertEquals(Optional.of(1_000L), sut.countAssociations(first));
+        assertEquals(2_000, sut.associationCount());
+    }
+
+    @Test
+    void pageInCreationOrder() {
+        var created = IntStream.range(0, 5).mapToObj(i -> sut.createNew(percentage(i + 1f)).get()).toList();
+        sut.delete(created.get(1));
+
+        var firstPage = sut.getPage(Optional.empty(), 2);
+        var secondPage = sut.getPage(firstPage.nextCursor(), 2);
+
+        assertEquals(List.of(created.get(0), created.get(2)), firstPage.markdowns().stream().map(Markdown::id).toList());
+        assertEquals(List.of(created.get(3), created.get(4)), secondPage.markdowns().stream().map(Markdown::id).toList());
+        assertTrue(secondPage.nextCursor().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> sut.getPage(Optional.of("nope"), 2));
+    }
+
+    @Test
+    void shareStateBetweenNodesWithoutLosingWrites() throws Exception {
+        var markdown = sut.createNew(percentage(10f)).get();
+        var other = gateway();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            var writes = new ArrayList<Future<?>>();
+            for (int i = 0; i < 40; i++) {
+                var node = i % 2 == 0 ? sut : other;
+                var products = products(50);
+                writes.add(executor.submit(() -> node.associateToProducts(markdown, products)));
+            }
+            for (var write : writes) {
+                write.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            other.close();
+        }
+
+        assertEquals(2_000, sut.associationCount());
+        assertEquals(Optional.of(2_000L), sut.countAssociations(markdown));
+    }
+
+    @Test
+    void exportACatalogOtherNodesCanServe() throws IOException {
+        var first = sut.createNew(percentage(10f)).get();
+        var second = sut.createNew(percentage(20f)).get();
+        var products = products(100);
+        sut.associateToProducts(first, products.subList(0, 60));
+        sut.associateToProducts(second, products.subList(60, 100));
+        var snapshot = new ByteArrayOutputStream();
+
+        sut.exportCatalog(snapshot);
+
+        var catalog = MappedCatalog.wrap(ByteBuffer.wrap(snapshot.toByteArray()), "redis");
+        assertEquals(100, catalog.size());
+        assertEquals(List.of(first, second), catalog.markdowns().stream().map(entry -> entry.id()).toList());
+        var product = products.get(70).id();
+        assertEquals(1, catalog.slotOf(product.getMostSignificantBits(), product.getLeastSignificantBits()));
+    }
+
+    private RedisMarkdownGateway gateway() {
+        return new RedisMarkdownGateway("localhost", redis.port(), "test:", 4, Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.assignment.gateway.impl.replication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.model.*;
+import org.example.assignment.service.FinalPriceCache;
+import org.example.assignment.testdouble.LocalChangeFeed;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.products;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationFollowerTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    @Test
+    void applyTheChangesOfTheLeaderInOrder() throws IOException {
+        var log = new ChangeLog(1_000_000);
+        var leader = new MarkdownGatewayImpl(log);
+        var products = products(100);
+        var first = leader.createNew(percentage(10f)).get();
+        leader.associateToProducts(first, products.subList(0, 50));
+        var follower = new MarkdownGatewayImpl(new ChangeLog(1_000_000));
+        var sut = follower(new LocalChangeFeed(leader, log), follower);
+        sut.sync();
+
+        var second = leader.createNew(percentage(20f)).get();
+        leader.associateToProducts(second, products.subList(25, 75));
+        leader.removeAssociationToProducts(first, products.subList(0, 10));
+        leader.update(first, percentage(30f));
+        leader.delete(second);
+        leader.associateToProducts(first, products.subList(90, 100));
+
+        assertEquals(6, drain(sut));
+        assertEquals(log.lastSequence(), sut.sequence());
+        assertEquals(0, sut.lag());
+        assertSameState(leader, follower, products);
+    }
+
+    @Test
+    void installASnapshotWhenTheChangesAreGone() throws IOException {
+        var log = new ChangeLog(10);
+        var leader = new MarkdownGatewayImpl(log);
+        var products = products(100);
+        var first = leader.createNew(percentage(10f)).get();
+        var follower = new MarkdownGatewayImpl(new ChangeLog(10));
+        var sut = follower(new LocalChangeFeed(leader, log), follower);
+        sut.sync();
+        var stale = follower.createNew(percentage(50f)).get();
+        follower.associateToProducts(stale, products.subList(80, 100));
+
+        for (int i = 0; i < 8; i++) {
+            leader.associateToProducts(first, products.subList(i * 10, i * 10 + 10));
+        }
+
+        assertEquals(0, sut.poll());
+        assertEquals(log.lastSequence(), sut.sequence());
+        assertTrue(follower.get(stale).isEmpty());
+        assertSameState(leader, follower, products);
+    }
+
+    @Test
+    void startOverWhenTheLeaderRestarts() throws IOException {
+        var log = new ChangeLog(1_000_000);
+        var leader = new MarkdownGatewayImpl(log);
+        var products = products(100);
+        leader.associateToProducts(leader.createNew(percentage(10f)).get(), products);
+        var feed = new LocalChangeFeed(leader, log);
+        var follower = new MarkdownGatewayImpl(new ChangeLog(1_000_000));
+        var sut = follower(feed, follower);
+        sut.sync();
+
+        var restartedLog = new ChangeLog(1_000_000);
+        var restarted = new MarkdownGatewayImpl(restartedLog);
+        var markdown = restarted.createNew(percentage(40f)).get();
+        restarted.associateToProducts(markdown, products.subList(0, 30));
+        feed.follow(restarted, restartedLog);
+
+        assertEquals(0, sut.poll());
+        assertSameState(restarted, follower, products);
+        restarted.associateToProducts(markdown, products.subList(30, 40));
+        assertEquals(1, drain(sut));
+        assertSameState(restarted, follower, products);
+    }
+
+    @Test
+    void followInBackground() throws Exception {
+        var log = new ChangeLog(1_000_000);
+        var leader = new MarkdownGatewayImpl(log);
+        var products = products(1_000);
+        var markdown = leader.createNew(percentage(10f)).get();
+        var follower = new MarkdownGatewayImpl(new ChangeLog(1_000_000));
+        var sut = new ReplicationFollower(new LocalChangeFeed(leader, log), follower, FinalPriceCache.disabled(),
+                new SimpleMeterRegistry(), 100, Duration.ofMillis(50), Duration.ofMillis(10));
+        sut.start(Duration.ofSeconds(5));
+        try {
+            for (int i = 0; i < products.size(); i += 10) {
+                leader.associateToProducts(markdown, products.subList(i, i + 10));
+            }
+            var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (sut.sequence() < log.lastSequence() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            sut.stop();
+        }
+
+        assertEquals(log.lastSequence(), sut.sequence());
+        assertSameState(leader, follower, products);
+    }
+
+    private static int drain(ReplicationFollower follower) throws IOException {
+        var applied = 0;
+        for (int changes = follower.poll(); changes > 0; changes = follower.poll()) {
+            applied += changes;
+        }
+        return applied;
+    }
+
+    private static ReplicationFollower follower(ChangeFeed feed, MarkdownGatewayImpl gateway) {
+        return new ReplicationFollower(feed, gateway, FinalPriceCache.disabled(),
+                new SimpleMeterRegistry(), 4, NO_WAIT, Duration.ofMillis(10));
+    }
+
+    private static void assertSameState(MarkdownGatewayImpl leader, MarkdownGatewayImpl follower, List<ProductID> products) {
+        assertEquals(specifications(leader), specifications(follower));
+        assertEquals(leader.getPoliciesByProductIds(products, false).stream().map(x -> x.map(Markdown::id)).toList(),
+                follower.getPoliciesByProductIds(products, false).stream().map(x -> x.map(Markdown::id)).toList());
+    }
+
+    private static Map<MarkdownID, MarkdownPolicySpecification> specifications(MarkdownGatewayImpl gateway) {
+        return gateway.getAll().stream().collect(Collectors.toMap(Markdown::id, markdown -> markdown.policy().describe()));
+    }
+}
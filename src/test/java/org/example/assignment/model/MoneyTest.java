@@ -0,0 +1,70 @@
+package org.example.assignment.model;
+
+import org.example.assignment.policy.impl.PercentageMarkdownPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "9.99,999",
+            "0.1,10",
+            "1.005,100",
+            "1.015,102",
+            "0.125,12",
+            "0.135,14",
+            "-2.5,-250",
+            "123456789.994,12345678999"
+    })
+    void convertDecimalsToMinorUnitsHalfEven(double value, long minorUnits) {
+        assertEquals(minorUnits, Money.fromDouble(value));
+        assertEquals(new BigDecimal(Long.toString(minorUnits)).movePointLeft(2).doubleValue(), Money.toDouble(minorUnits));
+    }
+
+    @Test
+    void rejectAmountsThatCantBeExact() {
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(1e300));
+        assertFalse(Money.fits(1e15, 1));
+        assertFalse(Money.fits(1e9, Integer.MAX_VALUE));
+        assertTrue(Money.fits(1e6, Integer.MAX_VALUE));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "15,100000,2",
+            "5,100000,0",
+            "25,100000,2",
+            "35,100000,4",
+            "-15,100000,-2",
+            "999,333333,333",
+            "9223372036854775,999999,9223362813482738"
+    })
+    void roundProportionsHalfEven(long amount, long rate, long expected) {
+        assertEquals(expected, Money.proportion(amount, rate));
+        assertEquals(BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(rate))
+                .divide(BigDecimal.valueOf(Money.RATE_UNIT), 0, RoundingMode.HALF_EVEN).longValueExact(), expected);
+    }
+
+    @Test
+    void priceWithoutFloatingPointDrift() {
+        var sut = new PercentageMarkdownPolicy(33f);
+
+        assertEquals(2008, sut.apply(Money.fromDouble(9.99), 3));
+        assertEquals(Money.rate(12.5f), 125_000);
+        assertEquals(Money.rate(10.1f), 101_000);
+        var total = 0L;
+        for (int i = 0; i < 10; i++) {
+            total += Money.fromDouble(0.1);
+        }
+        assertEquals(1.0, Money.toDouble(total));
+    }
+}
@@ -5,9 +5,11 @@ import org.example.assignment.model.ProductBasket;
 import org.example.assignment.model.ProductID;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -25,7 +27,7 @@ class CountMarkdownPolicyTest {
     })
     void applyAMultipleThresholdsPolicy(int quantity, double expectedPrice) {
 
-        var productPrice = new Price(1.0);
+        var productPrice = Price.of(1.0);
         var productBasket = new ProductBasket(new ProductID(UUID.randomUUID()), productPrice, quantity);
 
         var thresholds = new HashMap<Integer, Float>() {{
@@ -42,4 +44,63 @@ class CountMarkdownPolicyTest {
         assertEquals(expectedPrice, finalPrice.value());
     }
 
-}
\ No newline at end of file
+    @ParameterizedTest
+    @CsvSource({
+            "1,1",
+            "1999,1999",
+            "2000,1800",
+            "4999,4499.1",
+            "5000,4000",
+            "100000,80000"
+    })
+    void applyAPolicyWithThresholdsBeyondTheDirectIndex(int quantity, double expectedPrice) {
+
+        var productPrice = Price.of(1.0);
+        var productBasket = new ProductBasket(new ProductID(UUID.randomUUID()), productPrice, quantity);
+
+        var thresholds = new HashMap<Integer, Float>() {{
+            put(2000, 10.0f);
+            put(5000, 20.0f);
+        }};
+
+        var sut = new CountMarkdownPolicy(thresholds);
+
+        var finalPrice = sut.apply(productBasket);
+
+        assertEquals(expectedPrice, finalPrice.value(), 1e-9);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 100})
+    void lookupMatchesTheLargestThresholdNotGreaterThanQuantity(int step) {
+
+        var thresholds = new HashMap<Integer, Float>();
+        IntStream.rangeClosed(1, 60).forEach(i -> thresholds.put(i * step, (float) i));
+
+        var sut = new CountMarkdownPolicy(thresholds);
+
+        IntStream.range(0, 61 * step).forEach(quantity -> {
+            var productBasket = new ProductBasket(new ProductID(UUID.randomUUID()), Price.of(100.0), quantity);
+            var expectedPercentage = Math.min(quantity / step, 60);
+            var expectedPrice = 100.0 * quantity - (100.0 * quantity * expectedPercentage) / 100;
+
+            assertEquals(expectedPrice, sut.apply(productBasket).value(), 1e-6);
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 100})
+    void batchMatchesSingleEvaluation(int step) {
+
+        var thresholds = new HashMap<Integer, Float>();
+        IntStream.rangeClosed(1, 30).forEach(i -> thresholds.put(i * step, i * 2.5f));
+        var sut = new CountMarkdownPolicy(thresholds);
+        var unitPrices = IntStream.range(0, 4000).mapToLong(i -> 1 + i * 37L % 10_000).toArray();
+        var quantities = IntStream.range(0, 4000).map(i -> i - 10).toArray();
+        var prices = new long[unitPrices.length];
+
+        sut.apply(unitPrices, quantities, prices);
+
+        IntStream.range(0, prices.length).forEach(i -> assertEquals(sut.apply(unitPrices[i], quantities[i]), prices[i]));
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.assignment.policy.impl;
+
+import org.example.assignment.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PercentageMarkdownPolicyTest {
+
+    @Test
+    void batchMatchesSingleEvaluation() {
+
+        var sut = new PercentageMarkdownPolicy(12.5f);
+        var unitPrices = new long[] {Money.fromDouble(9.99), 1, 4, 12, 20, Money.fromDouble(0.5)};
+        var quantities = new int[] {3, 1, 1, 1, 1, 7};
+        var prices = new long[unitPrices.length];
+
+        sut.apply(unitPrices, quantities, prices);
+
+        assertArrayEquals(new long[] {2622, 1, 4, 10, 18, 306}, prices);
+        IntStream.range(0, prices.length).forEach(i -> assertEquals(sut.apply(unitPrices[i], quantities[i]), prices[i]));
+        assertThrows(IllegalArgumentException.class, () -> sut.apply(unitPrices, quantities, new long[1]));
+    }
+}
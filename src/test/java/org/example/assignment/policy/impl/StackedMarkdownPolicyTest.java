@@ -0,0 +1,100 @@
+package org.example.assignment.policy.impl;
+
+import org.example.assignment.model.MarkdownConfiguration;
+import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.MarkdownType;
+import org.example.assignment.model.Money;
+import org.example.assignment.policy.PolicyFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.example.assignment.testdouble.MarkdownFixtures.count;
+import static org.example.assignment.testdouble.MarkdownFixtures.percentage;
+import static org.example.assignment.testdouble.MarkdownFixtures.stacked;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StackedMarkdownPolicyTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "1,9",
+            "39,351",
+            "40,324",
+            "50,360",
+            "100,720"
+    })
+    void applyTheLayersInOrder(int quantity, double expectedPrice) {
+
+        var sut = new StackedMarkdownPolicy(List.of(
+                count(Map.of(40, 10f, 50, 20f)),
+                percentage(10f)));
+
+        assertEquals(expectedPrice, Money.toDouble(sut.apply(Money.fromDouble(10.0), quantity)), 1e-9);
+    }
+
+    @Test
+    void roundEveryLayerAsIfAppliedOneAfterTheOther() {
+
+        var layers = List.of(percentage(12.5f), count(Map.of(3, 7.5f)), percentage(33.3f));
+        var sut = new StackedMarkdownPolicy(layers);
+
+        IntStream.range(1, 200).forEach(unitPrice -> IntStream.range(0, 6).forEach(quantity -> {
+            var expected = Money.times(unitPrice, quantity);
+            expected -= Money.proportion(expected, Money.rate(12.5f));
+            expected -= Money.proportion(expected, quantity >= 3 ? Money.rate(7.5f) : 0);
+            expected -= Money.proportion(expected, Money.rate(33.3f));
+            assertEquals(expected, sut.apply(unitPrice, quantity));
+        }));
+    }
+
+    @Test
+    void leaveOutTheLayersThatNeverDiscount() {
+
+        var sut = new StackedMarkdownPolicy(List.of(
+                new MarkdownPolicySpecification(MarkdownType.DEFAULT, new MarkdownConfiguration(Optional.empty(), Optional.empty())),
+                percentage(0f),
+                stacked(List.of(percentage(10f), count(Map.of(2, 0f)))),
+                percentage(20f)));
+
+        assertEquals(2, sut.width());
+        assertEquals(72, sut.apply(100, 1));
+        assertEquals(MarkdownType.STACKED, sut.describe().type());
+        assertEquals(4, sut.describe().configuration().layers().get().size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 100})
+    void batchMatchesSingleEvaluation(int step) {
+
+        var thresholds = new HashMap<Integer, Float>();
+        IntStream.rangeClosed(1, 30).forEach(i -> thresholds.put(i * step, i * 2.5f));
+        var sut = new StackedMarkdownPolicy(List.of(count(thresholds), percentage(5f), count(Map.of(15, 1.5f))));
+        var unitPrices = IntStream.range(0, 4000).mapToLong(i -> 1 + i * 37L % 10_000).toArray();
+        var quantities = IntStream.range(0, 4000).map(i -> i - 10).toArray();
+        var prices = new long[unitPrices.length];
+
+        sut.apply(unitPrices, quantities, prices);
+
+        IntStream.range(0, prices.length).forEach(i -> assertEquals(sut.apply(unitPrices[i], quantities[i]), prices[i]));
+    }
+
+    @Test
+    void compileEveryDistinctStackOnce() {
+
+        var layers = List.of(count(new HashMap<>(Map.of(2, 5f))), percentage(10f));
+
+        var sut = PolicyFactory.create(stacked(layers));
+
+        assertSame(sut, PolicyFactory.create(stacked(List.of(count(Map.of(2, 5f)), percentage(10f)))));
+        assertNotSame(sut, PolicyFactory.create(stacked(List.of(percentage(10f), count(Map.of(2, 5f))))));
+        assertThrows(IllegalArgumentException.class, () -> PolicyFactory.create(stacked(List.of())));
+    }
+}
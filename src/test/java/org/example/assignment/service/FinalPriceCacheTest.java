@@ -0,0 +1,91 @@
+package org.example.assignment.service;
+
+import org.example.assignment.model.*;
+import org.example.assignment.policy.impl.PercentageMarkdownPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinalPriceCacheTest {
+
+    private final FinalPriceCache sut = new FinalPriceCache(true, 1000, 2);
+
+    @Test
+    void cachePricesByUnitPriceAndQuantity() {
+        var product = product();
+        assertEquals(FinalPriceCache.MISSING, sut.get(product, 10, 1));
+
+        sut.put(sut.generation(), product, Optional.empty(), 10, 1, 10);
+        sut.put(sut.generation(), product, Optional.empty(), 10, 2, 20);
+
+        assertEquals(10, sut.get(product, 10, 1));
+        assertEquals(20, sut.get(product, 10, 2));
+        assertEquals(FinalPriceCache.MISSING, sut.get(product, 5, 1));
+    }
+
+    @Test
+    void dropTheOldestPriceOfAProduct() {
+        var product = product();
+        sut.put(sut.generation(), product, Optional.empty(), 10, 1, 10);
+        sut.put(sut.generation(), product, Optional.empty(), 10, 2, 20);
+        sut.put(sut.generation(), product, Optional.empty(), 10, 3, 30);
+
+        assertEquals(FinalPriceCache.MISSING, sut.get(product, 10, 1));
+        assertEquals(20, sut.get(product, 10, 2));
+        assertEquals(30, sut.get(product, 10, 3));
+    }
+
+    @Test
+    void invalidateProducts() {
+        var invalidated = product();
+        var kept = product();
+        sut.put(sut.generation(), invalidated, Optional.empty(), 10, 1, 10);
+        sut.put(sut.generation(), kept, Optional.empty(), 10, 1, 10);
+
+        sut.invalidateProducts(List.of(invalidated));
+
+        assertEquals(FinalPriceCache.MISSING, sut.get(invalidated, 10, 1));
+        assertEquals(10, sut.get(kept, 10, 1));
+    }
+
+    @Test
+    void invalidateOnlyTheProductsOfAMarkdown() {
+        var markdown = markdown();
+        var other = markdown();
+        var discounted = product();
+        var otherDiscounted = product();
+        var notDiscounted = product();
+        sut.put(sut.generation(), discounted, Optional.of(markdown), 10, 1, 9);
+        sut.put(sut.generation(), otherDiscounted, Optional.of(other), 10, 1, 9);
+        sut.put(sut.generation(), notDiscounted, Optional.empty(), 10, 1, 10);
+
+        sut.invalidateMarkdown(markdown.id());
+
+        assertEquals(FinalPriceCache.MISSING, sut.get(discounted, 10, 1));
+        assertEquals(9, sut.get(otherDiscounted, 10, 1));
+        assertEquals(10, sut.get(notDiscounted, 10, 1));
+    }
+
+    @Test
+    void discardAPriceCalculatedDuringAnInvalidation() {
+        var product = product();
+        var generation = sut.generation();
+        sut.invalidateProducts(List.of(product));
+
+        sut.put(generation, product, Optional.empty(), 10, 1, 10);
+
+        assertEquals(FinalPriceCache.MISSING, sut.get(product, 10, 1));
+    }
+
+    private static ProductID product() {
+        return new ProductID(UUID.randomUUID());
+    }
+
+    private static Markdown markdown() {
+        return new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(10f));
+    }
+}
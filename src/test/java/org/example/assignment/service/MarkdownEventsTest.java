@@ -0,0 +1,161 @@
+package org.example.assignment.service;
+
+import org.example.assignment.model.MarkdownID;
+import org.example.assignment.model.MarkdownMutation;
+import org.example.assignment.model.ProductID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownEventsTest {
+
+    private final MarkdownEvents sut = new MarkdownEvents(true, 100, 10);
+
+    @AfterEach
+    void close() {
+        sut.close();
+    }
+
+    @Test
+    void sendTheEventsInOrder() throws InterruptedException {
+        var received = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        sut.subscribe(OptionalLong.empty(), received::add);
+        var mutations = IntStream.range(0, 5).mapToObj(i -> (MarkdownMutation) new MarkdownMutation.Deleted(markdown())).toList();
+
+        mutations.forEach(sut::publish);
+
+        var events = take(received, 5);
+        assertEquals(mutations, events.stream().map(event -> event.mutation().get()).toList());
+        for (int i = 1; i < events.size(); i++) {
+            assertEquals(events.get(i - 1).sequence() + 1, events.get(i).sequence());
+        }
+    }
+
+    @Test
+    void resumeAfterTheLastEventReceived() throws InterruptedException {
+        var first = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        var subscription = sut.subscribe(OptionalLong.empty(), first::add);
+        sut.publish(new MarkdownMutation.Deleted(markdown()));
+        var last = take(first, 1).get(0);
+        subscription.cancel();
+        var missed = new MarkdownMutation.Associated(markdown(), List.of(product()));
+        sut.publish(missed);
+
+        var resumed = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        sut.subscribe(OptionalLong.of(last.sequence()), resumed::add);
+
+        var event = take(resumed, 1).get(0);
+        assertEquals(missed, event.mutation().get());
+        assertEquals(last.sequence() + 1, event.sequence());
+    }
+
+    @Test
+    void resetWhenTheEventsAreNoLongerKept() throws InterruptedException {
+        var first = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        var subscription = sut.subscribe(OptionalLong.empty(), first::add);
+        sut.publish(new MarkdownMutation.Deleted(markdown()));
+        var last = take(first, 1).get(0);
+        subscription.cancel();
+        var products = IntStream.range(0, 60).mapToObj(i -> product()).toList();
+        sut.publish(new MarkdownMutation.Associated(markdown(), products));
+        sut.publish(new MarkdownMutation.Associated(markdown(), products));
+
+        var resumed = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        sut.subscribe(OptionalLong.of(last.sequence()), resumed::add);
+        sut.publish(new MarkdownMutation.Deleted(markdown()));
+
+        var events = take(resumed, 2);
+        assertTrue(events.get(0).reset());
+        assertEquals(last.sequence() + 2, events.get(0).sequence());
+        assertFalse(events.get(1).reset());
+        assertEquals(last.sequence() + 3, events.get(1).sequence());
+    }
+
+    @Test
+    void resetASubscriberTooSlowWithoutWaitingForIt() throws InterruptedException {
+        var sending = new CountDownLatch(1);
+        var blocked = new CountDownLatch(1);
+        var received = new LinkedBlockingQueue<MarkdownEvents.Event>();
+        sut.subscribe(OptionalLong.empty(), event -> {
+            sending.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event);
+        });
+        sut.publish(new MarkdownMutation.Deleted(markdown()));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        var start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            sut.publish(new MarkdownMutation.Deleted(markdown()));
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos());
+
+        blocked.countDown();
+        var events = take(received, 2);
+        assertFalse(events.get(0).reset());
+        assertTrue(events.get(1).reset());
+
+        var after = new MarkdownMutation.Deleted(markdown());
+        sut.publish(after);
+        var sequence = events.get(1).sequence();
+        for (var event = take(received, 1).get(0); ; event = take(received, 1).get(0)) {
+            assertEquals(++sequence, event.sequence());
+            if(event.mutation().get().equals(after)){
+                break;
+            }
+        }
+    }
+
+    @Test
+    void dropASubscriberThatFails() throws InterruptedException {
+        var failed = new CountDownLatch(1);
+        var subscription = sut.subscribe(OptionalLong.empty(), event -> {
+            failed.countDown();
+            throw new IOException("Broken pipe");
+        });
+
+        sut.publish(new MarkdownMutation.Deleted(markdown()));
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (sut.subscriberCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertFalse(subscription.open());
+        assertEquals(0, sut.subscriberCount());
+    }
+
+    private static List<MarkdownEvents.Event> take(BlockingQueue<MarkdownEvents.Event> received, int count) throws InterruptedException {
+        var events = new ArrayList<MarkdownEvents.Event>();
+        for (int i = 0; i < count; i++) {
+            var event = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "Missing event " + i);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static MarkdownID markdown() {
+        return new MarkdownID(UUID.randomUUID());
+    }
+
+    private static ProductID product() {
+        return new ProductID(UUID.randomUUID());
+    }
+}
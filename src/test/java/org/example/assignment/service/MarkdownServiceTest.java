@@ -1,6 +1,8 @@
 package org.example.assignment.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.example.assignment.gateway.MarkdownGateway;
+import org.example.assignment.metrics.PricingMetrics;
 import org.example.assignment.model.*;
 import org.example.assignment.policy.MarkdownPolicy;
 import org.example.assignment.policy.impl.CountMarkdownPolicy;
@@ -36,7 +38,7 @@ class MarkdownServiceTest {
     void retrieveTheDefaultPolicyIfMarkdownIsNotConfiguredForAProduct() {
 
         var id = new ProductID(UUID.randomUUID());
-        var price = new Price(1.0);
+        var price = Price.of(1.0);
         var quantity = 10;
         var productBasket = new ProductBasket(id, price, quantity);
 
@@ -52,7 +54,7 @@ class MarkdownServiceTest {
     void applyADummyDiscountPolicy() {
 
         var id = new ProductID(UUID.randomUUID());
-        var price = new Price(1.0);
+        var price = Price.of(1.0);
         var quantity = 10;
         var productBasket = new ProductBasket(id, price, quantity);
         var markdown = new Markdown(new MarkdownID(UUID.randomUUID()), new DummyMarkdownPolicy());
@@ -74,7 +76,7 @@ class MarkdownServiceTest {
     void applyAPercentageDiscountPolicy(Float discountPercentage, double expectedPrice) {
 
         var id = new ProductID(UUID.randomUUID());
-        var price = new Price(1.0);
+        var price = Price.of(1.0);
         var quantity = 100;
         var productBasket = new ProductBasket(id, price, quantity);
         var markdownPolicy = new PercentageMarkdownPolicy(discountPercentage);
@@ -93,7 +95,7 @@ class MarkdownServiceTest {
     void applyACountBaseDiscountPolicy(int quantity, MarkdownPolicy markdownPolicy, double expectedPrice) {
 
         var id = new ProductID(UUID.randomUUID());
-        var price = new Price(1.0);
+        var price = Price.of(1.0);
         var productBasket = new ProductBasket(id, price, quantity);
         var markdown = new Markdown(new MarkdownID(UUID.randomUUID()), markdownPolicy);
 
@@ -119,6 +121,77 @@ class MarkdownServiceTest {
         );
     }
 
+    @Test
+    void calculatePricesLooksUpEachProductOnce() {
+
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var price = Price.of(1.0);
+        var markdown = new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f));
+        var productBaskets = List.of(
+                new ProductBasket(discounted, price, 10),
+                new ProductBasket(notDiscounted, price, 10),
+                new ProductBasket(discounted, price, 20)
+        );
+
+        Mockito.when(markdownGateway.getPolicyByProductId(discounted)).thenReturn(Optional.of(markdown));
+        Mockito.when(markdownGateway.getPolicyByProductId(notDiscounted)).thenReturn(Optional.empty());
+
+        var finalPrices = sut.calculatePrices(productBaskets);
+
+        assertArrayEquals(new long[] {500, 1000, 1000}, finalPrices);
+        Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(discounted);
+        Mockito.verify(markdownGateway, Mockito.times(1)).getPolicyByProductId(notDiscounted);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1000", "2"})
+    void priceACartFromOneLookup(int parallelThreshold) {
+
+        var sut = new MarkdownService(markdownGateway, new PricingMetrics(new SimpleMeterRegistry(), markdownGateway, false), FinalPriceCache.disabled(), parallelThreshold);
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var price = Price.of(1.0);
+        var markdown = Optional.of(new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f)));
+        var parallel = parallelThreshold <= 3;
+
+        Mockito.when(markdownGateway.getPoliciesByProductIds(List.of(discounted, notDiscounted, discounted), parallel))
+                .thenReturn(List.of(markdown, Optional.empty(), markdown));
+
+        var cartPrice = sut.calculateCart(List.of(
+                new ProductBasket(discounted, price, 10),
+                new ProductBasket(notDiscounted, price, 10),
+                new ProductBasket(discounted, price, 20)
+        ));
+
+        assertArrayEquals(new long[] {500, 1000, 1000}, cartPrice.linePrices());
+        assertEquals(2500, cartPrice.total());
+        Mockito.verify(markdownGateway, Mockito.never()).getPolicyByProductId(Mockito.any());
+    }
+
+    @Test
+    void countEvaluationsByPolicyTypeAndSource() {
+
+        var registry = new SimpleMeterRegistry();
+        var sut = new MarkdownService(markdownGateway, new PricingMetrics(registry, markdownGateway, true), FinalPriceCache.disabled(), MarkdownService.DEFAULT_CART_PARALLEL_THRESHOLD);
+        var discounted = new ProductID(UUID.randomUUID());
+        var notDiscounted = new ProductID(UUID.randomUUID());
+        var markdown = new Markdown(new MarkdownID(UUID.randomUUID()), new PercentageMarkdownPolicy(50f));
+
+        Mockito.when(markdownGateway.getPolicyByProductId(discounted)).thenReturn(Optional.of(markdown));
+        Mockito.when(markdownGateway.getPolicyByProductId(notDiscounted)).thenReturn(Optional.empty());
+        Mockito.when(markdownGateway.markdownCount()).thenReturn(1);
+
+        sut.calculatePrice(discounted, Money.fromDouble(1.0), 1);
+        sut.calculatePrice(discounted, Money.fromDouble(1.0), 2);
+        sut.calculatePrice(notDiscounted, Money.fromDouble(1.0), 1);
+
+        assertEquals(2.0, registry.find("pricing.policy.evaluations").tags("type", "PERCENTAGE", "source", "markdown").functionCounter().count());
+        assertEquals(1.0, registry.find("pricing.policy.evaluations").tags("type", "DEFAULT", "source", "default").functionCounter().count());
+        assertEquals(0.0, registry.find("pricing.policy.evaluations").tags("type", "COUNT", "source", "markdown").functionCounter().count());
+        assertEquals(1.0, registry.find("pricing.gateway.markdowns").gauge().value());
+    }
+
     @Test
     void createPolicy() {
         var id = UUID.randomUUID();
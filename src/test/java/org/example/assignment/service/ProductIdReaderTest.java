@@ -0,0 +1,79 @@
+package org.example.assignment.service;
+
+import org.example.assignment.model.ProductID;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductIdReaderTest {
+
+    @Test
+    void readNDJSON() throws IOException {
+        var ids = ids(3);
+        var input = ids.stream().map(x -> "\"" + x + "\"").collect(Collectors.joining("\n", "", "\n\n"));
+
+        assertEquals(ids, readAll(input, ProductIdReader.Format.NDJSON));
+    }
+
+    @Test
+    void readCSVWithHeaderAndQuotes() throws IOException {
+        var ids = ids(3);
+        var input = "product_id,description\r\n"
+                + ids.get(0) + ",first\r\n"
+                + "\"" + ids.get(1) + "\",second\r\n"
+                + " " + ids.get(2).toString().toUpperCase();
+
+        assertEquals(ids, readAll(input, ProductIdReader.Format.CSV));
+    }
+
+    @Test
+    void readLinesAcrossBufferBoundaries() throws IOException {
+        var ids = ids(10_000);
+        var input = ids.stream().map(UUID::toString).collect(Collectors.joining("\n"));
+
+        assertEquals(ids, readAll(input, ProductIdReader.Format.CSV));
+    }
+
+    @Test
+    void rejectAMalformedLine() throws IOException {
+        var sut = reader("\"" + UUID.randomUUID() + "\"\n\"" + UUID.randomUUID().toString().replace('-', 'x') + "\"\n",
+                ProductIdReader.Format.NDJSON);
+
+        assertNotNull(sut.next());
+        var error = assertThrows(ProductIdReader.MalformedLineException.class, sut::next);
+        assertEquals(2, error.line());
+    }
+
+    @Test
+    void rejectAnUnquotedNDJSONLine() {
+        var sut = reader(UUID.randomUUID().toString(), ProductIdReader.Format.NDJSON);
+
+        assertThrows(ProductIdReader.MalformedLineException.class, sut::next);
+    }
+
+    private static List<UUID> readAll(String input, ProductIdReader.Format format) throws IOException {
+        var sut = reader(input, format);
+        var ids = new ArrayList<UUID>();
+        for (ProductID id = sut.next(); id != null; id = sut.next()) {
+            ids.add(id.id());
+        }
+        return ids;
+    }
+
+    private static ProductIdReader reader(String input, ProductIdReader.Format format) {
+        return new ProductIdReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private static List<UUID> ids(int count) {
+        return IntStream.range(0, count).mapToObj(__ -> UUID.randomUUID()).collect(Collectors.toList());
+    }
+}
@@ -7,8 +7,8 @@ import java.util.Optional;
 
 public class DummyMarkdownPolicy implements MarkdownPolicy {
     @Override
-    public Price apply(ProductBasket productBasket) {
-        return productBasket.productPrice();
+    public long apply(long unitPrice, int quantity) {
+        return unitPrice;
     }
 
     @Override
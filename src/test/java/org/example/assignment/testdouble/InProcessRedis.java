@@ -0,0 +1,371 @@
+package org.example.assignment.testdouble;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A Redis compatible server running in the test process, with only the commands the gateway uses:
+ * strings, hashes, sets, counters and WATCH/MULTI/EXEC transactions.
+ * Commands run one at a time under a single lock, which is also what makes transactions atomic.
+ */
+public class InProcessRedis implements Closeable {
+
+    private final ServerSocket server;
+    private final Map<Key, Object> data = new HashMap<>();
+    private final Map<Key, Long> modifications = new HashMap<>();
+    private final List<Socket> clients = Collections.synchronizedList(new ArrayList<>());
+    private long clock;
+
+    public InProcessRedis() throws IOException {
+        this.server = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        var acceptor = new Thread(this::accept, "in-process-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public synchronized void flushAll() {
+        data.clear();
+        clock++;
+        modifications.replaceAll((key, modification) -> clock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        synchronized (clients) {
+            for (var client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                var client = server.accept();
+                clients.add(client);
+                var session = new Thread(() -> serve(client), "in-process-redis-client");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client) {
+            var in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            var out = new BufferedOutputStream(client.getOutputStream());
+            var session = new Session();
+            while (true) {
+                var command = readCommand(in);
+                if(command == null){
+                    return;
+                }
+                writeReply(out, session.handle(command));
+                if(in.available() == 0){
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // client gone
+        }
+    }
+
+    private static List<byte[]> readCommand(DataInputStream in) throws IOException {
+        var type = in.read();
+        if(type == -1){
+            return null;
+        }
+        if(type != '*'){
+            throw new IOException("Expected an array");
+        }
+        var count = Integer.parseInt(readLine(in));
+        var arguments = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            if(in.read() != '$'){
+                throw new IOException("Expected a bulk string");
+            }
+            var argument = new byte[Integer.parseInt(readLine(in))];
+            in.readFully(argument);
+            readLine(in);
+            arguments.add(argument);
+        }
+        return arguments;
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        var line = new StringBuilder();
+        int next;
+        while ((next = in.read()) != '\r') {
+            if(next == -1){
+                throw new EOFException();
+            }
+            line.append((char) next);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private static void writeReply(OutputStream out, Object reply) throws IOException {
+        if(reply == null){
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if(reply instanceof Status status){
+            out.write(((status.error() ? "-" : "+") + status.text() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if(reply instanceof Long number){
+            out.write((":" + number + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if(reply instanceof byte[] value){
+            out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(value);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if(reply instanceof NilArray){
+            out.write("*-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else {
+            var elements = (List<?>) reply;
+            out.write(("*" + elements.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (var element : elements) {
+                writeReply(out, element);
+            }
+        }
+    }
+
+    private class Session {
+        private final Map<Key, Long> watched = new HashMap<>();
+        private List<List<byte[]>> queued;
+
+        Object handle(List<byte[]> command) {
+            var name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+            synchronized (InProcessRedis.this) {
+                switch (name) {
+                    case "MULTI":
+                        queued = new ArrayList<>();
+                        return Status.OK;
+                    case "EXEC":
+                        return exec();
+                    case "DISCARD":
+                        queued = null;
+                        watched.clear();
+                        return Status.OK;
+                    case "WATCH":
+                        command.subList(1, command.size()).forEach(key -> watched.put(new Key(key), modification(new Key(key))));
+                        return Status.OK;
+                    case "UNWATCH":
+                        watched.clear();
+                        return Status.OK;
+                    default:
+                        if(queued != null){
+                            queued.add(command);
+                            return new Status("QUEUED", false);
+                        }
+                        return execute(name, command);
+                }
+            }
+        }
+
+        private Object exec() {
+            var commands = queued;
+            queued = null;
+            var conflict = watched.entrySet().stream().anyMatch(entry -> modification(entry.getKey()) != entry.getValue());
+            watched.clear();
+            if(commands == null){
+                return new Status("ERR EXEC without MULTI", true);
+            }
+            if(conflict){
+                return NilArray.INSTANCE;
+            }
+            var replies = new ArrayList<>(commands.size());
+            for (var command : commands) {
+                replies.add(execute(new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT), command));
+            }
+            return replies;
+        }
+    }
+
+    private long modification(Key key) {
+        return modifications.getOrDefault(key, 0L);
+    }
+
+    private void modified(Key key) {
+        modifications.put(key, ++clock);
+    }
+
+    private Object execute(String name, List<byte[]> command) {
+        var key = command.size() > 1 ? new Key(command.get(1)) : null;
+        switch (name) {
+            case "PING":
+                return new Status("PONG", false);
+            case "GET":
+                return data.get(key) instanceof byte[] value ? value : null;
+            case "SET":
+                data.put(key, command.get(2));
+                modified(key);
+                return Status.OK;
+            case "MGET": {
+                var values = new ArrayList<>();
+                for (var argument : command.subList(1, command.size())) {
+                    values.add(data.get(new Key(argument)) instanceof byte[] value ? value : null);
+                }
+                return values;
+            }
+            case "MSET":
+                for (int i = 1; i < command.size(); i += 2) {
+                    data.put(new Key(command.get(i)), command.get(i + 1));
+                    modified(new Key(command.get(i)));
+                }
+                return Status.OK;
+            case "DEL": {
+                var deleted = 0L;
+                for (var argument : command.subList(1, command.size())) {
+                    if(data.remove(new Key(argument)) != null){
+                        modified(new Key(argument));
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            case "INCR":
+            case "INCRBY": {
+                var current = data.get(key) instanceof byte[] value ? Long.parseLong(new String(value, StandardCharsets.US_ASCII)) : 0L;
+                var next = current + (name.equals("INCR") ? 1 : Long.parseLong(new String(command.get(2), StandardCharsets.US_ASCII)));
+                data.put(key, Long.toString(next).getBytes(StandardCharsets.US_ASCII));
+                modified(key);
+                return next;
+            }
+            case "HGET":
+                return hash(key, false).get(new Key(command.get(2)));
+            case "HMGET": {
+                var hash = hash(key, false);
+                var values = new ArrayList<>();
+                for (var field : command.subList(2, command.size())) {
+                    values.add(hash.get(new Key(field)));
+                }
+                return values;
+            }
+            case "HSET": {
+                var hash = hash(key, true);
+                var added = 0L;
+                for (int i = 2; i < command.size(); i += 2) {
+                    if(hash.put(new Key(command.get(i)), command.get(i + 1)) == null){
+                        added++;
+                    }
+                }
+                modified(key);
+                return added;
+            }
+            case "HDEL": {
+                var hash = hash(key, false);
+                var deleted = 0L;
+                for (var field : command.subList(2, command.size())) {
+                    if(hash.remove(new Key(field)) != null){
+                        deleted++;
+                    }
+                }
+                removeIfEmpty(key, hash);
+                return deleted;
+            }
+            case "HEXISTS":
+                return hash(key, false).containsKey(new Key(command.get(2))) ? 1L : 0L;
+            case "HLEN":
+                return (long) hash(key, false).size();
+            case "HGETALL": {
+                var fields = new ArrayList<>();
+                hash(key, false).forEach((field, value) -> {
+                    fields.add(field.value());
+                    fields.add(value);
+                });
+                return fields;
+            }
+            case "SADD": {
+                var set = set(key, true);
+                var added = 0L;
+                for (var member : command.subList(2, command.size())) {
+                    if(set.add(new Key(member))){
+                        added++;
+                    }
+                }
+                modified(key);
+                return added;
+            }
+            case "SREM": {
+                var set = set(key, false);
+                var removed = 0L;
+                for (var member : command.subList(2, command.size())) {
+                    if(set.remove(new Key(member))){
+                        removed++;
+                    }
+                }
+                removeIfEmpty(key, set);
+                return removed;
+            }
+            case "SMEMBERS":
+                return set(key, false).stream().map(Key::value).toList();
+            case "SCARD":
+                return (long) set(key, false).size();
+            case "FLUSHALL":
+                flushAll();
+                return Status.OK;
+            default:
+                return new Status("ERR unknown command '" + name + "'", true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Key, byte[]> hash(Key key, boolean create) {
+        var hash = (Map<Key, byte[]>) data.get(key);
+        if(hash == null){
+            hash = new LinkedHashMap<>();
+            if(create){
+                data.put(key, hash);
+            }
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Key> set(Key key, boolean create) {
+        var set = (Set<Key>) data.get(key);
+        if(set == null){
+            set = new LinkedHashSet<>();
+            if(create){
+                data.put(key, set);
+            }
+        }
+        return set;
+    }
+
+    private void removeIfEmpty(Key key, Object container) {
+        modified(key);
+        if(container instanceof Map<?, ?> map && map.isEmpty() || container instanceof Set<?> set && set.isEmpty()){
+            data.remove(key);
+        }
+    }
+
+    private record Key(byte[] value) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(value, key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(value);
+        }
+    }
+
+    private record Status(String text, boolean error) {
+        static final Status OK = new Status("OK", false);
+    }
+
+    private enum NilArray {
+        INSTANCE
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.assignment.testdouble;
+
+import org.example.assignment.gateway.impl.MarkdownGatewayImpl;
+import org.example.assignment.gateway.impl.persistence.MarkdownSnapshot;
+import org.example.assignment.gateway.impl.replication.ChangeFeed;
+import org.example.assignment.gateway.impl.replication.ChangeLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Feed of a leader in the same process, going through the same encoding as the HTTP endpoints.
+ * It can be pointed to another leader, as when the leader restarts.
+ */
+public class LocalChangeFeed implements ChangeFeed {
+
+    private volatile MarkdownGatewayImpl leader;
+    private volatile ChangeLog changeLog;
+
+    public LocalChangeFeed(MarkdownGatewayImpl leader, ChangeLog changeLog) {
+        follow(leader, changeLog);
+    }
+
+    public void follow(MarkdownGatewayImpl leader, ChangeLog changeLog) {
+        this.leader = leader;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public Snapshot snapshot() throws IOException {
+        var epoch = changeLog.epoch();
+        var out = new ByteArrayOutputStream();
+        leader.exportCatalog(out);
+        return new Snapshot(epoch, MarkdownSnapshot.readFrom(new ByteArrayInputStream(out.toByteArray()), "leader"));
+    }
+
+    @Override
+    public Optional<ChangeLog.Batch> changesAfter(long sequence, int limit, Duration wait) throws IOException {
+        try {
+            var batch = changeLog.read(sequence, limit, wait);
+            if(batch.isEmpty()){
+                return batch;
+            }
+            var out = new ByteArrayOutputStream();
+            batch.get().writeTo(new DataOutputStream(out));
+            return Optional.of(ChangeLog.Batch.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray()))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.assignment.testdouble;
+
+import org.example.assignment.model.MarkdownConfiguration;
+import org.example.assignment.model.MarkdownPolicySpecification;
+import org.example.assignment.model.MarkdownType;
+import org.example.assignment.model.ProductID;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Products and markdown specifications shared by the gateway and policy tests.
+ */
+public final class MarkdownFixtures {
+
+    private MarkdownFixtures() {
+    }
+
+    /**
+     * Random product ids, in a list the test may change.
+     */
+    public static List<ProductID> products(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(__ -> new ProductID(UUID.randomUUID()))
+                .collect(Collectors.toList());
+    }
+
+    public static MarkdownPolicySpecification percentage(float percentage) {
+        return new MarkdownPolicySpecification(MarkdownType.PERCENTAGE,
+                new MarkdownConfiguration(Optional.of(percentage), Optional.empty()));
+    }
+
+    public static MarkdownPolicySpecification count(Map<Integer, Float> thresholds) {
+        return new MarkdownPolicySpecification(MarkdownType.COUNT,
+                new MarkdownConfiguration(Optional.empty(), Optional.of(thresholds)));
+    }
+
+    public static MarkdownPolicySpecification stacked(List<MarkdownPolicySpecification> layers) {
+        return new MarkdownPolicySpecification(MarkdownType.STACKED,
+                new MarkdownConfiguration(Optional.empty(), Optional.empty(), Optional.of(layers)));
+    }
+}